@@ -0,0 +1,128 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.io.CsvSink;
+import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.parsers.StreamingConversationParser;
+import in.clayfish.pyry.utils.AppUtils;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CSV helpers of {@link AppUtils} on an output file of {@code records} tweets, plain or compressed. {@link AppUtils} is not
+ * initialized, so the line count is never taken from the manifest.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppUtilsBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"100000"})
+    public int records;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private File folder;
+    private File file;
+    private File appendFile;
+    private List<Tweet> batch;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("twitter-scraper-benchmark").toFile();
+        file = new File(folder, "second-level-1-1.csv");
+        appendFile = new File(folder, "second-level-2-1.csv");
+        batch = new ArrayList<>();
+
+        StreamingConversationParser parser = new StreamingConversationParser(RecordedPages.getUsername());
+        List<Tweet> tweets = new ArrayList<>();
+        for (RecordedPages.Page page : RecordedPages.statusPages()) {
+            tweets.addAll(parser.parse(1, page.getId(), page.getBody()).getTweets());
+        }
+
+        try (CsvSink sink = new CsvSink(file, Long.MAX_VALUE, () -> {
+            throw new IllegalStateException("The benchmark file does not roll over");
+        }, 1 << 16, Long.MAX_VALUE, compressed)) {
+            StringBuilder record = new StringBuilder(256);
+            for (int i = 0; i < records; i++) {
+                Tweet tweet = tweets.get(i % tweets.size());
+                tweet.setId(tweet.getId() + tweets.size());
+                tweet.setConversationId(i / tweets.size() + 1);
+                record.setLength(0);
+                sink.append(tweet.toRecord(record));
+                if (batch.size() < BATCH_SIZE) {
+                    batch.add(new Tweet().fromRecord(record.toString()));
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws IOException {
+        Files.deleteIfExists(appendFile.toPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File each : files) {
+                each.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * The record in the middle of the file, as step 2 reads the tweet IDs of its chunk
+     */
+    @Benchmark
+    public CSVRecord readNthRecord() throws IOException {
+        return AppUtils.readNthRecord(file, records / 2);
+    }
+
+    @Benchmark
+    public CSVRecord readLastRecord() throws IOException {
+        return AppUtils.readLastRecord(file);
+    }
+
+    @Benchmark
+    public long getLineCount() throws IOException {
+        return AppUtils.getLineCount(file);
+    }
+
+    /**
+     * Appends a batch of {@value #BATCH_SIZE} tweets, the way the output was written before the sinks
+     */
+    @Benchmark
+    public File writeToCsv() throws IOException {
+        AppUtils.writeToCsv(appendFile, batch, true);
+        return appendFile;
+    }
+}
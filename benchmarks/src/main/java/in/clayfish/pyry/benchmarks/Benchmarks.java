@@ -0,0 +1,41 @@
+package in.clayfish.pyry.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the usual JMH options, e.g. {@code java -jar bin/benchmarks.jar ParserBenchmark -prof gc}. Unless a result
+ * file is asked for with {@code -rf}/{@code -rff}, the results are also saved as JSON in
+ * {@code results/<version of the scraper>-<time>.json}, to compare the releases with.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean listOnly = arguments.contains("-l") || arguments.contains("-lp") || arguments.contains("-h");
+
+        if (!listOnly && !arguments.contains("-rf") && !arguments.contains("-rff")) {
+            File results = new File("results");
+            if (!results.exists() && !results.mkdirs()) {
+                throw new IOException("Cannot create " + results.getAbsolutePath());
+            }
+
+            String version = Benchmarks.class.getPackage().getImplementationVersion();
+            arguments.addAll(Arrays.asList("-rf", "json", "-rff", new File(results, String.format("%s-%s.json",
+                    version == null ? "dev" : version, new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()))).getPath()));
+        }
+
+        Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+}
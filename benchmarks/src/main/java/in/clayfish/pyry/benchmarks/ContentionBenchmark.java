@@ -0,0 +1,169 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.io.CsvSink;
+import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.parsers.StreamingConversationParser;
+import in.clayfish.pyry.utils.AppUtils;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The CSV helpers of {@link AppUtils} on 1, 2, 4 and as many threads as there are CPUs, the way {@code concurrent-threads} extractors
+ * call them: {@code writeToCsv} with every thread appending to a file of its own, and {@code readNthRecord} with all the threads
+ * reading random lines of one shared file. The throughput should grow with the threads, as long as there are CPUs and disk to spare.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentionBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"100000"})
+    public int records;
+
+    private File folder;
+    private File sharedFile;
+    private List<Tweet> batch;
+    private final AtomicInteger threadNumbers = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("twitter-scraper-benchmark").toFile();
+        sharedFile = new File(folder, "first-level-1.csv");
+        batch = new ArrayList<>();
+
+        StreamingConversationParser parser = new StreamingConversationParser(RecordedPages.getUsername());
+        List<Tweet> tweets = new ArrayList<>();
+        for (RecordedPages.Page page : RecordedPages.statusPages()) {
+            tweets.addAll(parser.parse(1, page.getId(), page.getBody()).getTweets());
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(tweets.get(i % tweets.size()));
+        }
+
+        try (CsvSink sink = new CsvSink(sharedFile, Long.MAX_VALUE, () -> {
+            throw new IllegalStateException("The benchmark file does not roll over");
+        }, 1 << 16, Long.MAX_VALUE, false)) {
+            for (int i = 0; i < records; i++) {
+                sink.append(1_000_000_000_000_000L + i);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File each : files) {
+                each.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * The output file of one thread, emptied before every iteration
+     */
+    @State(Scope.Thread)
+    public static class Output {
+        private File file;
+
+        @Setup
+        public void setUp(final ContentionBenchmark benchmark) {
+            file = new File(benchmark.folder, String.format("second-level-%d-1.csv", benchmark.threadNumbers.incrementAndGet()));
+        }
+
+        @Setup(Level.Iteration)
+        public void truncate() throws IOException {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public File writeToCsv1(final Output output) throws IOException {
+        return writeToCsv(output);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public File writeToCsv2(final Output output) throws IOException {
+        return writeToCsv(output);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public File writeToCsv4(final Output output) throws IOException {
+        return writeToCsv(output);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public File writeToCsvAllCpus(final Output output) throws IOException {
+        return writeToCsv(output);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public CSVRecord readNthRecord1() throws IOException {
+        return readNthRecord();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public CSVRecord readNthRecord2() throws IOException {
+        return readNthRecord();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CSVRecord readNthRecord4() throws IOException {
+        return readNthRecord();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public CSVRecord readNthRecordAllCpus() throws IOException {
+        return readNthRecord();
+    }
+
+    /**
+     * Appends a batch of {@value #BATCH_SIZE} tweets to the file of the thread
+     */
+    private File writeToCsv(final Output output) throws IOException {
+        AppUtils.writeToCsv(output.file, batch, true);
+        return output.file;
+    }
+
+    private CSVRecord readNthRecord() throws IOException {
+        return AppUtils.readNthRecord(sharedFile, ThreadLocalRandom.current().nextInt(records));
+    }
+}
@@ -0,0 +1,70 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.io.IdAllocator;
+import in.clayfish.pyry.utils.AppUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversation IDs handed out by the {@link IdAllocator} to as many threads as there are CPUs, as the extractors of step 2 take them,
+ * against one lock shared by all the threads, the way {@link AppUtils} handed them out before.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class IdAllocatorBenchmark {
+    /**
+     * Same as the blocks of the conversation IDs of {@link AppUtils}
+     */
+    private static final int BLOCK_SIZE = 1000;
+
+    private File file;
+    private IdAllocator allocator;
+    private long lastId;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("twitter-scraper-benchmark", ".hwm").toFile();
+        file.delete();
+        allocator = new IdAllocator(file, 0, BLOCK_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long allocator() {
+        return allocator.next();
+    }
+
+    @Benchmark
+    public long sharedLock() {
+        synchronized (this) {
+            return ++lastId;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.enums.OutputFormat;
+import in.clayfish.pyry.io.ColumnarReader;
+import in.clayfish.pyry.io.ColumnarWriter;
+import in.clayfish.pyry.io.ConversationWriter;
+import in.clayfish.pyry.io.CsvConversationWriter;
+import in.clayfish.pyry.io.CsvDecoder;
+import in.clayfish.pyry.io.CsvSink;
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.parsers.StreamingConversationParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing {@code conversations} conversations of step 2 in each of the output formats, and reading them back the way the tools
+ * downstream do. Every operation writes, or reads, all of them. The size of the output of every format is printed once it is written.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark {
+    private static final String CSV = "csv";
+    private static final String COMPRESSED_CSV = "compressed-csv";
+    private static final String COLUMNAR = "columnar";
+
+    @Param({"10000"})
+    public int conversations;
+
+    @Param({CSV, COMPRESSED_CSV, COLUMNAR})
+    public String format;
+
+    private File folder;
+    private File file;
+    private File writeFile;
+    private List<Conversation> output;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("twitter-scraper-benchmark").toFile();
+        file = new File(folder, "second-level-1-1." + extension());
+        writeFile = new File(folder, "second-level-2-1." + extension());
+        output = new ArrayList<>(conversations);
+
+        StreamingConversationParser parser = new StreamingConversationParser(RecordedPages.getUsername());
+        List<RecordedPages.Page> pages = RecordedPages.statusPages();
+        for (int i = 0; i < conversations; i++) {
+            RecordedPages.Page page = pages.get(i % pages.size());
+            output.add(parser.parse(i + 1, page.getId(), page.getBody()));
+        }
+
+        write(file);
+        System.out.println(String.format("%n%s: %d conversations take %d bytes", format, conversations, file.length()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        writeFile.delete();
+        folder.delete();
+    }
+
+    @Benchmark
+    public File write() throws IOException {
+        Files.deleteIfExists(writeFile.toPath());
+        write(writeFile);
+        return writeFile;
+    }
+
+    /**
+     * Reads every field of every tweet
+     */
+    @Benchmark
+    public void readTweets(final Blackhole blackhole) throws IOException {
+        if (COLUMNAR.equals(format)) {
+            ColumnarReader reader = new ColumnarReader(file);
+            try {
+                while (reader.nextBlock()) {
+                    for (int row = 0; row < reader.getRowCount(); row++) {
+                        blackhole.consume(reader.getTweet(row));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } else {
+            for (CsvDecoder decoder = CsvDecoder.open(file); decoder.next(); ) {
+                blackhole.consume(new Tweet().fromRecord(decoder));
+            }
+        }
+    }
+
+    /**
+     * Reads the IDs of the tweets and of their conversations only
+     */
+    @Benchmark
+    public void readIds(final Blackhole blackhole) throws IOException {
+        if (COLUMNAR.equals(format)) {
+            ColumnarReader reader = new ColumnarReader(file);
+            try {
+                while (reader.nextBlock()) {
+                    for (int row = 0; row < reader.getRowCount(); row++) {
+                        blackhole.consume(reader.getId(row));
+                        blackhole.consume(reader.getConversationId(row));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } else {
+            for (CsvDecoder decoder = CsvDecoder.open(file); decoder.next(); ) {
+                blackhole.consume(decoder.getLong(0));
+                blackhole.consume(decoder.getLong(1));
+            }
+        }
+    }
+
+    private void write(final File target) throws IOException {
+        CsvSink.RollOver rollOver = () -> {
+            throw new IllegalStateException("The benchmark file does not roll over");
+        };
+
+        try (ConversationWriter writer = COLUMNAR.equals(format) ? new ColumnarWriter(target, Long.MAX_VALUE, rollOver)
+                : new CsvConversationWriter(new CsvSink(target, Long.MAX_VALUE, rollOver, 1 << 16, Long.MAX_VALUE,
+                COMPRESSED_CSV.equals(format)))) {
+            for (Conversation conversation : output) {
+                writer.write(conversation);
+            }
+        }
+    }
+
+    private String extension() {
+        return (COLUMNAR.equals(format) ? OutputFormat.COLUMNAR : OutputFormat.CSV).getExtension();
+    }
+}
@@ -0,0 +1,79 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.parsers.ConversationParser;
+import in.clayfish.pyry.parsers.DomConversationParser;
+import in.clayfish.pyry.parsers.StreamingConversationParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the permalink pages into their conversations in step 2, with either of the {@code pipeline.parser}s. Every operation reads
+ * all the recorded pages. Run it with {@code -prof gc} to see what a page allocates.
+ * <p>
+ * Before measuring, every page is read with both the parsers and the run fails if they do not read the same tweets.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"streaming", "dom"})
+    public String parser;
+
+    private ConversationParser conversationParser;
+    private List<RecordedPages.Page> statusPages;
+
+    @Setup
+    public void setUp() throws IOException {
+        String username = RecordedPages.getUsername();
+        conversationParser = "dom".equals(parser) ? new DomConversationParser(username) : new StreamingConversationParser(username);
+        statusPages = RecordedPages.statusPages();
+
+        for (RecordedPages.Page page : statusPages) {
+            String[] dom = records(new DomConversationParser(username).parse(1, page.getId(), page.getBody()));
+            String[] streaming = records(new StreamingConversationParser(username).parse(1, page.getId(), page.getBody()));
+            if (!Arrays.equals(dom, streaming)) {
+                throw new IllegalStateException(String.format("The parsers read the page of %s differently:%n%s%n%s", page.getId(),
+                        String.join("\n", dom), String.join("\n", streaming)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseConversation(final Blackhole blackhole) {
+        for (RecordedPages.Page page : statusPages) {
+            blackhole.consume(conversationParser.parse(1, page.getId(), page.getBody()));
+        }
+    }
+
+    /**
+     * @return Records of the tweets of the conversation, sorted as the tweets of a conversation are in no particular order
+     */
+    private static String[] records(final Conversation conversation) {
+        String[] records = conversation.toString().split("\r?\n");
+        Arrays.sort(records);
+        return records;
+    }
+}
@@ -0,0 +1,32 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.utils.ApplicationProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the {@link ApplicationProperties} from the {@code config/application.properties} bundled with the scraper
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertiesBenchmark {
+
+    @Benchmark
+    public ApplicationProperties load() throws IOException {
+        return new ApplicationProperties("config/application.properties");
+    }
+}
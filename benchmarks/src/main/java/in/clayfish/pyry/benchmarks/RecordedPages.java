@@ -0,0 +1,125 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.replay.Fixtures;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pages the benchmarks run on. They are the fixtures bundled with the benchmarks, unless {@code -Dfixtures=<folder>} points to a folder
+ * recorded with {@code http.record-folder} (see {@link Fixtures}), in which case {@code -Dfixtures.username} should be the handle the
+ * pages were recorded for.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public final class RecordedPages {
+    private static final String BUNDLED = "fixtures/";
+    private static final String INDEX = BUNDLED + "index.txt";
+
+    private RecordedPages() {
+    }
+
+    /**
+     * @return Handle of the user the permalink pages were recorded for
+     */
+    public static String getUsername() {
+        return System.getProperty("fixtures.username", "virginmedia");
+    }
+
+    /**
+     * @return Permalink pages of the tweets
+     * @throws IOException
+     */
+    public static List<Page> statusPages() throws IOException {
+        return load(Fixtures.STATUS);
+    }
+
+    /**
+     * @return Pages of the search timeline
+     * @throws IOException
+     */
+    public static List<Page> timelinePages() throws IOException {
+        return load(Fixtures.TIMELINE);
+    }
+
+    private static List<Page> load(final String kind) throws IOException {
+        List<Page> pages = new ArrayList<>();
+        String folder = System.getProperty("fixtures");
+
+        if (folder != null) {
+            File[] files = new File(folder, kind).listFiles((dir, name) -> name.matches("\\d+\\.\\w+"));
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    pages.add(new Page(idOf(file.getName()), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)));
+                }
+            }
+        } else {
+            try (BufferedReader index = new BufferedReader(new InputStreamReader(open(INDEX), StandardCharsets.UTF_8))) {
+                for (String path; (path = index.readLine()) != null; ) {
+                    if (path.startsWith(kind + "/")) {
+                        pages.add(new Page(idOf(path.substring(path.indexOf('/') + 1)), read(BUNDLED + path)));
+                    }
+                }
+            }
+        }
+
+        if (pages.isEmpty()) {
+            throw new IllegalStateException(String.format("No %s pages in %s", kind, folder == null ? "the bundled fixtures" : folder));
+        }
+        return pages;
+    }
+
+    private static String idOf(final String fileName) {
+        return fileName.substring(0, fileName.indexOf('.'));
+    }
+
+    private static InputStream open(final String resource) throws IOException {
+        InputStream in = RecordedPages.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Missing resource " + resource);
+        }
+        return in;
+    }
+
+    private static String read(final String resource) throws IOException {
+        try (InputStream in = open(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * One recorded response
+     */
+    public static final class Page {
+        /**
+         * ID of the tweet of a permalink page, or the position of a page of the timeline
+         */
+        @Getter
+        private final String id;
+
+        @Getter
+        private final String body;
+
+        private Page(final String id, final String body) {
+            this.id = id;
+            this.body = body;
+        }
+    }
+}
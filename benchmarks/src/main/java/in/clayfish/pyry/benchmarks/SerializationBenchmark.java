@@ -0,0 +1,108 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.io.CsvDecoder;
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.parsers.StreamingConversationParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting the tweets to their CSV records and back. Every operation converts all the tweets of the recorded pages. Run it with
+ * {@code -prof gc} to see what a record allocates.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    private List<Conversation> conversations;
+    private List<Tweet> tweets;
+    private List<String> records;
+    private ByteBuffer recordBytes;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        conversations = new ArrayList<>();
+        tweets = new ArrayList<>();
+        records = new ArrayList<>();
+        buffer = new StringBuilder(4096);
+
+        StreamingConversationParser parser = new StreamingConversationParser(RecordedPages.getUsername());
+        long conversationId = 1;
+        for (RecordedPages.Page page : RecordedPages.statusPages()) {
+            Conversation conversation = parser.parse(conversationId++, page.getId(), page.getBody());
+            conversations.add(conversation);
+            for (Tweet tweet : conversation.getTweets()) {
+                tweets.add(tweet);
+                records.add(tweet.toString());
+            }
+        }
+        recordBytes = ByteBuffer.wrap(String.join("\r\n", records).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void tweetToString(final Blackhole blackhole) {
+        for (Tweet tweet : tweets) {
+            blackhole.consume(tweet.toString());
+        }
+    }
+
+    /**
+     * How the sinks write the tweets, into one reused buffer
+     */
+    @Benchmark
+    public void tweetToRecord(final Blackhole blackhole) {
+        for (Tweet tweet : tweets) {
+            buffer.setLength(0);
+            blackhole.consume(tweet.toRecord(buffer));
+        }
+    }
+
+    @Benchmark
+    public void tweetFromRecord(final Blackhole blackhole) {
+        for (String record : records) {
+            blackhole.consume(new Tweet().fromRecord(record));
+        }
+    }
+
+    /**
+     * How the readers of the output read the tweets, with one decoder over all the records
+     */
+    @Benchmark
+    public void tweetFromDecoder(final Blackhole blackhole) {
+        CsvDecoder decoder = new CsvDecoder(recordBytes.duplicate());
+        while (decoder.next()) {
+            blackhole.consume(new Tweet().fromRecord(decoder));
+        }
+    }
+
+    @Benchmark
+    public void conversationToString(final Blackhole blackhole) {
+        for (Conversation conversation : conversations) {
+            blackhole.consume(conversation.toString());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package in.clayfish.pyry.benchmarks;
+
+import in.clayfish.pyry.parsers.TimelineScanner;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the pages of the search timeline into their tweet IDs in step 1, with the {@link TimelineScanner} and with the JSON parser
+ * plus Jsoup it replaced. Every operation reads all the recorded pages.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineBenchmark {
+    private List<RecordedPages.Page> timelinePages;
+    private TimelineScanner scanner;
+    private JSONParser jsonParser;
+
+    @Setup
+    public void setUp() throws IOException {
+        timelinePages = RecordedPages.timelinePages();
+        scanner = new TimelineScanner();
+        jsonParser = new JSONParser();
+    }
+
+    @Benchmark
+    public void scanTimeline(final Blackhole blackhole) {
+        for (RecordedPages.Page page : timelinePages) {
+            if (!scanner.scan(page.getBody())) {
+                throw new IllegalStateException("Could not scan the timeline " + page.getId());
+            }
+            blackhole.consume(scanner.getItemIds());
+            blackhole.consume(scanner.getMinPosition());
+        }
+    }
+
+    /**
+     * How step 1 read a page of the timeline before the {@link TimelineScanner}, kept as the baseline
+     */
+    @Benchmark
+    public void parseTimelineWithJsoup(final Blackhole blackhole) throws ParseException {
+        for (RecordedPages.Page page : timelinePages) {
+            JSONObject json = (JSONObject) jsonParser.parse(page.getBody());
+            for (Element streamItem : Jsoup.parse((String) json.get("items_html")).select("li.stream-item")) {
+                blackhole.consume(Long.parseLong(streamItem.attr("data-item-id")));
+            }
+            blackhole.consume(json.get("min_position"));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package in.clayfish.pyry;
 
+import in.clayfish.pyry.enums.Mode;
 import in.clayfish.pyry.utils.AppUtils;
 import in.clayfish.pyry.utils.ApplicationProperties;
 import org.apache.logging.log4j.LogManager;
@@ -19,26 +20,23 @@ public class Application {
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
-        System.setProperty("log4j.configurationFile", "config/log4j2.xml");
         System.setProperty("twitter-scraper.configurationFile", "config/application.properties");
-
-        Logger logger = LogManager.getLogger(Application.class);
-
         ApplicationProperties props = new ApplicationProperties();
 
-        if (props.getOutputFolder().exists()) {
-            if (!props.getOutputFolder().isDirectory()) {
-                throw new IllegalStateException("Please check output folder: " + props.getOutputFolder().getPath());
-            }
-        } else {
-            boolean created = props.getOutputFolder().mkdirs();
-            if (!created) {
-                throw new IllegalStateException("Cannot create output folder: " + props.getOutputFolder().getPath());
-            }
+        // Logging is configured for the mode, unless a configuration is given on the command line
+        if (System.getProperty("log4j.configurationFile") == null) {
+            System.setProperty("log4j.configurationFile",
+                    props.getMode() == Mode.PROD ? "config/log4j2-production.xml" : "config/log4j2.xml");
         }
+        Logger logger = LogManager.getLogger(Application.class);
 
-        AppUtils.initialize(props);
-        logger.debug(String.format("First: %d\tLast: %d", AppUtils.getLatestTweetIdFetched(1), AppUtils.getOldestTweetIdFetched(1)));
+        // With a list of handles, the scheduler sets up the output folder of every handle
+        if (props.getTargetHandlesFile() == null || props.getTargetHandlesFile().isEmpty()) {
+            AppUtils.createOutputFolder(props);
+            AppUtils.initialize(props);
+            logger.debug(String.format("First: %d\tLast: %d", AppUtils.getLatestTweetIdFetched(props, 1),
+                    AppUtils.getOldestTweetIdFetched(props, 1)));
+        }
 
         new TwitterScraper(props).scrape();
     }
@@ -1,12 +1,15 @@
 package in.clayfish.pyry;
 
 import in.clayfish.pyry.extractors.ConversationExtractor;
+import in.clayfish.pyry.extractors.TweetIdChannel;
 import in.clayfish.pyry.extractors.TweetIdExtractor;
-import in.clayfish.pyry.utils.AppUtils;
+import in.clayfish.pyry.metrics.Metrics;
+import in.clayfish.pyry.scheduler.Scheduler;
 import in.clayfish.pyry.utils.ApplicationProperties;
-import in.clayfish.pyry.utils.Converter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutorService;
@@ -31,16 +34,23 @@ public class TwitterScraper {
 
     public void scrape() throws IOException {
         startTime = System.currentTimeMillis();
+        Metrics.getInstance().start(props);
 
         ExecutorService executorService = Executors.newFixedThreadPool(props.getNumberOfConcurrentThreads());
-        if (props.getStep() == 1) {
+        if (props.getTargetHandlesFile() != null && !props.getTargetHandlesFile().isEmpty()) {
+            // Every handle listed runs the step, sharing the requests in flight
+            executorService.submit(new Scheduler(props));
+        } else if (props.isStreaming()) {
+            // Both the steps run along, the tweet IDs found by step 1 go to step 2 in memory
+            TweetIdChannel channel = new TweetIdChannel(props.getStreamingBuffer() > 0 ? props.getStreamingBuffer() : 100000);
+            executorService.submit(new TweetIdExtractor(props, null, channel));
+            executorService.submit(new ConversationExtractor(props, null, channel));
+        } else if (props.getStep() == 1) {
+            // The extractor crawls concurrent-threads windows of the timeline in parallel, on its own threads
             executorService.submit(new TweetIdExtractor(props));
         } else {
-            final long totalRecords = AppUtils.getLineCount(Converter.TO_FILE.apply(String.format("%s/first-level-1.csv", props.getOutputFolder())));
-            final long recordsToProcess = totalRecords/props.getNumberOfConcurrentThreads();
-            for (int i = 0; i < props.getNumberOfConcurrentThreads(); i++) {
-                executorService.submit(new ConversationExtractor(props, i, recordsToProcess));
-            }
+            // The extractor runs its own stages, network concurrency is governed by pipeline.in-flight
+            executorService.submit(new ConversationExtractor(props));
         }
 
         // We may want to spawn more than one conversationExtractors one for each first-level output file
@@ -62,7 +72,13 @@ public class TwitterScraper {
                 }
                 logger.debug("Done cleaning");
             }
-            logger.info(String.format("Process took %d seconds", (System.currentTimeMillis() - startTime) / 1000));
+            Metrics metrics = Metrics.getInstance();
+            metrics.stop();
+            logger.info("Process took {} seconds, made {} requests ({} failed) and wrote {} records",
+                    (System.currentTimeMillis() - startTime) / 1000, metrics.getRequests(), metrics.getFailedRequests(), metrics.getRecordsWritten());
+
+            // The shutdown hook of log4j is disabled in production, the asynchronous loggers are drained here instead
+            Configurator.shutdown((LoggerContext) LogManager.getContext(false));
         }));
 
         // Shutting down the executorService. This shuts down when it has finished running all the submitted jobs and do not accept any more jobs.
@@ -0,0 +1,47 @@
+package in.clayfish.pyry.enums;
+
+import java.util.stream.Stream;
+
+/**
+ * Formats the conversations of step 2 can be saved in
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public enum OutputFormat {
+    /**
+     * One tweet per line, RFC 4180
+     */
+    CSV("csv"),
+
+    /**
+     * Blocks of tweets stored column by column, see {@link in.clayfish.pyry.io.ColumnarWriter}
+     */
+    COLUMNAR("tcol");
+
+    private final String extension;
+
+    OutputFormat(final String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return Extension of the output files, without the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param search Name or extension of the format
+     * @return The format found, {@link #CSV} if nothing is given
+     */
+    public static OutputFormat find(String search) {
+        if (search == null || search.trim().isEmpty()) {
+            return CSV;
+        }
+        return Stream.of(OutputFormat.values())
+                .filter(format -> format.name().equalsIgnoreCase(search.trim()) || format.extension.equalsIgnoreCase(search.trim())).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown output format: " + search));
+    }
+}
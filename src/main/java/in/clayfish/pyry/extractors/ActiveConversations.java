@@ -0,0 +1,112 @@
+package in.clayfish.pyry.extractors;
+
+import in.clayfish.pyry.utils.AppUtils;
+import in.clayfish.pyry.utils.Converter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Conversations which may still be growing, i.e. whose first tweet was posted in the last {@code refresh.active-days} days, by the
+ * tweet ID they were fetched for. They are kept in {@code active-conversations.csv}, so that {@code target.refresh} can fetch them
+ * again and save their new replies under the same conversation ID, without reading the second-level files.
+ * <p>
+ * The conversations get older than the period as time goes by and are forgotten, so the file stays in proportion to the recent
+ * activity of the handle, not to its history.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class ActiveConversations {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final File file;
+    private final long period;
+    private final TreeMap<Long, Long> conversations;
+    private boolean changed;
+
+    /**
+     * @param folder The output folder
+     * @param days   Number of days a conversation is active for, after its first tweet
+     * @throws IOException
+     */
+    public ActiveConversations(final File folder, final int days) throws IOException {
+        if (days < 1) {
+            throw new IllegalArgumentException("days should be greater than 0, found " + days);
+        }
+        this.file = new File(folder, "active-conversations.csv");
+        this.period = days * DAY;
+        this.conversations = new TreeMap<>();
+
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * @param tweetId        The tweet ID the conversation was fetched for
+     * @param conversationId ID of the conversation
+     */
+    public synchronized void add(final long tweetId, final long conversationId) {
+        if (tweetId >= getOldestActiveId() && conversations.put(tweetId, conversationId) == null) {
+            changed = true;
+        }
+    }
+
+    /**
+     * @return The active conversations, from the tweet ID they were fetched for to their ID, oldest first
+     */
+    public synchronized Map<Long, Long> getConversations() {
+        prune();
+        return new TreeMap<>(conversations);
+    }
+
+    /**
+     * Saves the conversations which are still active, atomically replacing the previous file, if anything has changed. To be called
+     * once the conversations added are on the disk.
+     *
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        prune();
+        if (!changed) {
+            return;
+        }
+
+        StringBuilder contents = new StringBuilder();
+        for (Map.Entry<Long, Long> conversation : conversations.entrySet()) {
+            contents.append(conversation.getKey()).append(',').append(conversation.getValue()).append("\r\n");
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        Files.write(tempFile.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        changed = false;
+    }
+
+    private void prune() {
+        long oldest = getOldestActiveId();
+        while (!conversations.isEmpty() && conversations.firstKey() < oldest) {
+            conversations.pollFirstEntry();
+            changed = true;
+        }
+    }
+
+    private long getOldestActiveId() {
+        return TimelineWindows.idAt(System.currentTimeMillis() - period);
+    }
+
+    private void load() throws IOException {
+        for (CSVRecord record : AppUtils.readCsvFile(file, 0, Long.MAX_VALUE)) {
+            conversations.put(Converter.TO_LONG.apply(record.get(0)), Converter.TO_LONG.apply(record.get(1)));
+        }
+    }
+}
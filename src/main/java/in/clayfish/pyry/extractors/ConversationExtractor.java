@@ -1,24 +1,49 @@
 package in.clayfish.pyry.extractors;
 
+import in.clayfish.pyry.io.ConversationWriter;
+import in.clayfish.pyry.io.InputCursor;
+import in.clayfish.pyry.io.SeenIds;
+import in.clayfish.pyry.metrics.Metrics;
 import in.clayfish.pyry.models.Conversation;
 import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.parsers.ConversationParser;
+import in.clayfish.pyry.parsers.DomConversationParser;
+import in.clayfish.pyry.parsers.StreamingConversationParser;
+import in.clayfish.pyry.scheduler.FairShare;
 import in.clayfish.pyry.utils.*;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.Connection;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Second-level extractor. It runs as a pipeline of stages connected through bounded queues, so that a slow stage holds back the ones
+ * feeding it instead of piling up work in memory.
+ * <ol>
+ * <li>A producer takes chunks of the first-level files from the {@link WorkQueue} and reads their tweet IDs. When step 1 runs along,
+ * the producer waits for it to save more instead of ending, and most chunks come with their tweet IDs in memory.</li>
+ * <li>Fetchers keep up to {@code pipeline.in-flight} requests in flight. A tweet already written as part of another conversation is
+ * not fetched again.</li>
+ * <li>Parsers, one per CPU unless configured otherwise, convert the pages to conversations</li>
+ * <li>A single writer, the thread running this extractor, saves the conversations and the progress of every chunk</li>
+ * </ol>
+ * Every {@code checkpoint.interval} the writer makes the output durable and then saves the progress along with the length of the
+ * output. Anything written after the last checkpoint is cut off on restart and done again, so a conversation is saved exactly once even
+ * if the process is killed.
+ * <p>
+ * With {@code target.refresh} the producer first hands out the {@link ActiveConversations}, which are fetched again even though they
+ * have been written, and only their tweets not written yet are saved, under the ID the conversation was saved with.
+ *
  * @author shuklaalok7
  * @since 18/01/16
  */
@@ -26,184 +51,427 @@ public class ConversationExtractor extends Extractor {
 
     private final static Logger logger = LogManager.getLogger(ConversationExtractor.class);
 
-    private final File counterFile;
+    /**
+     * Marks the end of the stream of items in every queue
+     */
+    private static final Item POISON = new Item(null, -1, null, 0, 0);
+
+    /**
+     * All the conversations are written by a single writer, numbered 0 in the output file names
+     */
+    private static final int WRITER_NUMBER = 0;
+
     private final String urlTemplate;
-    private final int threadNumber;
+    private final WorkQueue workQueue;
+    private final int inFlight;
+    private final int parseThreads;
+    private final ConversationParser parser;
+    private final SeenIds writtenTweetIds;
+    private final long checkpointInterval;
+
+    private final BlockingQueue<Item> fetchQueue;
+    private final BlockingQueue<Item> parseQueue;
+    private final BlockingQueue<Item> writeQueue;
+    private final AtomicInteger runningFetchers;
+    private final AtomicInteger runningParsers;
+    private final Metrics metrics;
+    private final LogSampler logSampler;
 
-    public ConversationExtractor(final ApplicationProperties props, final int threadNumber, final long recordsToProcess) throws IOException {
-        super(props);
-        this.threadNumber = threadNumber;
-        counterFile = new File(String.format("%s/%s-%d.csv", props.getOutputFolder(), "counter-second-level", threadNumber));
+    /**
+     * Channel from step 1, {@code null} if it does not run along
+     */
+    private final TweetIdChannel channel;
+
+    private final ActiveConversations activeConversations;
+
+    /**
+     * Conversations to fetch again before the first-level files, {@code null} if they are not refreshed
+     */
+    private final Map<Long, Long> refreshing;
+
+    public ConversationExtractor(final ApplicationProperties props) throws IOException {
+        this(props, null, null);
+    }
+
+    /**
+     * @param props The application properties of the target handle
+     * @param share Share of the requests in flight of the handle, {@code null} if it is the only handle
+     * @throws IOException
+     */
+    public ConversationExtractor(final ApplicationProperties props, final FairShare.Tenant share) throws IOException {
+        this(props, share, null);
+    }
+
+    /**
+     * @param props   The application properties of the target handle
+     * @param share   Share of the requests in flight of the handle, {@code null} if it is the only handle
+     * @param channel Channel from step 1 running along, {@code null} if step 1 is done
+     * @throws IOException
+     */
+    public ConversationExtractor(final ApplicationProperties props, final FairShare.Tenant share, final TweetIdChannel channel)
+            throws IOException {
+        super(props, share);
+        this.channel = channel;
         urlTemplate = String.format("https://twitter.com/%s/status/%%s", props.getTargetUsername());
+        inFlight = props.getInFlightRequests() > 0 ? props.getInFlightRequests() : props.getNumberOfConcurrentThreads();
+        workQueue = new WorkQueue(props.getOutputFolder(), props.getChunkSize() > 0 ? props.getChunkSize() : 1000, channel);
+        parseThreads = props.getParseThreads() > 0 ? props.getParseThreads() : Runtime.getRuntime().availableProcessors();
+        parser = "dom".equalsIgnoreCase(props.getParser()) ? new DomConversationParser(props.getTargetUsername())
+                : new StreamingConversationParser(props.getTargetUsername());
 
-        if (!counterFile.exists()) {
-            boolean created = counterFile.createNewFile();
-            if (!created) {
-                throw new IllegalStateException("Thread " + threadNumber + ": second-level-counter.csv does not exist and could not be created.");
-            }
+        checkpointInterval = props.getCheckpointInterval() > 0 ? props.getCheckpointInterval() : props.getFlushInterval();
+        rollBack();
+        writtenTweetIds = new SeenIds(new File(props.getOutputFolder(), "seen-second-level.ids"), props.isInMemoryDedup());
+        activeConversations = new ActiveConversations(props.getOutputFolder(), props.getActiveDays() > 0 ? props.getActiveDays() : 7);
+        if (props.isRefresh() && props.isInMemoryDedup()) {
+            logger.warn("The conversations written already are not refreshed with dedup.in-memory, their tweets would be written again");
+        }
+        refreshing = props.isRefresh() && !props.isInMemoryDedup() ? activeConversations.getConversations() : null;
 
-            List<String> contents = new ArrayList<>();
-            if (threadNumber < (props.getNumberOfConcurrentThreads() - 1)) {
-                contents.add(String.format("1,%d,%d", threadNumber * recordsToProcess, (threadNumber + 1) * recordsToProcess));
-            } else {
-                contents.add(String.format("1,%d,%d", threadNumber * recordsToProcess, AppUtils.getLineCount(Converter.TO_FILE.apply(String.format("%s/first-level-1.csv", props.getOutputFolder())))));
+        fetchQueue = new ArrayBlockingQueue<>(inFlight);
+        parseQueue = new ArrayBlockingQueue<>(inFlight);
+        writeQueue = new ArrayBlockingQueue<>(parseThreads * 4);
+        runningFetchers = new AtomicInteger(inFlight);
+        runningParsers = new AtomicInteger(parseThreads);
+
+        logSampler = new LogSampler(props.getLogSampleInterval());
+        metrics = Metrics.getInstance();
+        metrics.queue(metricName("fetch"), fetchQueue::size);
+        metrics.queue(metricName("parse"), parseQueue::size);
+        metrics.queue(metricName("write"), writeQueue::size);
+        metrics.progress(metricName("step-2"), () -> {
+            try {
+                return workQueue.getProgress();
+            } catch (IOException e) {
+                return Double.NaN;
             }
-            AppUtils.writeToCsv(counterFile, contents, false);
-        }
+        });
 
-        jsoupWrapper = new JsoupWrapper(props, true);
+        jsoupWrapper = JsoupWrapper.getInstance(props);
+        jsoupWrapper.init();
     }
 
     @Override
-    public void run() {
-        int currentInputLineIndex, currentInputFileIndex;
-        final int lastLineIndex;
-        File currentInputFile, currentOutputFile;
-
+    public long getBacklog() {
         try {
-            CSVRecord stateRecord = AppUtils.readFirstRecord(counterFile);
-            currentInputFileIndex = Converter.TO_INT.apply(stateRecord.get(0));
-            currentInputLineIndex = Converter.TO_INT.apply(stateRecord.get(1));
-            lastLineIndex = Converter.TO_INT.apply(stateRecord.get(2));
+            return workQueue.getBacklog();
         } catch (IOException e) {
-            e.printStackTrace();
-            throw new IllegalStateException("Could not find the line number to start fetching the conversations");
+            return 0;
         }
+    }
 
-        try {
-            currentInputFile = new File(String.format("%s/first-level-%d.csv", props.getOutputFolder().getPath(), currentInputFileIndex));
-            currentOutputFile = AppUtils.getCurrentOutputFile(2, threadNumber);
+    @Override
+    public void run() {
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+        ExecutorService fetchers = Executors.newFixedThreadPool(inFlight);
+        ExecutorService parsers = Executors.newFixedThreadPool(parseThreads);
 
-            while (currentInputFile.exists() && currentInputLineIndex < lastLineIndex) {
-                if (Thread.interrupted()) {
-                    try {
-                        AppUtils.writeToCsv(counterFile, String.format("%d,%d,%d", currentInputFileIndex, currentInputLineIndex, lastLineIndex), false);
-                    } catch (IOException e) {
-                        e.printStackTrace();
+        producer.submit(this::produce);
+        for (int i = 0; i < inFlight; i++) {
+            fetchers.submit(this::fetch);
+        }
+        for (int i = 0; i < parseThreads; i++) {
+            parsers.submit(this::parse);
+        }
+
+        try (ConversationWriter writer = ConversationWriter.open(props, WRITER_NUMBER)) {
+            try {
+                long lastCheckpoint = System.currentTimeMillis();
+                for (Item item; (item = writeQueue.poll(props.getFlushInterval(), TimeUnit.MILLISECONDS)) != POISON; ) {
+                    if (item != null) {
+                        write(writer, item);
+                    }
+
+                    if (System.currentTimeMillis() - lastCheckpoint >= checkpointInterval) {
+                        checkpoint(writer);
+                        lastCheckpoint = System.currentTimeMillis();
                     }
-                    logger.warn(MessageFormat.format("Thread {0}: {1} is interrupted", threadNumber, this.getClass().getSimpleName()));
-                    break;
                 }
+            } catch (InterruptedException e) {
+                logger.warn(MessageFormat.format("{0} is interrupted", this.getClass().getSimpleName()));
+            }
 
-                /*
-                * The steps here are as following
-                * 1. Read the current input file and line to read from counterFile
-                * 2. Read the tweet ID at the specified line in the specified input file
-                * 3. Fetch conversation involving that tweet
-                * 4. Convert the html to tweets, give them same conversationId
-                * 5. Save them in the outputFile
-                *
-                * */
-
-                CSVRecord csvRecord = null;
-                try {
-                    csvRecord = AppUtils.readNthRecord(currentInputFile, currentInputLineIndex);
-                } catch (IOException e) {
-                    e.printStackTrace();
+            checkpoint(writer);
+        } catch (IOException e) {
+            logger.error("Could not save the conversations", e);
+        } finally {
+            producer.shutdownNow();
+            fetchers.shutdownNow();
+            parsers.shutdownNow();
+            try {
+                writtenTweetIds.close();
+            } catch (IOException e) {
+                logger.error("Could not close the written tweet IDs", e);
+            }
+        }
+    }
+
+    /**
+     * Producer stage. Takes the chunks one after the other, and ends every chunk with a seal so the writer knows when it is done.
+     */
+    private void produce() {
+        try {
+            if (refreshing != null) {
+                logger.info("Refreshing {} conversations which may still be growing", refreshing.size());
+                Batch batch = new Batch(null);
+                for (Map.Entry<Long, Long> conversation : refreshing.entrySet()) {
+                    fetchQueue.put(new Item(batch, batch.produced++, String.valueOf(conversation.getKey()), 0, conversation.getValue()));
                 }
-                if (csvRecord == null) {
-                    currentInputFileIndex++;
-                    currentInputFile = new File(String.format("%s/first-level-%d.csv", props.getOutputFolder().getPath(), currentInputFileIndex));
+            }
+
+            for (WorkQueue.Chunk chunk; (chunk = nextChunk()) != null; ) {
+                Batch batch = new Batch(chunk);
+                logger.debug("Producing {}", chunk);
+
+                if (chunk.hasTweetIds()) {
+                    for (long lineIndex = chunk.getNext(); lineIndex < chunk.getEnd(); lineIndex++) {
+                        fetchQueue.put(new Item(batch, batch.produced++, String.valueOf(chunk.getTweetId(lineIndex)), lineIndex + 1, 0));
+                    }
+                    fetchQueue.put(new Item(batch, batch.produced++, null, chunk.getEnd(), 0));
                     continue;
                 }
 
-                String tweetId = csvRecord.get(0);
+                try (InputCursor cursor = new InputCursor(props.getOutputFolder(), chunk.getFileIndex(), chunk.getNext())) {
+                    while (cursor.getLineIndex() < chunk.getEnd()) {
+                        String tweetId = cursor.next();
+                        if (tweetId == null || cursor.getFileIndex() != chunk.getFileIndex()) {
+                            break;
+                        }
+                        fetchQueue.put(new Item(batch, batch.produced++, tweetId, cursor.getLineIndex(), 0));
+                    }
+                }
+                fetchQueue.put(new Item(batch, batch.produced++, null, chunk.getEnd(), 0));
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (Exception e) {
+            logger.error("Could not read the tweet IDs to fetch", e);
+        }
 
-                logger.debug(MessageFormat.format("Thread {0}: Line {1} - {2}", threadNumber, currentInputLineIndex, tweetId));
-                Connection connection = jsoupWrapper.connect(String.format(urlTemplate, tweetId));
-                final Document document;
-                try {
-                    document = jsoupWrapper.get(connection);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    currentInputLineIndex++;
+        try {
+            for (int i = 0; i < inFlight; i++) {
+                fetchQueue.put(POISON);
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * @return The next chunk, {@code null} once the whole input has been handed out and step 1, if it runs along, is done
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private WorkQueue.Chunk nextChunk() throws IOException, InterruptedException {
+        while (true) {
+            // Read before looking for a chunk, so nothing step 1 saves before it ends is missed
+            boolean done = channel == null || channel.isClosed();
+            WorkQueue.Chunk chunk = workQueue.next();
+            if (chunk != null || done) {
+                return chunk;
+            }
+            channel.await(props.getFlushInterval());
+        }
+    }
+
+    /**
+     * Fetch stage. Every fetcher keeps one request in flight, so the number of fetchers bounds the requests in flight.
+     */
+    private void fetch() {
+        try {
+            for (Item item; (item = fetchQueue.take()) != POISON; ) {
+                if (item.tweetId == null) {
+                    parseQueue.put(item);
                     continue;
                 }
-
-                if (document == null) {
-                    currentInputLineIndex++;
+                if (item.conversationId == 0 && writtenTweetIds.contains(Converter.TO_LONG.apply(item.tweetId))) {
+                    if (logger.isDebugEnabled() && logSampler.sample()) {
+                        logger.debug("{}: {} is part of a conversation written already", item.batch.chunk, item.tweetId);
+                    }
+                    parseQueue.put(item);
                     continue;
                 }
 
-                Conversation conversation1 = new Conversation(AppUtils.generateConversationId());
-                for (Element streamItem : document.select("div.permalink-in-reply-tos li.stream-item")) {
-                    conversation1.add(convertToTweet(streamItem));
+                if (logger.isDebugEnabled() && logSampler.sample()) {
+                    logger.debug("{}: Line {} - {}", item.batch.chunk, item.lineIndex - 1, item.tweetId);
                 }
-
-                // The tweet
-                Element tweetBox = document.select("div.permalink-tweet-container .permalink-tweet").get(0);
-                Element accountLink = tweetBox.select(".permalink-header a").get(0);
-
-                Tweet tweet1 = new Tweet();
-                tweet1.setId(Converter.TO_LONG.apply(tweetId));
-                tweet1.setUser(accountLink.select(".fullname").text().replace("Verified account", IConstants.BLANK));
-                tweet1.setUsername("@" + props.getTargetUsername());
-                tweet1.setMessage(tweetBox.select("p.tweet-text").text());
-                tweet1.setTimestamp(new Date(Converter.TO_LONG.apply(tweetBox.select(".time .js-relative-timestamp").attr("data-time-ms"))));
-                tweet1.setLocation(tweetBox.select(".tweet-geo-text").text());
-                conversation1.add(tweet1);
-
-                for (Element streamItem : document.select("div.replies-to li.stream-item")) {
-                    conversation1.add(convertToTweet(streamItem));
+                try {
+                    item.response = execute(jsoupWrapper.connect(String.format(urlTemplate, item.tweetId)));
+                } catch (RuntimeException e) {
+                    logger.error("Could not fetch the conversation of {}", item.tweetId, e);
                 }
+                parseQueue.put(item);
+            }
 
-                try {
-                    AppUtils.writeToCsv(currentOutputFile, conversation1.toString(), true);
-                    currentInputLineIndex++;
-                } catch (IOException e) {
-                    e.printStackTrace();
+            if (runningFetchers.decrementAndGet() == 0) {
+                for (int i = 0; i < parseThreads; i++) {
+                    parseQueue.put(POISON);
                 }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
 
-                if (currentOutputFile.length() > IConstants.MB_12) {
-                    logger.info("Thread " + threadNumber + ": Reached 24 MB limit. Creating new output file");
+    /**
+     * Parse stage. Converts the fetched pages to conversations.
+     */
+    private void parse() {
+        try {
+            for (Item item; (item = parseQueue.take()) != POISON; ) {
+                if (item.response != null) {
+                    long start = System.nanoTime();
                     try {
-                        currentOutputFile = AppUtils.createNewOutputFile(2, threadNumber);
-//                        currentFileIndex = AppUtils.getCurrentOutputFileIndex(2, props);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        Thread.currentThread().interrupt();
+                        long conversationId = item.conversationId > 0 ? item.conversationId : AppUtils.generateConversationId(props);
+                        item.conversation = parser.parse(conversationId, item.tweetId, item.response.body());
+                        metrics.time(Metrics.Stage.PARSE, start);
+                    } catch (RuntimeException e) {
+                        logger.error("Could not parse the conversation of {}", item.tweetId, e);
                     }
+                    item.response = null;
                 }
+                writeQueue.put(item);
             }
 
-            try {
-                AppUtils.writeToCsv(counterFile, String.format("%d,%d,%d", currentInputFileIndex, currentInputLineIndex, lastLineIndex), false);
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (runningParsers.decrementAndGet() == 0) {
+                writeQueue.put(POISON);
             }
-        } catch (Exception e) {
-            try {
-                AppUtils.writeToCsv(counterFile, String.format("%d,%d,%d", currentInputFileIndex, currentInputLineIndex, lastLineIndex), false);
-            } catch (IOException e1) {
-                e1.printStackTrace();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Write stage. Saves the conversation, if any, and moves the progress of the chunk of the item ahead as far as all the items
+     * before it are done. The chunk is complete once its seal is reached. Of a conversation being refreshed, only the tweets not
+     * written yet are saved.
+     *
+     * @param writer The writer to save the conversation with
+     * @param item   The item which has passed through the pipeline
+     * @throws IOException
+     */
+    private void write(final ConversationWriter writer, final Item item) throws IOException {
+        Conversation conversation = item.conversationId > 0 && item.conversation != null ? newTweets(item.conversation)
+                : item.conversation;
+        if (conversation != null) {
+            long start = System.nanoTime();
+            writer.write(conversation);
+            metrics.time(Metrics.Stage.WRITE, start);
+            metrics.recordsWritten(conversation.getTweets().size());
+            for (Tweet tweet : conversation.getTweets()) {
+                writtenTweetIds.add(tweet.getId());
+            }
+            if (item.conversationId == 0) {
+                activeConversations.add(Converter.TO_LONG.apply(item.tweetId), conversation.getId());
+            }
+        }
+
+        Batch batch = item.batch;
+        if (batch.chunk == null) {
+            // Conversations being refreshed are not lines of the first-level files
+            return;
+        }
+        batch.done.put(item.sequence, item);
+        for (Item next; (next = batch.done.remove(batch.completed)) != null; batch.completed++) {
+            if (next.tweetId == null) {
+                workQueue.complete(batch.chunk);
+            } else {
+                workQueue.progress(batch.chunk, next.lineIndex);
+            }
+        }
+    }
+
+    /**
+     * @param conversation A conversation fetched again
+     * @return The conversation with only the tweets which have not been written, {@code null} if there are none
+     */
+    private Conversation newTweets(final Conversation conversation) {
+        Conversation newTweets = new Conversation(conversation.getId());
+        for (Tweet tweet : conversation.getTweets()) {
+            if (!writtenTweetIds.contains(tweet.getId())) {
+                newTweets.add(tweet);
             }
         }
+        return newTweets.getTweets().isEmpty() ? null : newTweets;
+    }
+
+    /**
+     * Makes the conversations written so far durable, and then saves the progress of the work queue along with the length of the output.
+     * The written tweet IDs and the active conversations are saved only after that, so they never claim a conversation which would be
+     * cut off on restart.
+     *
+     * @param writer The writer to flush
+     * @throws IOException
+     */
+    private void checkpoint(final ConversationWriter writer) throws IOException {
+        long start = System.nanoTime();
+        writer.flush();
+        File output = writer.getFile();
+        try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(false);
+            workQueue.save(output, channel.size());
+        }
+        writtenTweetIds.commit();
+        activeConversations.save();
+        AppUtils.updateManifest(props);
+        metrics.time(Metrics.Stage.CHECKPOINT, start);
     }
 
     /**
-     * Returns tweet having conversationId not set
+     * Cuts off the conversations written after the last checkpoint, as their tweet IDs are going to be fetched again. That is the tail
+     * of the output file of the checkpoint, and any later file of the same kind. The manifest has been refreshed with what is cut off,
+     * so it reads those files again.
      *
-     * @param streamItem    Found DOM element containing tweet
-     * @return Our persistent tweet object
+     * @throws IOException
      */
-    private Tweet convertToTweet(Element streamItem) {
-        Tweet tweet = new Tweet();
+    private void rollBack() throws IOException {
+        List<File> cut = AppUtils.cutBack(workQueue.getOutputFile(), workQueue.getOutputLength());
+        if (!cut.isEmpty()) {
+            AppUtils.resetManifest(props, cut);
+        }
+    }
 
-        StringBuilder message = new StringBuilder();
-        Element aElement = streamItem.select(".content .stream-item-header a").get(0);
+    /**
+     * A chunk as seen by the pipeline, or the conversations being refreshed if there is no chunk. {@link #produced} belongs to the
+     * producer, the rest to the writer.
+     */
+    private static final class Batch {
+        private final WorkQueue.Chunk chunk;
+        private final Map<Long, Item> done;
+        private long produced;
+        private long completed;
 
-        Elements texts = streamItem.select(".content p.tweet-text");
-        if (!texts.isEmpty()) {
-            message.append(texts.get(0).text()).append(" ");
+        private Batch(final WorkQueue.Chunk chunk) {
+            this.chunk = chunk;
+            this.done = new HashMap<>();
         }
+    }
+
+    /**
+     * A tweet ID travelling through the pipeline. The last item of every chunk is a seal, having no tweet ID.
+     */
+    private static final class Item {
+        private final Batch batch;
+        private final long sequence;
+        private final String tweetId;
+
+        /**
+         * Line of the next tweet ID in the file of the chunk, i.e. where to resume once this item is done
+         */
+        private final long lineIndex;
 
-        tweet.setId(Converter.TO_LONG.apply(streamItem.attr("data-item-id")));
-        tweet.setUser(aElement.select(".fullname").text().replace("Verified account", IConstants.BLANK));
-        tweet.setUsername(aElement.select(".username").text());
-        tweet.setMessage(message.toString());
-        tweet.setLocation(streamItem.select(".stream-item-footer .tweet-geo-text").text());
-        tweet.setTimestamp(new Date(Converter.TO_LONG.apply(streamItem.select(".stream-item-header .time .js-short-timestamp").attr("data-time-ms"))));
+        /**
+         * ID of the conversation being refreshed, {@code 0} if it is fetched for the first time
+         */
+        private final long conversationId;
 
-        return tweet;
+        private volatile Connection.Response response;
+        private volatile Conversation conversation;
+
+        private Item(final Batch batch, final long sequence, final String tweetId, final long lineIndex,
+                final long conversationId) {
+            this.batch = batch;
+            this.sequence = sequence;
+            this.tweetId = tweetId;
+            this.lineIndex = lineIndex;
+            this.conversationId = conversationId;
+        }
     }
 }
@@ -1,7 +1,9 @@
 package in.clayfish.pyry.extractors;
 
+import in.clayfish.pyry.scheduler.FairShare;
 import in.clayfish.pyry.utils.ApplicationProperties;
 import in.clayfish.pyry.utils.JsoupWrapper;
+import org.jsoup.Connection;
 
 /**
  * @author shuklaalok7
@@ -12,7 +14,55 @@ public abstract class Extractor implements Runnable {
     protected final ApplicationProperties props;
     protected JsoupWrapper jsoupWrapper;
 
+    /**
+     * Share of the requests in flight of the target handle, when it is scraped along with other handles, {@code null} otherwise
+     */
+    private final FairShare.Tenant share;
+
     public Extractor(ApplicationProperties props) {
+        this(props, null);
+    }
+
+    /**
+     * @param props The application properties of the target handle
+     * @param share Share of the requests in flight of the handle, {@code null} if it is the only handle
+     */
+    public Extractor(ApplicationProperties props, FairShare.Tenant share) {
         this.props = props;
+        this.share = share;
+    }
+
+    /**
+     * @return Number of tweets left to fetch, estimated if need be. The handles are weighed against each other by it, whichever step
+     * they are in
+     */
+    public abstract long getBacklog();
+
+    /**
+     * Makes the request once the handle has its turn, when it shares the requests in flight with other handles
+     *
+     * @param connection The request to make
+     * @return The response, {@code null} if it could not be had
+     * @throws InterruptedException
+     */
+    protected Connection.Response execute(final Connection connection) throws InterruptedException {
+        if (share == null) {
+            return jsoupWrapper.execute(connection);
+        }
+
+        share.acquire();
+        try {
+            return jsoupWrapper.execute(connection);
+        } finally {
+            share.release();
+        }
+    }
+
+    /**
+     * @param name Name of a metric of the extractor
+     * @return The name qualified with the target handle, when there are other handles
+     */
+    protected String metricName(final String name) {
+        return share == null ? name : share.getName() + "/" + name;
     }
 }
@@ -0,0 +1,307 @@
+package in.clayfish.pyry.extractors;
+
+import in.clayfish.pyry.utils.AppUtils;
+import in.clayfish.pyry.utils.Converter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The range of tweet IDs step 1 goes through, cut into windows which are crawled in parallel. Tweet IDs are snowflake IDs, i.e. they
+ * start with the time the tweet was created at, so the range is cut into equal periods of time rather than equal ranges of IDs.
+ * <p>
+ * The windows are cut the first time step 1 runs, and saved along with the progress of each of them in
+ * {@code progress-first-level.csv}. Later runs only add windows on top for the tweets posted since, see {@link #extend(long, long, int)}.
+ * <p>
+ * The progress file also records the first-level file being written and its length as of the time the progress was saved. The tweet
+ * IDs beyond that are not covered by the progress of the windows, so they are cut off on restart and fetched again.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class TimelineWindows {
+    private static final Logger logger = LogManager.getLogger(TimelineWindows.class);
+
+    public static final String FILE_NAME = "progress-first-level.csv";
+
+    /**
+     * Time the snowflake IDs count from
+     */
+    private static final long TWITTER_EPOCH = 1288834974657L;
+    private static final int TIMESTAMP_SHIFT = 22;
+
+    private final File folder;
+    private final File progressFile;
+    private final List<Window> windows;
+
+    private File outputFile;
+    private long outputLength;
+
+    /**
+     * @param folder The output folder
+     * @param newest ID of the newest tweet to fetch
+     * @param oldest The tweets up to this ID are not fetched, {@code -1} to go on till the beginning of the timeline
+     * @param count  Number of windows to cut the range into, ignored if the windows have been cut before
+     * @throws IOException
+     */
+    public TimelineWindows(final File folder, final long newest, final long oldest, final int count) throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("count should be greater than 0, found " + count);
+        }
+        this.folder = folder;
+        this.progressFile = new File(folder, FILE_NAME);
+        this.windows = new ArrayList<>();
+
+        if (progressFile.exists()) {
+            load();
+        } else {
+            windows.addAll(split(newest, oldest, count));
+            save();
+        }
+    }
+
+    /**
+     * @param time Milliseconds since the epoch
+     * @return The smallest snowflake ID a tweet created at the given time can have
+     */
+    public static long idAt(final long time) {
+        return Math.max(0, time - TWITTER_EPOCH) << TIMESTAMP_SHIFT;
+    }
+
+    /**
+     * @return All the windows, newest first
+     */
+    public List<Window> getWindows() {
+        return Collections.unmodifiableList(windows);
+    }
+
+    /**
+     * @return Share of the whole range of IDs which has been fetched, between {@code 0} and {@code 1}
+     */
+    public double getProgress() {
+        double range = 0;
+        double fetched = 0;
+        for (Window window : windows) {
+            range += window.getRange();
+            fetched += window.getRange() * window.getProgress();
+        }
+        return range == 0 ? 1 : fetched / range;
+    }
+
+    /**
+     * @return Milliseconds of the timeline left to fetch
+     */
+    public long getBacklog() {
+        double left = 0;
+        for (Window window : windows) {
+            left += window.getRange() * (1 - window.getProgress());
+        }
+        return (long) (left / (1L << TIMESTAMP_SHIFT));
+    }
+
+    /**
+     * Adds windows for the tweets newer than the newest one of the windows and the newest one stored, so that only those are fetched
+     * again. The windows which are done and next to each other are merged first, so the progress file does not grow with every run.
+     *
+     * @param newest ID of the newest tweet to fetch
+     * @param stored ID of the newest tweet stored already
+     * @param count  Number of windows to cut the new range into
+     * @throws IOException
+     */
+    public synchronized void extend(final long newest, final long stored, final int count) throws IOException {
+        merge();
+        long top = Math.max(windows.isEmpty() ? -1 : windows.get(0).newest, stored);
+        if (newest <= top) {
+            return;
+        }
+
+        windows.addAll(0, split(newest, top, Math.max(1, count)));
+        save();
+    }
+
+    /**
+     * @return Milliseconds of the timeline fetched
+     */
+    public long getFetchedTime() {
+        double fetched = 0;
+        for (Window window : windows) {
+            fetched += window.getRange() * window.getProgress();
+        }
+        return (long) (fetched / (1L << TIMESTAMP_SHIFT));
+    }
+
+    /**
+     * @param window The window being crawled
+     * @param next   Only the tweets older than this are left to fetch in the window
+     */
+    public synchronized void progress(final Window window, final long next) {
+        window.next = next;
+    }
+
+    /**
+     * @param window The window which is done completely
+     */
+    public synchronized void complete(final Window window) {
+        window.done = true;
+    }
+
+    /**
+     * @return The output file as of the last time the progress was saved, {@code null} if it was not recorded
+     */
+    public synchronized File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return Length of {@link #getOutputFile()} as of the last time the progress was saved
+     */
+    public synchronized long getOutputLength() {
+        return outputLength;
+    }
+
+    /**
+     * Saves every window with its progress, atomically replacing the previous progress file. The position of the output last saved, if
+     * any, is kept.
+     *
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        save(outputFile, outputLength);
+    }
+
+    /**
+     * Saves every window with its progress and the position of the output, atomically and durably replacing the previous progress
+     * file. To be called once everything written so far is on the disk.
+     *
+     * @param output       The first-level file being written into, {@code null} if there is none
+     * @param outputLength Length of the output file
+     * @throws IOException
+     */
+    public synchronized void save(final File output, final long outputLength) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        if (output != null) {
+            contents.append(output.getName()).append(',').append(outputLength).append("\r\n");
+            this.outputFile = output;
+            this.outputLength = outputLength;
+        }
+        for (Window window : windows) {
+            contents.append(window.newest).append(',').append(window.oldest).append(',').append(window.next).append(',')
+                    .append(window.done).append("\r\n");
+        }
+
+        File tempFile = new File(progressFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(contents.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Window> split(final long newest, final long oldest, final int count) {
+        List<Window> cut = new ArrayList<>();
+        long newestTime = newest >> TIMESTAMP_SHIFT;
+        long oldestTime = Math.max(0, oldest) >> TIMESTAMP_SHIFT;
+        int windowCount = (int) Math.max(1, Math.min(count, newestTime - oldestTime));
+
+        long upper = newest;
+        for (int i = 1; i < windowCount; i++) {
+            long boundary = (newestTime - (newestTime - oldestTime) * i / windowCount) << TIMESTAMP_SHIFT;
+            cut.add(new Window(upper, boundary, upper + 1, false));
+            upper = boundary;
+        }
+        cut.add(new Window(upper, oldest, upper + 1, false));
+        logger.info(String.format("Cut the timeline into %d windows: %s", cut.size(), cut));
+        return cut;
+    }
+
+    private void merge() {
+        for (int i = windows.size() - 1; i > 0; i--) {
+            Window newer = windows.get(i - 1);
+            Window older = windows.get(i);
+            if (newer.done && older.done && newer.oldest == older.newest) {
+                windows.set(i - 1, new Window(newer.newest, older.oldest, older.next, true));
+                windows.remove(i);
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        for (CSVRecord record : AppUtils.readCsvFile(progressFile, 0, Long.MAX_VALUE)) {
+            if (record.size() == 2) {
+                // The position of the output, missing from the progress files of the previous versions
+                outputFile = new File(folder, record.get(0));
+                outputLength = Converter.TO_LONG.apply(record.get(1));
+                continue;
+            }
+            windows.add(new Window(Converter.TO_LONG.apply(record.get(0)), Converter.TO_LONG.apply(record.get(1)),
+                    Converter.TO_LONG.apply(record.get(2)), Converter.TO_BOOLEAN.apply(record.get(3))));
+        }
+    }
+
+    /**
+     * Tweets with IDs in (oldest, newest], crawled from the newest to the oldest
+     */
+    public static final class Window {
+        private final long newest;
+        private final long oldest;
+        private volatile long next;
+        private volatile boolean done;
+
+        private Window(final long newest, final long oldest, final long next, final boolean done) {
+            this.newest = newest;
+            this.oldest = oldest;
+            this.next = next;
+            this.done = done;
+        }
+
+        public long getNewest() {
+            return newest;
+        }
+
+        public long getOldest() {
+            return oldest;
+        }
+
+        /**
+         * @return Only the tweets older than this are left to fetch
+         */
+        public long getNext() {
+            return next;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return Share of the IDs of the window which has been fetched, between {@code 0} and {@code 1}
+         */
+        public double getProgress() {
+            if (done || getRange() == 0) {
+                return 1;
+            }
+            return Math.min(1, Math.max(0, (double) (newest - Math.max(next, Math.max(0, oldest))) / getRange()));
+        }
+
+        private long getRange() {
+            return Math.max(0, newest - Math.max(0, oldest));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(%d, %d]", oldest, newest);
+        }
+    }
+}
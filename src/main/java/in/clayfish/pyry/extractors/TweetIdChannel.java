@@ -0,0 +1,148 @@
+package in.clayfish.pyry.extractors;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Hands the tweet IDs saved by step 1 over to step 2 running in the same process, when {@code pipeline.streaming} is set. Step 1
+ * publishes what it has saved at every checkpoint, as segments of lines of the first-level files, and {@link WorkQueue} cuts its chunks
+ * from them without reading the files back.
+ * <p>
+ * The first-level files stay the log of record. The channel holds at most {@code capacity} tweet IDs; what does not fit is dropped, and
+ * step 2 reads it from the files once it gets there. Step 2 never reads the files beyond what step 1 has published, so it never sees a
+ * line being written.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class TweetIdChannel {
+    private final int capacity;
+    private final Deque<Segment> segments;
+    private int buffered;
+
+    /**
+     * Step 1 has saved the first-level files before this file, and the lines of this file before this line
+     */
+    private int fileIndex;
+    private long lineIndex;
+
+    private boolean closed;
+
+    /**
+     * @param capacity Number of tweet IDs to hold at most
+     */
+    public TweetIdChannel(final int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.segments = new ArrayDeque<>();
+        this.fileIndex = 1;
+    }
+
+    /**
+     * @param fileIndex Index of the first-level file being written
+     * @param lineIndex Number of lines saved in that file
+     * @param saved     Lines saved since the last time, oldest first
+     */
+    public synchronized void publish(final int fileIndex, final long lineIndex, final List<Segment> saved) {
+        this.fileIndex = fileIndex;
+        this.lineIndex = lineIndex;
+        for (Segment segment : saved) {
+            if (buffered + segment.tweetIds.length > capacity) {
+                // The rest would not follow on from what is held, so they are read from the files too
+                break;
+            }
+            segments.add(segment);
+            buffered += segment.tweetIds.length;
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return The oldest segment held, {@code null} if there is none
+     */
+    public synchronized Segment poll() {
+        Segment segment = segments.poll();
+        if (segment != null) {
+            buffered -= segment.tweetIds.length;
+        }
+        return segment;
+    }
+
+    /**
+     * @param fileIndex Index of a first-level file
+     * @return Number of lines of the file which can be read, {@link Long#MAX_VALUE} if step 1 is done with it
+     */
+    public synchronized long getLimit(final int fileIndex) {
+        if (fileIndex < this.fileIndex) {
+            return Long.MAX_VALUE;
+        }
+        return fileIndex == this.fileIndex ? lineIndex : 0;
+    }
+
+    /**
+     * Marks the end of step 1
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Waits for step 1 to publish, or to end
+     *
+     * @param millis Milliseconds to wait at most
+     * @throws InterruptedException
+     */
+    public synchronized void await(final long millis) throws InterruptedException {
+        if (!closed && segments.isEmpty()) {
+            wait(Math.max(1, millis));
+        }
+    }
+
+    /**
+     * Lines [start, start + number of tweet IDs) of one first-level file
+     */
+    public static final class Segment {
+        private final int fileIndex;
+        private final long start;
+        private final long[] tweetIds;
+
+        /**
+         * {@code true} if the file ends with this segment
+         */
+        private final boolean last;
+
+        public Segment(final int fileIndex, final long start, final long[] tweetIds, final boolean last) {
+            this.fileIndex = fileIndex;
+            this.start = start;
+            this.tweetIds = tweetIds;
+            this.last = last;
+        }
+
+        public int getFileIndex() {
+            return fileIndex;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return start + tweetIds.length;
+        }
+
+        public long[] getTweetIds() {
+            return tweetIds;
+        }
+
+        public boolean isLast() {
+            return last;
+        }
+    }
+}
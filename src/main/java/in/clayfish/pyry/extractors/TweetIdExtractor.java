@@ -1,5 +1,10 @@
 package in.clayfish.pyry.extractors;
 
+import in.clayfish.pyry.io.CsvSink;
+import in.clayfish.pyry.io.SeenIds;
+import in.clayfish.pyry.metrics.Metrics;
+import in.clayfish.pyry.parsers.TimelineScanner;
+import in.clayfish.pyry.scheduler.FairShare;
 import in.clayfish.pyry.utils.AppUtils;
 import in.clayfish.pyry.utils.ApplicationProperties;
 import in.clayfish.pyry.utils.IConstants;
@@ -7,23 +12,32 @@ import in.clayfish.pyry.utils.JsoupWrapper;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static in.clayfish.pyry.utils.Converter.TO_LONG;
 
 
 /**
- * First-level extractor
+ * First-level extractor. The range of tweets to fetch is cut into {@code concurrent-threads} windows of time (see
+ * {@link TimelineWindows}), and every window is crawled backwards with its own cursor on its own thread. The windows do not overlap
+ * and every cursor only moves backwards, and on top of that every ID written is remembered in {@link SeenIds}, so a tweet ID is never
+ * written twice.
+ * <p>
+ * With {@code target.refresh} the windows are extended up to now on every run, so only the tweets posted since the last run are
+ * fetched.
+ * <p>
+ * The thread running this extractor is the only writer of the first-level files. It also saves the progress of every window once the
+ * tweet IDs fetched so far are on the disk, along with the length of the output, and then hands them over to step 2 if it runs in the
+ * same process (see {@link TweetIdChannel}). Anything written after the last checkpoint is cut off on restart and fetched again, so a
+ * tweet ID is saved exactly once even if the process is killed.
  *
  * @author shuklaalok7
  * @since 18/01/16
@@ -31,125 +45,385 @@ import static in.clayfish.pyry.utils.Converter.TO_LONG;
 public class TweetIdExtractor extends Extractor {
 
     private static final Logger logger = LogManager.getLogger(TweetIdExtractor.class);
+
+    /**
+     * Marks the end of the stream of pages
+     */
+    private static final Page POISON = new Page(null, null, 0, 0, false);
+
+    /**
+     * Tweets taken to be on a day of the timeline until some have been found
+     */
+    private static final double DEFAULT_TWEETS_PER_DAY = 10;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
     private final String urlTemplate;
-    private long startingTweetId;
+    private final TimelineWindows windows;
+    private final SeenIds seenIds;
+    private final BlockingQueue<Page> writeQueue;
+    private final AtomicInteger runningCrawlers;
+    private final Metrics metrics;
+
+    /**
+     * Channel to step 2, {@code null} if it does not run along
+     */
+    private final TweetIdChannel channel;
+
+    /**
+     * Tweet IDs saved since they were last handed over to step 2, in the order they were saved
+     */
+    private long[] unpublished;
+    private int unpublishedCount;
 
     public TweetIdExtractor(final ApplicationProperties props) {
-        super(props);
-        this.urlTemplate = String.format("https://twitter.com/i/search/timeline?f=tweets&vertical=default&q=from%%%%3A%s&src=typd&include_available_features=1&include_entities=1&last_note_ts=300&max_position=TWEET-%%d-%d-BD1UO2FFu9QAAAAAAAAETAAAAAcAAAASAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA&reset_error_state=false",
-                props.getTargetUsername(), props.getStartingTweetId());
-        this.startingTweetId = props.getStartingTweetId();
-        this.startingTweetId = this.getLastFetchedTweetId();
+        this(props, null, null);
+    }
+
+    /**
+     * @param props The application properties of the target handle
+     * @param share Share of the requests in flight of the handle, {@code null} if it is the only handle
+     */
+    public TweetIdExtractor(final ApplicationProperties props, final FairShare.Tenant share) {
+        this(props, share, null);
+    }
+
+    /**
+     * @param props   The application properties of the target handle
+     * @param share   Share of the requests in flight of the handle, {@code null} if it is the only handle
+     * @param channel Channel to hand the saved tweet IDs over to step 2 running along, {@code null} if it does not
+     */
+    public TweetIdExtractor(final ApplicationProperties props, final FairShare.Tenant share, final TweetIdChannel channel) {
+        super(props, share);
+        this.channel = channel;
+        this.unpublished = new long[1024];
+        this.urlTemplate = String.format("https://twitter.com/i/search/timeline?f=tweets&vertical=default&q=from%%%%3A%s&src=typd&include_available_features=1&include_entities=1&last_note_ts=300&max_position=TWEET-%%d-%%d-BD1UO2FFu9QAAAAAAAAETAAAAAcAAAASAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA&reset_error_state=false",
+                props.getTargetUsername());
 
         try {
-            this.jsoupWrapper = new JsoupWrapper(props, false);
+            long now = TimelineWindows.idAt(System.currentTimeMillis());
+            long newest = props.getStartingTweetId() > 0 ? props.getStartingTweetId() : now;
+            long oldest = props.getLastTweetId() == null || props.getLastTweetId().isEmpty() ? -1 : TO_LONG.apply(props.getLastTweetId());
+            boolean resumed = new File(props.getOutputFolder(), TimelineWindows.FILE_NAME).exists();
+            this.windows = new TimelineWindows(props.getOutputFolder(), getLastFetchedTweetId(newest), oldest,
+                    Math.max(1, props.getNumberOfConcurrentThreads()));
+            rollBack();
+            if (props.isRefresh() && resumed) {
+                // Only the tweets posted since the last run are fetched, the newest one stored is known from the manifest. On the first
+                // run the windows have just been cut up to now.
+                windows.extend(now, AppUtils.getLatestTweetIdFetched(props, 1), Math.max(1, props.getNumberOfConcurrentThreads()));
+            }
+            this.seenIds = new SeenIds(new File(props.getOutputFolder(), "seen-first-level.ids"), props.isInMemoryDedup());
+            this.writeQueue = new ArrayBlockingQueue<>(windows.getWindows().size() * 4);
+            this.runningCrawlers = new AtomicInteger();
+
+            this.metrics = Metrics.getInstance();
+            metrics.queue(metricName("pages"), writeQueue::size);
+            metrics.progress(metricName("step-1"), windows::getProgress);
+            for (int i = 0; i < windows.getWindows().size(); i++) {
+                metrics.progress(metricName("window-" + (i + 1)), windows.getWindows().get(i)::getProgress);
+            }
+
+            this.jsoupWrapper = JsoupWrapper.getInstance(props);
 
             // Following call is to set the mood of the wrapper
             Connection connection = this.jsoupWrapper.connect(String.format("https://twitter.com/search?f=tweets&vertical=default&q=from%%3A%s&src=typd",
                     props.getTargetUsername()));
             this.jsoupWrapper.get(connection);
+
+            // Whatever is in the first-level files already can be read by step 2
+            publish();
         } catch (IOException e) {
             e.printStackTrace();
             throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * @return The timeline left to fetch times the tweets found per millisecond of the timeline fetched, so that it can be weighed
+     * against the tweet IDs left in step 2
+     */
+    @Override
+    public long getBacklog() {
+        long found = 0;
+        try {
+            for (int fileIndex = 1; getInputFile(fileIndex).exists(); fileIndex++) {
+                found += AppUtils.getLineCount(getInputFile(fileIndex));
+            }
+        } catch (IOException e) {
+            found = 0;
+        }
+
+        long fetched = windows.getFetchedTime();
+        double rate = found > 0 && fetched > 0 ? (double) found / fetched : DEFAULT_TWEETS_PER_DAY / DAY;
+        return (long) Math.ceil(windows.getBacklog() * rate);
+    }
+
     @Override
     public void run() {
+        try {
+            extract();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private void extract() {
         /* The steps are -
-         1. Fetch the url created by urlTemplate and startingTweetId
+         1. Fetch the url created by urlTemplate and the cursor of every window
          2. run decodeURI for the received response
          3. Get all the li.stream-item and retrieve data-tweet-id
-         4. Save that tweet-id to "first-level-<thread-name>-1.csv" file in output folder
-         5. Repeat 1-4 with the tweet-id found at the last of the last first-level output file
-         6. When that CSV file has got approximately 24 MB (25165824 bytes), start saving in "first-level-<thread-name>-2.csv" and so on
+         4. Save that tweet-id to "first-level-1.csv" file in output folder
+         5. Repeat 1-4 with the oldest tweet-id found, until the window is over
+         6. When that CSV file has got approximately 24 MB (25165824 bytes), start saving in "first-level-2.csv" and so on
          7. At the end of it you'll have a lot of tweet IDs with replies to look into
         */
 
+        ExecutorService crawlers = Executors.newFixedThreadPool(windows.getWindows().size());
+        for (TimelineWindows.Window window : windows.getWindows()) {
+            if (!window.isDone()) {
+                runningCrawlers.incrementAndGet();
+                crawlers.submit(() -> crawl(window));
+            }
+        }
+        if (runningCrawlers.get() == 0) {
+            logger.info("All the windows of the timeline have been fetched already");
+            crawlers.shutdown();
+            return;
+        }
 
-        final String label = String.format("Thread %d:", 0);
-        File currentOutputFile = AppUtils.getCurrentOutputFile(1);
-        long currentTweetId = startingTweetId;
-
-        logger.debug(String.format("%s Started thread: %1$s", label));
-        logger.debug(label + " startingTweetId: " + startingTweetId);
+        try (CsvSink sink = new CsvSink(AppUtils.getCurrentOutputFile(props, 1), IConstants.MB_24,
+                () -> AppUtils.createNewOutputFile(props, 1), props.getFlushSize(), props.getFlushInterval(), props.isCompressOutput())) {
+            try {
+                long lastCheckpoint = System.currentTimeMillis();
+                for (Page page; (page = writeQueue.poll(props.getFlushInterval(), TimeUnit.MILLISECONDS)) != POISON; ) {
+                    if (page != null) {
+                        write(sink, page);
+                    }
 
-        int reattempt = 0;
-        // Keep fetching and writing the tweet IDs until the last id, configured in application.properties is fetched
-        for (boolean lastTweetIdFetched = false; !lastTweetIdFetched && reattempt < 5; ) {
-            // Only way out is when we get interrupted from outside the thread
-            if (Thread.interrupted()) {
+                    if (System.currentTimeMillis() - lastCheckpoint >= props.getFlushInterval()) {
+                        checkpoint(sink);
+                        lastCheckpoint = System.currentTimeMillis();
+                    }
+                }
+            } catch (InterruptedException e) {
                 logger.warn("TweetIdExtractor is interrupted.");
-                break;
             }
 
-            if (currentOutputFile.length() > IConstants.MB_24) {
-                logger.info(currentOutputFile.getName() + " is overflowing, writing to new file now.");
-                try {
-                    currentOutputFile = AppUtils.createNewOutputFile(1);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    Thread.currentThread().interrupt();
+            checkpoint(sink);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            crawlers.shutdownNow();
+            try {
+                seenIds.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Walks one window backwards, page by page, and hands the new tweet IDs of every page to the writer. The window is done only once
+     * the timeline reaches its oldest tweet or ends. After 5 pages in a row without new tweets it is left for the next run instead.
+     *
+     * @param window The window to crawl
+     */
+    private void crawl(final TimelineWindows.Window window) {
+        final String label = String.format("Window %s:", window);
+        logger.debug("{} Starting from {}", label, window.getNext());
+
+        TimelineScanner scanner = new TimelineScanner();
+        long next = window.getNext();
+        try {
+            boolean done = false;
+            int reattempt = 0;
+            while (!done && reattempt < 5) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+
+                long position = Math.min(next, window.getNewest());
+                if (!fetch(scanner, position, window.getNewest())) {
+                    logger.error(String.format("%s Giving up at %d, it will be resumed from there next time", label, position));
+                    return;
+                }
+
+                long[] tweetIds = scanner.getItemIds();
+                long[] newTweetIds = new long[scanner.getItemCount()];
+                int count = 0;
+                for (int i = 0; i < scanner.getItemCount(); i++) {
+                    if (tweetIds[i] <= window.getOldest()) {
+                        done = true;
+                    } else if (tweetIds[i] < next) {
+                        newTweetIds[count++] = tweetIds[i];
+                        next = tweetIds[i];
+                    }
+                }
+
+                logger.debug("{} Found {} new tweets with replies, has more items: {}", label, count, scanner.hasMoreItems());
+
+                if (count > 0) {
+                    reattempt = 0;
+                } else {
+                    done |= !scanner.hasMoreItems();
+                    reattempt++;
+                }
+                if (count > 0 || done) {
+                    writeQueue.put(new Page(window, newTweetIds, count, next, done));
                 }
             }
-            Document document = null;
 
-            for (int reattempts = 0; reattempts < 3; ) {
-                Connection connection = jsoupWrapper.connect(String.format(urlTemplate, currentTweetId));
-                Connection.Response response = jsoupWrapper.execute(connection);
+            if (!done) {
+                // The window is not marked done, so it is resumed from here next time
+                logger.error(String.format("%s Giving up at %d after %d pages without new tweets, it will be resumed from there next time",
+                        label, next, reattempt));
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningCrawlers.decrementAndGet() == 0) {
                 try {
-                    document = Jsoup.parse((String) ((JSONObject) new JSONParser().parse(response.body())).get("items_html"));
-                    break;
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    reattempts++;
+                    writeQueue.put(POISON);
+                } catch (InterruptedException ignored) {
                 }
             }
+        }
+    }
 
-            if (document == null) {
-                Thread.currentThread().interrupt();
-                continue;
-            }
+    /**
+     * @param scanner  Scanner to read the page with
+     * @param position Tweet ID to fetch the page before
+     * @param newest   The newest tweet ID of the window
+     * @return {@code true} if the page was fetched and read. The request has been retried already as set by {@code retry.max-attempts}.
+     * @throws InterruptedException
+     */
+    private boolean fetch(final TimelineScanner scanner, final long position, final long newest) throws InterruptedException {
+        Connection.Response response = execute(jsoupWrapper.connect(String.format(urlTemplate, position, newest)));
+        long start = System.nanoTime();
+        if (response != null && scanner.scan(response.body())) {
+            metrics.time(Metrics.Stage.PARSE, start);
+            return true;
+        }
+        logger.error(String.format("Could not read the timeline before %d", position));
+        return false;
+    }
 
-            List<String> tweetIds = document.select("li.stream-item").stream().map(element -> element.attr("data-item-id")).collect(Collectors.toList());
+    /**
+     * Saves the tweet IDs of the page and moves the window ahead
+     *
+     * @param sink The sink to save the tweet IDs in
+     * @param page The page fetched by a crawler
+     * @throws IOException
+     */
+    private void write(final CsvSink sink, final Page page) throws IOException {
+        long start = System.nanoTime();
+        int written = 0;
+        for (int i = 0; i < page.count; i++) {
+            if (seenIds.add(page.tweetIds[i])) {
+                sink.append(page.tweetIds[i]);
+                written++;
 
-            if (props.getLastTweetId() != null && !props.getLastTweetId().isEmpty() && tweetIds.contains(props.getLastTweetId())) {
-                tweetIds = tweetIds.subList(0, tweetIds.indexOf(props.getLastTweetId()));
-                lastTweetIdFetched = true;
+                if (channel != null) {
+                    if (unpublishedCount == unpublished.length) {
+                        unpublished = Arrays.copyOf(unpublished, unpublishedCount * 2);
+                    }
+                    unpublished[unpublishedCount++] = page.tweetIds[i];
+                }
             }
+        }
+        metrics.time(Metrics.Stage.WRITE, start);
+        metrics.recordsWritten(written);
+
+        windows.progress(page.window, page.next);
+        if (page.last) {
+            windows.complete(page.window);
+            logger.info(String.format("Window %s is done", page.window));
+        }
+    }
 
-            logger.debug(String.format("%s Found %d new tweets with replies.", label, tweetIds.size()));
+    /**
+     * Saves the progress of the windows along with the length of the output, after making sure the tweet IDs are on the disk, and then
+     * the IDs seen and the manifest, and hands the tweet IDs over to step 2. The IDs seen are saved only after the progress, so they
+     * never claim a tweet ID which would be cut off on restart.
+     *
+     * @param sink The sink to sync
+     * @throws IOException
+     */
+    private void checkpoint(final CsvSink sink) throws IOException {
+        long start = System.nanoTime();
+        sink.sync();
+        windows.save(sink.getFile(), sink.getFileSize());
+        seenIds.commit();
+        AppUtils.updateManifest(props);
+        publish();
+        metrics.time(Metrics.Stage.CHECKPOINT, start);
+    }
 
-            if (tweetIds.size() == 0) {
-                reattempt++;
-                continue;
-            }
+    /**
+     * Hands the tweet IDs saved since the last time over to step 2, with the lines they are on. They are the last lines of the
+     * first-level files, as nothing else writes to them, so the lines are found walking backwards from the end of the current file.
+     *
+     * @throws IOException
+     */
+    private void publish() throws IOException {
+        if (channel == null) {
+            return;
+        }
 
-            try {
-                AppUtils.appendToCsv(currentOutputFile, tweetIds);
-            } catch (IOException e) {
-                e.printStackTrace();
+        int currentIndex = Math.max(1, AppUtils.getCurrentOutputFileIndex(props, 1));
+        List<TweetIdChannel.Segment> segments = new ArrayList<>();
+        int left = unpublishedCount;
+        for (int fileIndex = currentIndex; left > 0 && fileIndex > 0; fileIndex--) {
+            long lines = AppUtils.getLineCount(getInputFile(fileIndex));
+            int count = (int) Math.min(left, lines);
+            if (count > 0) {
+                segments.add(0, new TweetIdChannel.Segment(fileIndex, lines - count, Arrays.copyOfRange(unpublished, left - count, left),
+                        fileIndex < currentIndex));
+                left -= count;
             }
-
-            currentTweetId = TO_LONG.apply(tweetIds.get(tweetIds.size() - 1));
         }
 
+        channel.publish(currentIndex, AppUtils.getLineCount(getInputFile(currentIndex)), segments);
+        unpublishedCount = 0;
     }
 
+    /**
+     * Cuts off the tweet IDs written after the last checkpoint, as the windows are resumed from before them. That is the tail of the
+     * output file of the checkpoint, and any later first-level file. The manifest has been refreshed with what is cut off, so it reads
+     * those files again, and their line indexes are dropped.
+     *
+     * @throws IOException
+     */
+    private void rollBack() throws IOException {
+        List<File> cut = AppUtils.cutBack(windows.getOutputFile(), windows.getOutputLength());
+        if (!cut.isEmpty()) {
+            AppUtils.resetManifest(props, cut);
+        }
+    }
+
+    private File getInputFile(final int fileIndex) {
+        return new File(String.format("%s/first-level-%d.csv", props.getOutputFolder().getPath(), fileIndex));
+    }
 
     /**
-     * @return last fetched ID found in the output folder
+     * Only read the first time step 1 runs, i.e. before the timeline is cut into windows. A single cursor of the previous versions may
+     * have gone part of the way already, the rest of the way is what is left to cut.
+     *
+     * @param startingTweetId The newest tweet to fetch
+     * @return The newest tweet left to fetch
      */
-    private synchronized long getLastFetchedTweetId() {
+    private long getLastFetchedTweetId(final long startingTweetId) {
         long lastTweetId = startingTweetId;
 
-        File currentOutputFile = AppUtils.getCurrentOutputFile(1);
+        File currentOutputFile = AppUtils.getCurrentOutputFile(props, 1);
 
         if (currentOutputFile != null) {
             try {
                 CSVRecord lastRecord = AppUtils.readLastRecord(currentOutputFile);
                 if (lastRecord != null) {
-                    lastTweetId = TO_LONG.apply(lastRecord.get(0));
+                    lastTweetId = TO_LONG.apply(lastRecord.get(0)) - 1;
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -158,4 +432,31 @@ public class TweetIdExtractor extends Extractor {
 
         return lastTweetId;
     }
+
+    /**
+     * New tweet IDs of one page of a window
+     */
+    private static final class Page {
+        private final TimelineWindows.Window window;
+        private final long[] tweetIds;
+        private final int count;
+
+        /**
+         * Only the tweets older than this are left to fetch in the window, once this page is saved
+         */
+        private final long next;
+
+        /**
+         * {@code true} for the last page of the window
+         */
+        private final boolean last;
+
+        private Page(final TimelineWindows.Window window, final long[] tweetIds, final int count, final long next, final boolean last) {
+            this.window = window;
+            this.tweetIds = tweetIds;
+            this.count = count;
+            this.next = next;
+            this.last = last;
+        }
+    }
 }
@@ -0,0 +1,428 @@
+package in.clayfish.pyry.extractors;
+
+import in.clayfish.pyry.io.LineIndex;
+import in.clayfish.pyry.utils.AppUtils;
+import in.clayfish.pyry.utils.Converter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Shared queue of the work of step 2. The first-level files are cut into small chunks of lines on demand, and whoever is free takes
+ * the next one. Only the frontier, up to which the input has been cut, and the chunks which are not finished yet are saved in
+ * {@code progress-second-level.csv}, so a restart does not depend on how many workers were running before.
+ * <p>
+ * The progress file also records the output file and its length as of the time the progress was saved. Whatever is in the output
+ * beyond that is not covered by the progress, so it is cut off on restart (see {@link #getOutputFile()}) and written again, which
+ * makes every tweet ID be saved exactly once.
+ * <p>
+ * When step 1 runs in the same process, the chunks are cut from what it hands over through a {@link TweetIdChannel} as long as that
+ * follows on from the frontier, and from the first-level files otherwise, up to what step 1 has saved. Either way the chunks are lines
+ * of the first-level files, so the progress is saved the same way.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class WorkQueue {
+    private static final Logger logger = LogManager.getLogger(WorkQueue.class);
+    private static final String LEGACY_COUNTER_PREFIX = "counter-second-level-";
+
+    private final File folder;
+    private final File progressFile;
+    private final int chunkSize;
+    private final TweetIdChannel channel;
+
+    /**
+     * Chunks handed out once but not finished, to be handed out again first
+     */
+    private final Deque<Chunk> pending;
+
+    /**
+     * Chunks being worked on
+     */
+    private final Set<Chunk> active;
+
+    private int frontierFileIndex;
+    private long frontierLineIndex;
+    private LineIndex frontierIndex;
+
+    /**
+     * Segment handed over by step 1 which is not cut into chunks completely yet
+     */
+    private TweetIdChannel.Segment segment;
+
+    private File outputFile;
+    private long outputLength;
+
+    /**
+     * @param folder    The output folder containing the first-level files
+     * @param chunkSize Number of lines in every chunk
+     * @throws IOException
+     */
+    public WorkQueue(final File folder, final int chunkSize) throws IOException {
+        this(folder, chunkSize, null);
+    }
+
+    /**
+     * @param folder    The output folder containing the first-level files
+     * @param chunkSize Number of lines in every chunk
+     * @param channel   Channel from step 1 running in the same process, {@code null} if step 1 is done
+     * @throws IOException
+     */
+    public WorkQueue(final File folder, final int chunkSize, final TweetIdChannel channel) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize should be greater than 0, found " + chunkSize);
+        }
+        this.folder = folder;
+        this.progressFile = new File(folder, "progress-second-level.csv");
+        this.chunkSize = chunkSize;
+        this.channel = channel;
+        this.pending = new ArrayDeque<>();
+        this.active = new LinkedHashSet<>();
+        this.frontierFileIndex = 1;
+
+        if (progressFile.exists()) {
+            load();
+        } else {
+            importLegacyCounters();
+        }
+    }
+
+    /**
+     * @return The next chunk to work on, or {@code null} if the whole input has been handed out. With a channel, more may come once
+     * step 1 publishes again.
+     * @throws IOException
+     */
+    public synchronized Chunk next() throws IOException {
+        Chunk chunk = pending.poll();
+
+        while (chunk == null) {
+            chunk = channel == null ? null : fromChannel();
+            if (chunk != null) {
+                break;
+            }
+
+            File file = getInputFile(frontierFileIndex);
+            if (!file.exists()) {
+                return null;
+            }
+
+            long limit = channel == null ? Long.MAX_VALUE : channel.getLimit(frontierFileIndex);
+            if (frontierLineIndex < limit && (frontierIndex == null || frontierLineIndex >= frontierIndex.getLineCount())) {
+                // The file may have grown since it was indexed
+                frontierIndex = LineIndex.open(file);
+            }
+
+            long lineCount = frontierIndex == null ? 0 : Math.min(frontierIndex.getLineCount(), limit);
+            if (frontierLineIndex < lineCount) {
+                long end = Math.min(frontierLineIndex + chunkSize, lineCount);
+                chunk = new Chunk(frontierFileIndex, frontierLineIndex, end, frontierLineIndex);
+                frontierLineIndex = end;
+            } else if (limit == Long.MAX_VALUE && getInputFile(frontierFileIndex + 1).exists()) {
+                frontierFileIndex++;
+                frontierLineIndex = 0;
+                frontierIndex = null;
+            } else {
+                return null;
+            }
+        }
+
+        active.add(chunk);
+        return chunk;
+    }
+
+    /**
+     * @return A chunk of the segments handed over by step 1, if they follow on from the frontier. Segments the frontier has passed are
+     * dropped, and a segment ahead of the frontier is kept until the lines before it are read from the files.
+     */
+    private Chunk fromChannel() {
+        while (true) {
+            if (segment == null) {
+                segment = channel.poll();
+                if (segment == null) {
+                    return null;
+                }
+            }
+
+            int fileIndex = segment.getFileIndex();
+            if (fileIndex < frontierFileIndex || fileIndex == frontierFileIndex && segment.getEnd() <= frontierLineIndex) {
+                segment = null;
+            } else if (fileIndex > frontierFileIndex || segment.getStart() > frontierLineIndex) {
+                return null;
+            } else {
+                long start = frontierLineIndex;
+                long end = Math.min(start + chunkSize, segment.getEnd());
+                long[] tweetIds = Arrays.copyOfRange(segment.getTweetIds(), (int) (start - segment.getStart()),
+                        (int) (end - segment.getStart()));
+                frontierLineIndex = end;
+
+                if (end == segment.getEnd()) {
+                    if (segment.isLast()) {
+                        frontierFileIndex++;
+                        frontierLineIndex = 0;
+                        frontierIndex = null;
+                    }
+                    segment = null;
+                }
+                return new Chunk(fileIndex, start, end, start, tweetIds);
+            }
+        }
+    }
+
+    /**
+     * @param chunk     The chunk being worked on
+     * @param lineIndex The line to resume the chunk from, everything before it is done
+     */
+    public synchronized void progress(final Chunk chunk, final long lineIndex) {
+        chunk.next = lineIndex;
+    }
+
+    /**
+     * @param chunk The chunk which is done completely
+     */
+    public synchronized void complete(final Chunk chunk) {
+        chunk.next = chunk.end;
+        active.remove(chunk);
+    }
+
+    /**
+     * @return Share of the lines of all the first-level files which are done, between {@code 0} and {@code 1}. The line counts are
+     * taken from the manifest, and a file being written is counted only as far as it has grown since it was last counted, see
+     * {@link AppUtils#getLineCount(File)}.
+     * @throws IOException
+     */
+    public double getProgress() throws IOException {
+        long[] count = count();
+        return count[1] == 0 ? 1 : Math.min(1, Math.max(0, (double) count[0] / count[1]));
+    }
+
+    /**
+     * @return Number of the tweet IDs of the first-level files which are not done yet
+     * @throws IOException
+     */
+    public long getBacklog() throws IOException {
+        long[] count = count();
+        return Math.max(0, count[1] - count[0]);
+    }
+
+    /**
+     * @return Number of the lines of the first-level files which are done, and of all of them
+     * @throws IOException
+     */
+    private long[] count() throws IOException {
+        int frontier;
+        long frontierLine;
+        long left = 0;
+        synchronized (this) {
+            frontier = frontierFileIndex;
+            frontierLine = frontierLineIndex;
+            for (Chunk chunk : active) {
+                left += chunk.end - chunk.next;
+            }
+            for (Chunk chunk : pending) {
+                left += chunk.end - chunk.next;
+            }
+        }
+
+        long total = 0;
+        long handedOut = frontierLine;
+        for (int fileIndex = 1; getInputFile(fileIndex).exists(); fileIndex++) {
+            long lines = AppUtils.getLineCount(getInputFile(fileIndex));
+            total += lines;
+            if (fileIndex < frontier) {
+                handedOut += lines;
+            }
+        }
+        return new long[]{handedOut - left, total};
+    }
+
+    /**
+     * @return The output file as of the last time the progress was saved, {@code null} if it was not recorded
+     */
+    public synchronized File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return Length of {@link #getOutputFile()} as of the last time the progress was saved
+     */
+    public synchronized long getOutputLength() {
+        return outputLength;
+    }
+
+    /**
+     * Saves the frontier and every unfinished chunk, atomically replacing the previous progress file. The position of the output last
+     * saved, if any, is kept.
+     *
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        save(outputFile, outputLength);
+    }
+
+    /**
+     * Saves the frontier, every unfinished chunk and the position of the output, atomically and durably replacing the previous progress
+     * file. To be called once everything written so far is on the disk.
+     *
+     * @param output       The output file being written into, {@code null} if there is none
+     * @param outputLength Length of the output file
+     * @throws IOException
+     */
+    public synchronized void save(final File output, final long outputLength) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        contents.append(frontierFileIndex).append(',').append(frontierLineIndex);
+        if (output != null) {
+            contents.append(',').append(output.getName()).append(',').append(outputLength);
+            this.outputFile = output;
+            this.outputLength = outputLength;
+        }
+        contents.append("\r\n");
+        for (Chunk chunk : active) {
+            chunk.appendTo(contents);
+        }
+        for (Chunk chunk : pending) {
+            chunk.appendTo(contents);
+        }
+
+        File tempFile = new File(progressFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(contents.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        List<CSVRecord> records = AppUtils.readCsvFile(progressFile, 0, Long.MAX_VALUE);
+        if (records.isEmpty()) {
+            return;
+        }
+
+        frontierFileIndex = Converter.TO_INT.apply(records.get(0).get(0));
+        frontierLineIndex = Converter.TO_LONG.apply(records.get(0).get(1));
+        if (records.get(0).size() >= 4) {
+            outputFile = new File(folder, records.get(0).get(2));
+            outputLength = Converter.TO_LONG.apply(records.get(0).get(3));
+        }
+        for (CSVRecord record : records.subList(1, records.size())) {
+            Chunk chunk = new Chunk(Converter.TO_INT.apply(record.get(0)), Converter.TO_LONG.apply(record.get(1)),
+                    Converter.TO_LONG.apply(record.get(2)), Converter.TO_LONG.apply(record.get(3)));
+            if (chunk.next < chunk.end) {
+                pending.add(chunk);
+            }
+        }
+    }
+
+    /**
+     * Carries over the progress saved by the fixed ranges of the previous versions, in counter-second-level-N.csv files
+     *
+     * @throws IOException
+     */
+    private void importLegacyCounters() throws IOException {
+        File[] counterFiles = folder.listFiles((dir, name) -> name.startsWith(LEGACY_COUNTER_PREFIX) && name.endsWith(".csv"));
+        if (counterFiles == null || counterFiles.length == 0) {
+            return;
+        }
+
+        for (File counterFile : counterFiles) {
+            CSVRecord record = AppUtils.readFirstRecord(counterFile);
+            if (record == null) {
+                continue;
+            }
+
+            int fileIndex = Converter.TO_INT.apply(record.get(0));
+            long lineIndex = Converter.TO_LONG.apply(record.get(1));
+            long lastLineIndex = Converter.TO_LONG.apply(record.get(2));
+            if (lineIndex < lastLineIndex) {
+                pending.add(new Chunk(fileIndex, lineIndex, lastLineIndex, lineIndex));
+            }
+            frontierLineIndex = Math.max(frontierLineIndex, lastLineIndex);
+        }
+        logger.info(String.format("Imported %d unfinished ranges from %d counter files", pending.size(), counterFiles.length));
+        save();
+    }
+
+    private File getInputFile(final int fileIndex) {
+        return new File(String.format("%s/first-level-%d.csv", folder.getPath(), fileIndex));
+    }
+
+    /**
+     * Lines [start, end) of one first-level file
+     */
+    public static final class Chunk {
+        private final int fileIndex;
+        private final long start;
+        private final long end;
+        private volatile long next;
+
+        /**
+         * The tweet IDs of the lines, if they were handed over by step 1, {@code null} if they are to be read from the file
+         */
+        private final long[] tweetIds;
+
+        private Chunk(final int fileIndex, final long start, final long end, final long next) {
+            this(fileIndex, start, end, next, null);
+        }
+
+        private Chunk(final int fileIndex, final long start, final long end, final long next, final long[] tweetIds) {
+            this.fileIndex = fileIndex;
+            this.start = start;
+            this.end = end;
+            this.next = next;
+            this.tweetIds = tweetIds;
+        }
+
+        public int getFileIndex() {
+            return fileIndex;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return The line to resume this chunk from
+         */
+        public long getNext() {
+            return next;
+        }
+
+        /**
+         * @return {@code true} if the tweet IDs of the chunk are in memory, see {@link #getTweetId(long)}
+         */
+        public boolean hasTweetIds() {
+            return tweetIds != null;
+        }
+
+        /**
+         * @param lineIndex A line of the chunk
+         * @return The tweet ID on that line
+         */
+        public long getTweetId(final long lineIndex) {
+            return tweetIds[(int) (lineIndex - start)];
+        }
+
+        private void appendTo(final StringBuilder contents) {
+            contents.append(fileIndex).append(',').append(start).append(',').append(end).append(',').append(next).append("\r\n");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("first-level-%d.csv[%d, %d)", fileIndex, start, end);
+        }
+    }
+}
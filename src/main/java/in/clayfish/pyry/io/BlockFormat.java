@@ -0,0 +1,72 @@
+package in.clayfish.pyry.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Layout of the compressed CSV files written by {@link CsvSink}, shared by {@link BlockIndex} and {@link BlockInputStream}. All the
+ * numbers are big-endian.
+ * <pre>
+ * file  = MAGIC VERSION block*
+ * block = compressedLength rawLength recordCount crc32(compressed) compressed
+ * </pre>
+ * Every block is a raw deflate stream of whole CSV records, independent of the other blocks, so a reader can start at any block and a
+ * block cut short by a crash is dropped on its own. The headers alone are enough to count the records or to find the block a record
+ * is in.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+final class BlockFormat {
+    static final int MAGIC = 0x50595A42; // PYZB
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = 16;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private BlockFormat() {
+    }
+
+    /**
+     * @return The file header
+     */
+    static byte[] fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array();
+    }
+
+    /**
+     * Compresses whole records into a block, header included
+     *
+     * @param records One or more CSV records, each ending with a record separator
+     * @return The block
+     */
+    static byte[] encode(final String records) {
+        byte[] raw = records.getBytes(StandardCharsets.UTF_8);
+        int recordCount = 0;
+        for (CsvDecoder decoder = new CsvDecoder(ByteBuffer.wrap(raw)); decoder.next(); ) {
+            recordCount++;
+        }
+
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] block = new byte[BLOCK_HEADER_SIZE + raw.length / 2 + 64];
+        int length = BLOCK_HEADER_SIZE;
+        while (!deflater.finished()) {
+            if (length == block.length) {
+                block = Arrays.copyOf(block, block.length * 2);
+            }
+            length += deflater.deflate(block, length, block.length - length);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(block, BLOCK_HEADER_SIZE, length - BLOCK_HEADER_SIZE);
+        ByteBuffer.wrap(block).putInt(length - BLOCK_HEADER_SIZE).putInt(raw.length).putInt(recordCount).putInt((int) crc.getValue());
+        return length == block.length ? block : Arrays.copyOf(block, length);
+    }
+}
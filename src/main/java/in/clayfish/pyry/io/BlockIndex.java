@@ -0,0 +1,182 @@
+package in.clayfish.pyry.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import static in.clayfish.pyry.io.BlockFormat.*;
+
+/**
+ * Index of the blocks of a compressed CSV file, built by hopping from one block header to the next, so nothing is decompressed. It
+ * tells how many records the file has and which block a record is in, which is what lets a reader resume in the middle of a
+ * compressed file. The index ends at the first block cut short.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class BlockIndex {
+    private long[] offsets;
+    private long[] firstRecords;
+    private int size;
+    private long recordCount;
+    private long validLength;
+
+    private BlockIndex() {
+        this.offsets = new long[16];
+        this.firstRecords = new long[16];
+    }
+
+    /**
+     * @param file Any file
+     * @return {@code true} if the file is a compressed CSV file
+     * @throws IOException
+     */
+    public static boolean isCompressed(final File file) throws IOException {
+        if (!file.exists() || file.length() < FILE_HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * @param file A compressed CSV file
+     * @return Index of its complete blocks
+     * @throws IOException
+     */
+    public static BlockIndex open(final File file) throws IOException {
+        return build(file, false);
+    }
+
+    /**
+     * Like {@link #open(File)}, but also reads every block to check it against its checksum, to be used before appending to the file
+     *
+     * @param file A compressed CSV file
+     * @return Index of its complete and intact blocks
+     * @throws IOException
+     */
+    public static BlockIndex verify(final File file) throws IOException {
+        return build(file, true);
+    }
+
+    /**
+     * @param record The record which is sought
+     * @return Number of the first record of the block the given record is in
+     */
+    public long floorRecord(final long record) {
+        int block = floorBlock(record);
+        return block < 0 ? 0 : firstRecords[block];
+    }
+
+    /**
+     * @param record The record which is sought
+     * @return Offset of the block the given record is in
+     */
+    public long floorOffset(final long record) {
+        int block = floorBlock(record);
+        return block < 0 ? FILE_HEADER_SIZE : offsets[block];
+    }
+
+    /**
+     * @return Number of records in the complete blocks
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return Length of the file up to the end of its last complete block
+     */
+    public long getValidLength() {
+        return validLength;
+    }
+
+    private int floorBlock(final long record) {
+        int index = Arrays.binarySearch(firstRecords, 0, size, record);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Skip the empty blocks having the same first record
+            while (index + 1 < size && firstRecords[index + 1] == record) {
+                index++;
+            }
+        }
+        return index;
+    }
+
+    private static BlockIndex build(final File file, final boolean verify) throws IOException {
+        Objects.requireNonNull(file);
+        BlockIndex index = new BlockIndex();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(Math.max(FILE_HEADER_SIZE, BLOCK_HEADER_SIZE));
+            header.limit(FILE_HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a compressed CSV file of version " + VERSION);
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer payload = verify ? ByteBuffer.allocate(1 << 16) : null;
+            long position = FILE_HEADER_SIZE;
+            while (length - position >= BLOCK_HEADER_SIZE) {
+                header.clear();
+                readFully(channel, header, position);
+                int compressedLength = header.getInt(0);
+                int recordCount = header.getInt(8);
+                if (compressedLength <= 0 || compressedLength > length - position - BLOCK_HEADER_SIZE || recordCount < 0) {
+                    break;
+                }
+
+                if (verify) {
+                    if (payload.capacity() < compressedLength) {
+                        payload = ByteBuffer.allocate(compressedLength);
+                    }
+                    payload.clear().limit(compressedLength);
+                    readFully(channel, payload, position + BLOCK_HEADER_SIZE);
+                    crc.reset();
+                    crc.update(payload.array(), 0, compressedLength);
+                    if ((int) crc.getValue() != header.getInt(12)) {
+                        break;
+                    }
+                }
+
+                index.add(position, recordCount);
+                position += BLOCK_HEADER_SIZE + compressedLength;
+            }
+            index.validLength = position;
+        }
+        return index;
+    }
+
+    private void add(final long offset, final int records) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            firstRecords = Arrays.copyOf(firstRecords, size * 2);
+        }
+        offsets[size] = offset;
+        firstRecords[size] = recordCount;
+        size++;
+        recordCount += records;
+    }
+
+    static void readFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
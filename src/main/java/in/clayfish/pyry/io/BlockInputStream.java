@@ -0,0 +1,183 @@
+package in.clayfish.pyry.io;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static in.clayfish.pyry.io.BlockFormat.BLOCK_HEADER_SIZE;
+
+/**
+ * Decompressed contents of a compressed CSV file, from a block onwards. One block is decompressed at a time. The stream ends at the
+ * end of the file, or at a block cut short or not matching its checksum.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class BlockInputStream extends InputStream {
+    private static final Logger logger = LogManager.getLogger(BlockInputStream.class);
+
+    private final File file;
+    private final FileChannel channel;
+    private final Inflater inflater;
+    private final CRC32 crc;
+    private final ByteBuffer header;
+
+    private long position;
+    private ByteBuffer compressed;
+    private byte[] raw;
+    private int rawPosition;
+    private int rawLength;
+    private boolean ended;
+
+    /**
+     * @param file   A compressed CSV file
+     * @param offset Offset of the block to start from, see {@link BlockIndex#floorOffset(long)}
+     * @throws IOException
+     */
+    public BlockInputStream(final File file, final long offset) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.inflater = new Inflater(true);
+        this.crc = new CRC32();
+        this.header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        this.position = offset;
+        this.compressed = ByteBuffer.allocate(1 << 16);
+        this.raw = new byte[1 << 16];
+    }
+
+    /**
+     * @param file A compressed CSV file
+     * @return Its whole decompressed contents
+     * @throws IOException
+     */
+    public static ByteBuffer readAll(final File file) throws IOException {
+        try (BlockInputStream in = new BlockInputStream(file, BlockFormat.FILE_HEADER_SIZE)) {
+            return in.readRemaining();
+        }
+    }
+
+    /**
+     * @return Everything left to read, decompressed
+     * @throws IOException
+     */
+    public ByteBuffer readRemaining() throws IOException {
+        byte[] contents = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1 << 16, (channel.size() - position) * 4))];
+        int length = 0;
+        for (int read; (read = read(contents, length, contents.length - length)) > 0; ) {
+            length += read;
+            if (length == contents.length) {
+                contents = Arrays.copyOf(contents, contents.length * 2);
+            }
+        }
+        return ByteBuffer.wrap(contents, 0, length);
+    }
+
+    /**
+     * @return Offset of the block after the ones read so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (rawPosition == rawLength && !nextBlock()) {
+            return -1;
+        }
+        return raw[rawPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (rawPosition == rawLength && !nextBlock()) {
+            return -1;
+        }
+        int count = Math.min(length, rawLength - rawPosition);
+        System.arraycopy(raw, rawPosition, bytes, offset, count);
+        rawPosition += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    /**
+     * Decompresses the next block, skipping the empty ones
+     *
+     * @return {@code false} if there are no more complete blocks
+     * @throws IOException
+     */
+    private boolean nextBlock() throws IOException {
+        while (!ended) {
+            long length = channel.size();
+            if (length - position < BLOCK_HEADER_SIZE) {
+                ended = true;
+                break;
+            }
+            header.clear();
+            BlockIndex.readFully(channel, header, position);
+            int compressedLength = header.getInt(0);
+            int blockRawLength = header.getInt(4);
+            if (compressedLength <= 0 || compressedLength > length - position - BLOCK_HEADER_SIZE || blockRawLength < 0) {
+                ended = true;
+                break;
+            }
+
+            if (compressed.capacity() < compressedLength) {
+                compressed = ByteBuffer.allocate(compressedLength);
+            }
+            compressed.clear().limit(compressedLength);
+            BlockIndex.readFully(channel, compressed, position + BLOCK_HEADER_SIZE);
+            crc.reset();
+            crc.update(compressed.array(), 0, compressedLength);
+            if ((int) crc.getValue() != header.getInt(12)) {
+                logger.warn(String.format("%s has a damaged block at %d, reading no further", file.getName(), position));
+                ended = true;
+                break;
+            }
+
+            if (raw.length < blockRawLength) {
+                raw = new byte[blockRawLength];
+            }
+            inflater.reset();
+            inflater.setInput(compressed.array(), 0, compressedLength);
+            try {
+                rawLength = 0;
+                while (rawLength < blockRawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, rawLength, blockRawLength - rawLength);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    rawLength += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(String.format("%s has a block at %d which can not be decompressed", file.getName(), position), e);
+            }
+            rawPosition = 0;
+            position += BLOCK_HEADER_SIZE + compressedLength;
+
+            if (rawLength > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
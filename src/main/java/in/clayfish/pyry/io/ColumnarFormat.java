@@ -0,0 +1,100 @@
+package in.clayfish.pyry.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout of the columnar files shared by {@link ColumnarWriter} and {@link ColumnarReader}. All the numbers are big-endian.
+ * <pre>
+ * file    = MAGIC VERSION block*
+ * block   = payloadLength rowCount crc32(payload) payload
+ * payload = rowCount
+ *           id* conversationId* timestamp*          zigzag varint delta from the previous row, the first row from 0
+ *           dictionarySize (length bytes)*          the distinct usernames, users and locations of the block
+ *           username* user* location*              varint index into the dictionary plus 1, 0 being null
+ *           (length bytes)*                         message, varint length plus 1, 0 being null
+ * </pre>
+ * Every string is UTF-8. A block does not depend on any other block, so a block cut short by a crash is dropped on its own.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+final class ColumnarFormat {
+    static final int MAGIC = 0x54434F4C; // TCOL
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = 12;
+
+    /**
+     * Number of rows after which a block is written
+     */
+    static final int BLOCK_ROWS = 4096;
+
+    private ColumnarFormat() {
+    }
+
+    static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @param buffer Buffer positioned at a varint, moved past it
+     * @return The varint read
+     */
+    static long getVarLong(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint at " + buffer.position());
+    }
+
+    /**
+     * Growable array of bytes, to build a payload in
+     */
+    static final class Bytes {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void put(final byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        private void ensure(final int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.models.Tweet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+import static in.clayfish.pyry.io.ColumnarFormat.*;
+
+/**
+ * Reads the files written by {@link ColumnarWriter} block by block, the file being mapped into memory. The numeric columns of a block
+ * are decoded as soon as the block is reached, the strings only when asked for. A block cut short, or not matching its checksum, ends
+ * the file.
+ * <pre>
+ * try (ColumnarReader reader = new ColumnarReader(file)) {
+ *     while (reader.nextBlock()) {
+ *         for (int row = 0; row &lt; reader.getRowCount(); row++) {
+ *             reader.getId(row) ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ * Instances are not thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class ColumnarReader implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ColumnarReader.class);
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final CRC32 crc;
+
+    private int rowCount;
+    private long[] ids;
+    private long[] conversationIds;
+    private long[] timestamps;
+    private String[] dictionary;
+    private int[] usernames;
+    private int[] users;
+    private int[] locations;
+
+    /**
+     * Position of every message in the buffer, {@code -1} for null, and its length
+     */
+    private int[] messageStarts;
+    private int[] messageLengths;
+
+    /**
+     * @param file A file written by {@link ColumnarWriter}
+     * @throws IOException if the file is not such a file
+     */
+    public ColumnarReader(final File file) throws IOException {
+        this(file, FILE_HEADER_SIZE);
+    }
+
+    /**
+     * @param file   A file written by {@link ColumnarWriter}
+     * @param offset Offset of the block to start from, as given by {@link #getPosition()} earlier
+     * @throws IOException if the file is not such a file
+     */
+    public ColumnarReader(final File file, final long offset) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < FILE_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a columnar file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(String.format("%s has version %d, only %d can be read", file, buffer.getInt(4), VERSION));
+        }
+        if (offset < FILE_HEADER_SIZE || offset > buffer.limit()) {
+            throw new IOException(String.format("%s has no block at %d", file, offset));
+        }
+        buffer.position((int) offset);
+        this.crc = new CRC32();
+        this.ids = new long[0];
+    }
+
+    /**
+     * Moves to the next block
+     *
+     * @return {@code false} if there are no more complete blocks
+     */
+    public boolean nextBlock() {
+        rowCount = 0;
+        int start = buffer.position();
+        if (!isComplete(buffer, start, crc)) {
+            if (start < buffer.limit()) {
+                logger.warn(String.format("%s ends with an incomplete block at %d", file.getName(), start));
+            }
+            return false;
+        }
+
+        int length = buffer.getInt(start);
+        buffer.position(start + BLOCK_HEADER_SIZE);
+        int rows = (int) getVarLong(buffer);
+        if (ids.length < rows) {
+            ids = new long[rows];
+            conversationIds = new long[rows];
+            timestamps = new long[rows];
+            usernames = new int[rows];
+            users = new int[rows];
+            locations = new int[rows];
+            messageStarts = new int[rows];
+            messageLengths = new int[rows];
+        }
+        readDeltas(ids, rows);
+        readDeltas(conversationIds, rows);
+        readDeltas(timestamps, rows);
+
+        dictionary = new String[(int) getVarLong(buffer)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = readString((int) getVarLong(buffer));
+        }
+        readIndexes(usernames, rows);
+        readIndexes(users, rows);
+        readIndexes(locations, rows);
+
+        for (int row = 0; row < rows; row++) {
+            int messageLength = (int) getVarLong(buffer) - 1;
+            messageStarts[row] = messageLength < 0 ? -1 : buffer.position();
+            messageLengths[row] = Math.max(0, messageLength);
+            buffer.position(buffer.position() + messageLengths[row]);
+        }
+
+        buffer.position(start + BLOCK_HEADER_SIZE + length);
+        rowCount = rows;
+        return true;
+    }
+
+    /**
+     * @return Offset of the block after the current one, i.e. the end of the blocks read so far
+     */
+    public long getPosition() {
+        return buffer.position();
+    }
+
+    /**
+     * @return Number of rows in the current block
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getId(final int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    public long getConversationId(final int row) {
+        checkRow(row);
+        return conversationIds[row];
+    }
+
+    /**
+     * @param row Row in the current block
+     * @return Milliseconds since the epoch
+     */
+    public long getTimestamp(final int row) {
+        checkRow(row);
+        return timestamps[row];
+    }
+
+    public String getUsername(final int row) {
+        checkRow(row);
+        return lookUp(usernames[row]);
+    }
+
+    public String getUser(final int row) {
+        checkRow(row);
+        return lookUp(users[row]);
+    }
+
+    public String getLocation(final int row) {
+        checkRow(row);
+        return lookUp(locations[row]);
+    }
+
+    public String getMessage(final int row) {
+        checkRow(row);
+        if (messageStarts[row] < 0) {
+            return null;
+        }
+        int position = buffer.position();
+        buffer.position(messageStarts[row]);
+        String message = readString(messageLengths[row]);
+        buffer.position(position);
+        return message;
+    }
+
+    /**
+     * @param row Row in the current block
+     * @return A new tweet having all the columns of the row
+     */
+    public Tweet getTweet(final int row) {
+        Tweet tweet = new Tweet();
+        tweet.setId(getId(row));
+        tweet.setConversationId(getConversationId(row));
+        tweet.setTimestamp(new Date(getTimestamp(row)));
+        tweet.setUsername(getUsername(row));
+        tweet.setUser(getUser(row));
+        tweet.setLocation(getLocation(row));
+        tweet.setMessage(getMessage(row));
+        return tweet;
+    }
+
+    /**
+     * Nothing to release, the mapping goes away with this reader. It is here for the readers of other formats to come.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @param channel An open columnar file
+     * @return Length of the file up to the end of its last complete block
+     * @throws IOException if the file is not a columnar file
+     */
+    static long validLength(final FileChannel channel) throws IOException {
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (mapped.limit() < FILE_HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+            throw new IOException("Not a columnar file of version " + VERSION);
+        }
+
+        CRC32 crc = new CRC32();
+        int position = FILE_HEADER_SIZE;
+        while (isComplete(mapped, position, crc)) {
+            position += BLOCK_HEADER_SIZE + mapped.getInt(position);
+        }
+        return position;
+    }
+
+    /**
+     * @return {@code true} if a whole block, matching its checksum, starts at the given position
+     */
+    private static boolean isComplete(final ByteBuffer buffer, final int position, final CRC32 crc) {
+        if (buffer.limit() - position < BLOCK_HEADER_SIZE) {
+            return false;
+        }
+        int length = buffer.getInt(position);
+        if (length < 0 || length > buffer.limit() - position - BLOCK_HEADER_SIZE) {
+            return false;
+        }
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(position + BLOCK_HEADER_SIZE + length).position(position + BLOCK_HEADER_SIZE);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(position + 8);
+    }
+
+    private void readDeltas(final long[] column, final int rows) {
+        long previous = 0;
+        for (int row = 0; row < rows; row++) {
+            previous += unzigzag(getVarLong(buffer));
+            column[row] = previous;
+        }
+    }
+
+    private void readIndexes(final int[] column, final int rows) {
+        for (int row = 0; row < rows; row++) {
+            column[row] = (int) getVarLong(buffer);
+        }
+    }
+
+    private String readString(final int length) {
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private String lookUp(final int index) {
+        return index == 0 ? null : dictionary[index - 1];
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException(String.format("Row %d of a block with %d rows", row, rowCount));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.metrics.Metrics;
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.models.Tweet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import static in.clayfish.pyry.io.ColumnarFormat.*;
+
+/**
+ * Writes the conversations in the compact columnar format described in {@link ColumnarFormat}. The tweets are collected column by
+ * column and written as a block of {@value ColumnarFormat#BLOCK_ROWS} rows, or less on {@link #flush()}. IDs, conversation IDs and
+ * timestamps of neighbouring tweets are close to each other, so only their differences are stored. Usernames, users and locations repeat
+ * a lot, so each of them is stored once per block.
+ * <p>
+ * A file being continued is checked first, and a block cut short by a crash is dropped. The writer rolls over to a new file, making the
+ * full one durable first, once the current one has grown over the limit.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class ColumnarWriter implements ConversationWriter {
+    private static final Logger logger = LogManager.getLogger(ColumnarWriter.class);
+
+    private final long maxFileSize;
+    private final CsvSink.RollOver rollOver;
+
+    private final long[] ids;
+    private final long[] conversationIds;
+    private final long[] timestamps;
+    private final String[] usernames;
+    private final String[] users;
+    private final String[] locations;
+    private final String[] messages;
+    private int rows;
+
+    private final Bytes payload;
+    private final ByteBuffer blockHeader;
+    private final Map<String, Integer> dictionary;
+    private final CRC32 crc;
+
+    private File file;
+    private FileChannel channel;
+    private long fileSize;
+
+    /**
+     * @param file        The file to start writing into, blocks are appended if it exists already
+     * @param maxFileSize Size in bytes after which the writer rolls over to a new file
+     * @param rollOver    Supplier of the new file
+     * @throws IOException
+     */
+    public ColumnarWriter(final File file, final long maxFileSize, final CsvSink.RollOver rollOver) throws IOException {
+        this.maxFileSize = maxFileSize;
+        this.rollOver = Objects.requireNonNull(rollOver);
+
+        this.ids = new long[BLOCK_ROWS];
+        this.conversationIds = new long[BLOCK_ROWS];
+        this.timestamps = new long[BLOCK_ROWS];
+        this.usernames = new String[BLOCK_ROWS];
+        this.users = new String[BLOCK_ROWS];
+        this.locations = new String[BLOCK_ROWS];
+        this.messages = new String[BLOCK_ROWS];
+
+        this.payload = new Bytes();
+        this.blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        this.dictionary = new HashMap<>();
+        this.crc = new CRC32();
+
+        open(Objects.requireNonNull(file));
+    }
+
+    @Override
+    public void write(final Conversation conversation) throws IOException {
+        for (Tweet tweet : conversation.getTweets()) {
+            ids[rows] = tweet.getId();
+            conversationIds[rows] = tweet.getConversationId();
+            timestamps[rows] = tweet.getTimestamp().getTime();
+            usernames[rows] = tweet.getUsername();
+            users[rows] = tweet.getUser();
+            locations[rows] = tweet.getLocation();
+            messages[rows] = tweet.getMessage();
+
+            if (++rows == BLOCK_ROWS) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the rows collected so far as a block, and rolls over to a new file if the current one has grown over the limit
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        if (rows > 0) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        long start = System.nanoTime();
+        payload.reset();
+        payload.putVarLong(rows);
+        putDeltas(ids);
+        putDeltas(conversationIds);
+        putDeltas(timestamps);
+
+        dictionary.clear();
+        int[] usernameIndexes = index(usernames);
+        int[] userIndexes = index(users);
+        int[] locationIndexes = index(locations);
+        String[] entries = new String[dictionary.size()];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            entries[entry.getValue() - 1] = entry.getKey();
+        }
+        payload.putVarLong(entries.length);
+        for (String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            payload.putVarLong(bytes.length);
+            payload.put(bytes);
+        }
+        putIndexes(usernameIndexes);
+        putIndexes(userIndexes);
+        putIndexes(locationIndexes);
+
+        for (int row = 0; row < rows; row++) {
+            if (messages[row] == null) {
+                payload.putVarLong(0);
+            } else {
+                byte[] bytes = messages[row].getBytes(StandardCharsets.UTF_8);
+                payload.putVarLong(bytes.length + 1L);
+                payload.put(bytes);
+            }
+        }
+
+        crc.reset();
+        crc.update(payload.array(), 0, payload.size());
+        Metrics.getInstance().time(Metrics.Stage.SERIALIZE, start);
+
+        blockHeader.clear();
+        blockHeader.putInt(payload.size()).putInt(rows).putInt((int) crc.getValue()).flip();
+        writeFully(blockHeader);
+        writeFully(ByteBuffer.wrap(payload.array(), 0, payload.size()));
+        fileSize += BLOCK_HEADER_SIZE + payload.size();
+        Metrics.getInstance().written(BLOCK_HEADER_SIZE + payload.size());
+
+        for (int row = 0; row < rows; row++) {
+            usernames[row] = users[row] = locations[row] = messages[row] = null;
+        }
+        rows = 0;
+
+        if (fileSize > maxFileSize) {
+            logger.info(file.getName() + " is overflowing, writing to new file now.");
+            // The next checkpoint only makes the new file durable
+            channel.force(true);
+            channel.close();
+            open(rollOver.next());
+        }
+    }
+
+    private void putDeltas(final long[] column) {
+        long previous = 0;
+        for (int row = 0; row < rows; row++) {
+            payload.putVarLong(zigzag(column[row] - previous));
+            previous = column[row];
+        }
+    }
+
+    private int[] index(final String[] column) {
+        int[] indexes = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            if (column[row] != null) {
+                Integer index = dictionary.get(column[row]);
+                if (index == null) {
+                    index = dictionary.size() + 1;
+                    dictionary.put(column[row], index);
+                }
+                indexes[row] = index;
+            }
+        }
+        return indexes;
+    }
+
+    private void putIndexes(final int[] indexes) {
+        for (int index : indexes) {
+            payload.putVarLong(index);
+        }
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Opens the file for appending. A new file gets the file header, an existing one is cut after its last complete block.
+     *
+     * @param target The file to write into
+     * @throws IOException
+     */
+    private void open(final File target) throws IOException {
+        this.file = target;
+        this.channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(header);
+            this.fileSize = FILE_HEADER_SIZE;
+            return;
+        }
+
+        long end = ColumnarReader.validLength(channel);
+        if (end < size) {
+            logger.warn(String.format("%s has an incomplete block at %d, dropping its last %d bytes", target.getName(), end, size - end));
+            channel.truncate(end);
+        }
+        channel.position(end);
+        this.fileSize = end;
+    }
+}
@@ -0,0 +1,56 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.enums.OutputFormat;
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.utils.AppUtils;
+import in.clayfish.pyry.utils.ApplicationProperties;
+import in.clayfish.pyry.utils.IConstants;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Saves the conversations found by step 2 in the output files, in the format chosen by {@code output.format}. What is written reaches
+ * the file at the latest on {@link #flush()}.
+ * <p>
+ * Implementations are not thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public interface ConversationWriter extends Closeable, Flushable {
+
+    /**
+     * @param conversation The conversation to save, all its tweets together
+     * @throws IOException
+     */
+    void write(Conversation conversation) throws IOException;
+
+    /**
+     * @return The file being written into currently
+     */
+    File getFile();
+
+    /**
+     * @param props        The application properties
+     * @param writerNumber Number of the writer in the output file names
+     * @return Writer continuing the current second-level file of the configured format
+     * @throws IOException
+     */
+    static ConversationWriter open(final ApplicationProperties props, final int writerNumber) throws IOException {
+        final OutputFormat format = props.getOutputFormat();
+        final String extension = format.getExtension();
+        CsvSink.RollOver rollOver = () -> AppUtils.createNewOutputFile(props, 2, writerNumber, extension);
+
+        switch (format) {
+            case COLUMNAR:
+                return new ColumnarWriter(AppUtils.getCurrentOutputFile(props, 2, writerNumber, extension), IConstants.MB_12, rollOver);
+            case CSV:
+            default:
+                return new CsvConversationWriter(new CsvSink(AppUtils.getCurrentOutputFile(props, 2, writerNumber, extension),
+                        IConstants.MB_12, rollOver, props.getFlushSize(), props.getFlushInterval(), props.isCompressOutput()));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.metrics.Metrics;
+import in.clayfish.pyry.models.Conversation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Writes every tweet of a conversation as a CSV record, through a {@link CsvSink}
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class CsvConversationWriter implements ConversationWriter {
+    private final CsvSink sink;
+
+    /**
+     * Reused for the records of every conversation
+     */
+    private final StringBuilder record;
+
+    /**
+     * @param sink The sink to write the records into, closed along with this writer
+     */
+    public CsvConversationWriter(final CsvSink sink) {
+        this.sink = Objects.requireNonNull(sink);
+        this.record = new StringBuilder(4096);
+    }
+
+    @Override
+    public void write(final Conversation conversation) throws IOException {
+        long start = System.nanoTime();
+        record.setLength(0);
+        conversation.toRecords(record);
+        Metrics.getInstance().time(Metrics.Stage.SERIALIZE, start);
+        sink.append(record);
+    }
+
+    @Override
+    public File getFile() {
+        return sink.getFile();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+}
@@ -0,0 +1,249 @@
+package in.clayfish.pyry.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads RFC 4180 records straight out of UTF-8 bytes, typically a memory-mapped file. A record is only cut into fields, as positions
+ * in the bytes, and nothing is copied until a field is asked for: {@link #getLong(int)} parses the digits where they are and only
+ * {@link #getString(int)} creates a string. Blank lines are skipped.
+ * <p>
+ * Every byte of the structure of a record, i.e. the comma, the double quote and the line breaks, is ASCII and can not be a part of a
+ * multi-byte UTF-8 character, so the bytes are scanned without decoding them.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class CsvDecoder {
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    private int[] starts;
+    private int[] ends;
+    private boolean[] quoted;
+    private int fieldCount;
+    private boolean terminated;
+    private byte[] scratch;
+
+    /**
+     * @param buffer The bytes from its position to its limit are read
+     */
+    public CsvDecoder(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+        this.starts = new int[8];
+        this.ends = new int[8];
+        this.quoted = new boolean[8];
+        this.scratch = new byte[256];
+    }
+
+    /**
+     * @param file The file to read, mapped into memory, or decompressed into memory if it is compressed
+     * @return A decoder at the beginning of the file
+     * @throws IOException
+     */
+    public static CsvDecoder open(final File file) throws IOException {
+        if (BlockIndex.isCompressed(file)) {
+            return new CsvDecoder(BlockInputStream.readAll(file));
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new CsvDecoder(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @param records One or more records
+     * @return A decoder at the beginning of the given records
+     */
+    public static CsvDecoder of(final String records) {
+        return new CsvDecoder(ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Moves to the next record
+     *
+     * @return {@code false} if there are no more records
+     */
+    public boolean next() {
+        while (position < limit && isLineBreak(buffer.get(position))) {
+            position++;
+        }
+        if (position >= limit) {
+            fieldCount = 0;
+            terminated = false;
+            return false;
+        }
+
+        fieldCount = 0;
+        while (true) {
+            int start = position;
+            int end;
+            boolean isQuoted = position < limit && buffer.get(position) == '"';
+
+            if (isQuoted) {
+                start = ++position;
+                end = limit;
+                while (position < limit) {
+                    if (buffer.get(position) != '"') {
+                        position++;
+                    } else if (position + 1 < limit && buffer.get(position + 1) == '"') {
+                        position += 2;
+                    } else {
+                        end = position++;
+                        break;
+                    }
+                }
+                // Anything between the closing quote and the delimiter is ignored
+                while (position < limit && !isDelimiter(buffer.get(position))) {
+                    position++;
+                }
+            } else {
+                while (position < limit && !isDelimiter(buffer.get(position))) {
+                    position++;
+                }
+                end = position;
+            }
+            addField(start, end, isQuoted);
+
+            if (position < limit && buffer.get(position) == ',') {
+                position++;
+                continue;
+            }
+            terminated = position < limit;
+            if (position < limit && buffer.get(position) == '\r') {
+                position++;
+            }
+            if (position < limit && buffer.get(position) == '\n') {
+                position++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return {@code true} if the current record is ended by a line break, {@code false} if it runs to the end of the bytes, e.g. as
+     * it is still being written
+     */
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * @return Position in the buffer right after the current record
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Number of fields in the current record
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @param field Index of the field in the current record
+     * @return The field parsed as a decimal {@code long}, surrounding spaces are ignored
+     * @throws NumberFormatException if the field is not a number
+     */
+    public long getLong(final int field) {
+        checkField(field);
+        int start = starts[field];
+        int end = ends[field];
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+
+        boolean negative = start < end && buffer.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 19) {
+            throw new NumberFormatException("Not a number: " + getString(field));
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + getString(field));
+            }
+            value = value * 10 - digit;
+            if (value > 0) {
+                throw new NumberFormatException("Out of range: " + getString(field));
+            }
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new NumberFormatException("Out of range: " + getString(field));
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * @param field Index of the field in the current record
+     * @return The field decoded from UTF-8, with the doubled quotes of a quoted field undone
+     */
+    public String getString(final int field) {
+        checkField(field);
+        int length = 0;
+        for (int i = starts[field]; i < ends[field]; i++) {
+            byte b = buffer.get(i);
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratch.length * 2);
+            }
+            scratch[length++] = b;
+            if (b == '"' && quoted[field]) {
+                // The second quote of the pair
+                i++;
+            }
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param field Index of the field in the current record
+     * @return {@code true} if the field has no characters
+     */
+    public boolean isEmpty(final int field) {
+        checkField(field);
+        return starts[field] == ends[field];
+    }
+
+    private void addField(final int start, final int end, final boolean isQuoted) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            quoted = Arrays.copyOf(quoted, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        quoted[fieldCount] = isQuoted;
+        fieldCount++;
+    }
+
+    private void checkField(final int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException(String.format("Field %d of a record with %d fields", field, fieldCount));
+        }
+    }
+
+    private static boolean isDelimiter(final byte b) {
+        return b == ',' || isLineBreak(b);
+    }
+
+    private static boolean isLineBreak(final byte b) {
+        return b == '\r' || b == '\n';
+    }
+}
@@ -0,0 +1,45 @@
+package in.clayfish.pyry.io;
+
+/**
+ * Encodes fields as RFC 4180 describes: a field containing a comma, a double quote or a line break is put in double quotes, and the
+ * double quotes in it are doubled. Everything else is written as it is, so the value is kept character for character.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public abstract class CsvEncoder {
+
+    /**
+     * @param out   The builder to append to
+     * @param value The value of the field, {@code null} is written as an empty field
+     * @return The given builder
+     */
+    public static StringBuilder appendField(final StringBuilder out, final CharSequence value) {
+        if (value == null) {
+            return out;
+        }
+        if (!needsQuotes(value)) {
+            return out.append(value);
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    private static boolean needsQuotes(final CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,262 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Long-lived writer of CSV records into the output files. It keeps the current file open across records, buffers them in memory and
+ * writes them out once the buffer grows over the flush size or the flush interval elapses. The sink keeps track of the size of the
+ * current file itself and rolls over to a new file at flush boundaries once the file has grown over the limit, making the full file
+ * durable before moving on.
+ * <p>
+ * A compressing sink writes every buffer as a compressed block instead (see {@link BlockIndex}). The blocks are compressed on
+ * threads of the sink's own, and written in order by the thread using the sink, so the limit applies to the compressed size. Only
+ * {@link #flush()} waits for all the blocks to be written. A file is continued only if it is of the same kind, otherwise the sink rolls
+ * over to a new file right away.
+ * <p>
+ * Instances are not thread-safe, every extractor should own its sink.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class CsvSink implements Closeable, Flushable {
+    private static final Logger logger = LogManager.getLogger(CsvSink.class);
+    private static final String RECORD_SEPARATOR = "\r\n";
+
+    private final long maxFileSize;
+    private final RollOver rollOver;
+    private final int flushSize;
+    private final long flushInterval;
+    private final StringBuilder buffer;
+
+    /**
+     * {@code null} unless the sink compresses
+     */
+    private final ExecutorService compressors;
+    private final Deque<Future<byte[]>> blocks;
+    private final int maxPendingBlocks;
+
+    private File file;
+    private FileOutputStream outputStream;
+    private long fileSize;
+    private long lastFlushTime;
+
+    /**
+     * @param file          The file to start writing into, records are appended if it exists already
+     * @param maxFileSize   Size in bytes after which the sink rolls over to a new file
+     * @param rollOver      Supplier of the new file
+     * @param flushSize     Number of buffered characters after which the buffer is written out
+     * @param flushInterval Milliseconds after which the buffer is written out, irrespective of its size
+     * @throws IOException
+     */
+    public CsvSink(final File file, final long maxFileSize, final RollOver rollOver, final int flushSize, final long flushInterval)
+            throws IOException {
+        this(file, maxFileSize, rollOver, flushSize, flushInterval, false);
+    }
+
+    /**
+     * @param file          The file to start writing into, records are appended if it exists already
+     * @param maxFileSize   Size in bytes after which the sink rolls over to a new file
+     * @param rollOver      Supplier of the new file
+     * @param flushSize     Number of buffered characters after which the buffer is written out
+     * @param flushInterval Milliseconds after which the buffer is written out, irrespective of its size
+     * @param compress      {@code true} to write compressed blocks
+     * @throws IOException
+     */
+    public CsvSink(final File file, final long maxFileSize, final RollOver rollOver, final int flushSize, final long flushInterval,
+                   final boolean compress) throws IOException {
+        this.maxFileSize = maxFileSize;
+        this.rollOver = Objects.requireNonNull(rollOver);
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.buffer = new StringBuilder(flushSize + 1024);
+        this.lastFlushTime = System.currentTimeMillis();
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.compressors = compress ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "csv-compressor");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.blocks = new ArrayDeque<>();
+        this.maxPendingBlocks = threads * 2;
+
+        open(Objects.requireNonNull(file));
+    }
+
+    /**
+     * @param record The record to write, a record separator is added after it
+     * @throws IOException
+     */
+    public void append(final CharSequence record) throws IOException {
+        buffer.append(record).append(RECORD_SEPARATOR);
+        flushIfDue();
+    }
+
+    /**
+     * @param record Single-column numeric record, written without creating a string for it
+     * @throws IOException
+     */
+    public void append(final long record) throws IOException {
+        buffer.append(record).append(RECORD_SEPARATOR);
+        flushIfDue();
+    }
+
+    /**
+     * Writes the buffered records to the current file, and rolls over to a new file if the current one has grown over the limit. A
+     * compressing sink also waits for the blocks still being compressed.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        submit();
+        drain(true);
+    }
+
+    /**
+     * Flushes the sink and makes what has been written to the current file durable
+     *
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+        flush();
+        outputStream.getFD().sync();
+    }
+
+    /**
+     * @return The file being written into currently
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return Number of bytes written to {@link #getFile()}, which is its length after a {@link #flush()}
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            outputStream.close();
+            if (compressors != null) {
+                compressors.shutdownNow();
+            }
+        }
+    }
+
+    private void flushIfDue() throws IOException {
+        if (buffer.length() >= flushSize || System.currentTimeMillis() - lastFlushTime >= flushInterval) {
+            submit();
+            drain(false);
+        }
+    }
+
+    /**
+     * Hands the buffered records over to be written, as they are or as a block to compress
+     *
+     * @throws IOException
+     */
+    private void submit() throws IOException {
+        lastFlushTime = System.currentTimeMillis();
+        if (buffer.length() == 0) {
+            return;
+        }
+
+        final String records = buffer.toString();
+        buffer.setLength(0);
+        if (compressors == null) {
+            write(records.getBytes(StandardCharsets.UTF_8));
+        } else {
+            blocks.add(compressors.submit(() -> BlockFormat.encode(records)));
+        }
+    }
+
+    /**
+     * Writes the compressed blocks, in order, as far as they are ready
+     *
+     * @param all {@code true} to wait for every block, otherwise only for as many as to keep the pending blocks within the limit
+     * @throws IOException
+     */
+    private void drain(final boolean all) throws IOException {
+        while (!blocks.isEmpty() && (all || blocks.peek().isDone() || blocks.size() > maxPendingBlocks)) {
+            try {
+                write(blocks.poll().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing " + file.getName());
+            } catch (ExecutionException e) {
+                throw new IOException("Could not compress a block of " + file.getName(), e.getCause());
+            }
+        }
+    }
+
+    private void write(final byte[] bytes) throws IOException {
+        outputStream.write(bytes);
+        outputStream.flush();
+        fileSize += bytes.length;
+        Metrics.getInstance().written(bytes.length);
+
+        if (fileSize > maxFileSize) {
+            logger.info(file.getName() + " is overflowing, writing to new file now.");
+            // The next checkpoint only makes the new file durable
+            outputStream.getFD().sync();
+            outputStream.close();
+            open(rollOver.next());
+        }
+    }
+
+    private void open(final File file) throws IOException {
+        boolean compress = compressors != null;
+        if (file.length() > 0 && BlockIndex.isCompressed(file) != compress) {
+            logger.info(String.format("%s is %s, writing to new file now.", file.getName(), compress ? "not compressed" : "compressed"));
+            open(rollOver.next());
+            return;
+        }
+
+        if (compress && file.length() > 0) {
+            long validLength = BlockIndex.verify(file).getValidLength();
+            if (validLength < file.length()) {
+                logger.warn(String.format("%s has an incomplete block at %d, dropping its last %d bytes", file.getName(), validLength,
+                        file.length() - validLength));
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+            }
+        }
+
+        this.file = file;
+        this.fileSize = file.length();
+        this.outputStream = new FileOutputStream(file, true);
+
+        if (compress && fileSize == 0) {
+            write(BlockFormat.fileHeader());
+        }
+    }
+
+    /**
+     * Supplies the file to continue writing into once the current one is full
+     */
+    @FunctionalInterface
+    public interface RollOver {
+        File next() throws IOException;
+    }
+}
@@ -0,0 +1,101 @@
+package in.clayfish.pyry.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * Hands out increasing IDs without the threads asking for them ever waiting on each other. Every thread draws from a block of IDs of
+ * its own, and only reserves the next block once it has used its block up. The highest ID reserved so far, the high-water mark, is
+ * saved durably before a block is handed out, so the IDs stay unique across restarts without looking at what was written with them.
+ * <p>
+ * The IDs are unique and increase within a thread, but the IDs left in the blocks of a previous run are never used.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class IdAllocator {
+    private final File file;
+    private final int blockSize;
+    private final ThreadLocal<Block> blocks;
+    private long highWaterMark;
+
+    /**
+     * @param file      The file to keep the high-water mark in
+     * @param floor     The IDs handed out are greater than this, as well as greater than the saved high-water mark
+     * @param blockSize Number of IDs a thread reserves at once
+     * @throws IOException
+     */
+    public IdAllocator(final File file, final long floor, final int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize should be greater than 0, found " + blockSize);
+        }
+        this.file = Objects.requireNonNull(file);
+        this.blockSize = blockSize;
+        this.blocks = ThreadLocal.withInitial(Block::new);
+        this.highWaterMark = floor;
+
+        if (file.exists()) {
+            String saved = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            if (!saved.isEmpty()) {
+                highWaterMark = Math.max(highWaterMark, Long.parseLong(saved));
+            }
+        }
+    }
+
+    /**
+     * @return The next ID
+     */
+    public long next() {
+        Block block = blocks.get();
+        if (block.next > block.last) {
+            block.last = reserve();
+            block.next = block.last - blockSize + 1;
+        }
+        return block.next++;
+    }
+
+    /**
+     * @return The highest ID reserved so far
+     */
+    public synchronized long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return The last ID of the reserved block
+     */
+    private synchronized long reserve() {
+        try {
+            save(highWaterMark + blockSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not reserve IDs in " + file, e);
+        }
+        highWaterMark += blockSize;
+        return highWaterMark;
+    }
+
+    private void save(final long mark) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(Long.toString(mark).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * IDs (last - blockSize, last] reserved by one thread, next being the first one not used yet
+     */
+    private static final class Block {
+        private long next = 1;
+        private long last = 0;
+    }
+}
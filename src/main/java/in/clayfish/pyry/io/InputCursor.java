@@ -0,0 +1,126 @@
+package in.clayfish.pyry.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forward-only reader of the tweet IDs saved in first-level-N.csv files. Each file is opened only once, the cursor seeks to the
+ * starting line using the {@link LineIndex} of that file, compressed or not, and moves on to the next file once the current one is exhausted.
+ * <p>
+ * Instances are not thread-safe, every extractor should own its cursor.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class InputCursor implements Closeable {
+    private final File folder;
+    private int fileIndex;
+    private long lineIndex;
+    private BufferedReader reader;
+
+    /**
+     * @param folder    Folder containing the first-level files
+     * @param fileIndex Index of the first-level file to start from
+     * @param lineIndex Line of that file to start from
+     */
+    public InputCursor(final File folder, final int fileIndex, final long lineIndex) {
+        if (fileIndex < 1 || lineIndex < 0) {
+            throw new IllegalArgumentException(String.format("fileIndex(%d) should be greater than 0 and lineIndex(%d) should not be negative",
+                    fileIndex, lineIndex));
+        }
+        this.folder = folder;
+        this.fileIndex = fileIndex;
+        this.lineIndex = lineIndex;
+    }
+
+    /**
+     * @return The next tweet ID, or {@code null} if there is nothing left to read
+     * @throws IOException
+     */
+    public String next() throws IOException {
+        while (true) {
+            if (reader == null && !open()) {
+                return null;
+            }
+
+            String line = reader.readLine();
+            if (line == null) {
+                close();
+                if (!getFile(fileIndex + 1).exists()) {
+                    return null;
+                }
+                fileIndex++;
+                lineIndex = 0;
+                continue;
+            }
+
+            line = line.trim();
+            if (!line.isEmpty()) {
+                lineIndex++;
+                return line;
+            }
+        }
+    }
+
+    /**
+     * @return Index of the file the next tweet ID will be read from
+     */
+    public int getFileIndex() {
+        return fileIndex;
+    }
+
+    /**
+     * @return Line number, within the current file, of the next tweet ID
+     */
+    public long getLineIndex() {
+        return lineIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    /**
+     * Opens the current file and positions the reader at {@link #lineIndex}
+     *
+     * @return {@code false} if the current file does not exist
+     * @throws IOException
+     */
+    private boolean open() throws IOException {
+        File file = getFile(fileIndex);
+        if (!file.exists()) {
+            return false;
+        }
+
+        LineIndex index = LineIndex.open(file);
+        InputStream inputStream;
+        if (index.isCompressed()) {
+            inputStream = new BlockInputStream(file, index.floorOffset(lineIndex));
+        } else {
+            FileInputStream fileInputStream = new FileInputStream(file);
+            fileInputStream.getChannel().position(index.floorOffset(lineIndex));
+            inputStream = fileInputStream;
+        }
+        reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), 64 * 1024);
+
+        // Skip the lines between the indexed line and the one we want
+        for (long line = index.floorLine(lineIndex); line < lineIndex; ) {
+            String skipped = reader.readLine();
+            if (skipped == null) {
+                break;
+            }
+            if (!skipped.trim().isEmpty()) {
+                line++;
+            }
+        }
+        return true;
+    }
+
+    private File getFile(final int index) {
+        return new File(String.format("%s/first-level-%d.csv", folder.getPath(), index));
+    }
+}
@@ -0,0 +1,236 @@
+package in.clayfish.pyry.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Sparse line-offset index of a CSV file, persisted next to it as {@code <file>.idx}. Every {@link #STRIDE}-th non-blank line has its
+ * byte offset recorded, so a reader can seek close to any line without parsing the file from the beginning. The index is extended
+ * incrementally when the data file has grown since it was last built.
+ * <p>
+ * A compressed file is indexed by its blocks instead (see {@link BlockIndex}), the offsets being those of the blocks. Such an index is
+ * cheap to build from the block headers, so it is not persisted.
+ * <p>
+ * An instance is not thread-safe, but any number of threads may open the index of the same file at once. Each of them saves it through
+ * its own temporary file, and the last one to finish replaces the index.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class LineIndex {
+    public static final String EXTENSION = ".idx";
+    public static final int STRIDE = 1024;
+
+    private static final int MAGIC = 0x4C494458; // LIDX
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File dataFile;
+    private final File indexFile;
+
+    /**
+     * Number of bytes of the data file covered by this index, always ending at a line boundary
+     */
+    private long indexedLength;
+
+    /**
+     * Number of non-blank lines in the first {@link #indexedLength} bytes
+     */
+    private long lineCount;
+    private long[] offsets;
+    private int size;
+
+    /**
+     * {@code null} unless the data file is compressed
+     */
+    private BlockIndex blockIndex;
+
+    private LineIndex(final File dataFile) {
+        this.dataFile = dataFile;
+        this.indexFile = new File(dataFile.getPath() + EXTENSION);
+        this.offsets = new long[16];
+    }
+
+    /**
+     * Loads the index of the given file, building or extending it if required
+     *
+     * @param dataFile The CSV file to index
+     * @return Up-to-date index of the given file
+     * @throws IOException
+     */
+    public static LineIndex open(final File dataFile) throws IOException {
+        Objects.requireNonNull(dataFile);
+        LineIndex lineIndex = new LineIndex(dataFile);
+
+        if (BlockIndex.isCompressed(dataFile)) {
+            lineIndex.blockIndex = BlockIndex.open(dataFile);
+            lineIndex.lineCount = lineIndex.blockIndex.getRecordCount();
+            return lineIndex;
+        }
+
+        boolean loaded = lineIndex.load();
+        if (!loaded || lineIndex.indexedLength > dataFile.length()) {
+            // Missing, corrupt or stale index of a truncated file, start over
+            lineIndex.indexedLength = 0;
+            lineIndex.lineCount = 0;
+            lineIndex.size = 0;
+        }
+
+        if (lineIndex.extend()) {
+            lineIndex.save();
+        }
+        return lineIndex;
+    }
+
+    /**
+     * @param line The line number which is sought
+     * @return The nearest indexed line number which is not greater than the given line
+     */
+    public long floorLine(final long line) {
+        if (blockIndex != null) {
+            return blockIndex.floorRecord(line);
+        }
+        if (size == 0) {
+            return 0;
+        }
+        return Math.min(line / STRIDE, size - 1) * STRIDE;
+    }
+
+    /**
+     * @param line The line number which is sought
+     * @return Byte offset of {@link #floorLine(long)} in the data file
+     */
+    public long floorOffset(final long line) {
+        if (blockIndex != null) {
+            return blockIndex.floorOffset(line);
+        }
+        if (size == 0) {
+            return 0;
+        }
+        return offsets[(int) Math.min(line / STRIDE, size - 1)];
+    }
+
+    /**
+     * @return Number of complete non-blank lines in the data file, as of the time it was indexed
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return {@code true} if the data file is compressed, in which case {@link #floorOffset(long)} is the offset of a block
+     */
+    public boolean isCompressed() {
+        return blockIndex != null;
+    }
+
+    /**
+     * Scans the part of the data file which has not been indexed yet
+     *
+     * @return {@code true} if anything was added to the index
+     * @throws IOException
+     */
+    private boolean extend() throws IOException {
+        if (!dataFile.exists() || dataFile.length() <= indexedLength) {
+            return false;
+        }
+
+        long position = indexedLength;
+        long lineStart = indexedLength;
+        boolean blank = true;
+        boolean changed = false;
+
+        try (FileChannel channel = new FileInputStream(dataFile).getChannel()) {
+            channel.position(position);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+
+                    if (b == '\n') {
+                        if (!blank) {
+                            if (lineCount % STRIDE == 0) {
+                                add(lineStart);
+                            }
+                            lineCount++;
+                        }
+                        indexedLength = position;
+                        lineStart = position;
+                        blank = true;
+                        changed = true;
+                    } else if (b != '\r' && b != ' ' && b != '\t') {
+                        blank = false;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+
+        return changed;
+    }
+
+    private void add(final long offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+    }
+
+    /**
+     * @return {@code true} if a valid index was read from the sidecar file
+     */
+    private boolean load() {
+        if (!indexFile.exists()) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != STRIDE) {
+                return false;
+            }
+            indexedLength = in.readLong();
+            lineCount = in.readLong();
+            size = in.readInt();
+            offsets = new long[Math.max(size, 16)];
+            for (int i = 0; i < size; i++) {
+                offsets[i] = in.readLong();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file of its own first and renames it, so that a crash never leaves a half-written index behind,
+     * and neither does another thread saving the same index
+     *
+     * @throws IOException
+     */
+    private void save() throws IOException {
+        File tempFile = Files.createTempFile(indexFile.getAbsoluteFile().getParentFile().toPath(), indexFile.getName(), ".tmp").toFile();
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(STRIDE);
+                out.writeLong(indexedLength);
+                out.writeLong(lineCount);
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(offsets[i]);
+                }
+            }
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+}
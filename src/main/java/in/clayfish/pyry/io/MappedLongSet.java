@@ -0,0 +1,192 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.utils.LongSet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * {@link LongSet} kept in a memory-mapped file, so that tens of millions of IDs neither live on the heap nor have to be read back
+ * when the process starts again. The file is the open-addressing table itself: a small header followed by the slots, {@code 0}
+ * marking an empty slot. Once the table is too full it is rehashed into a file of twice the size, which then replaces the old one.
+ * <p>
+ * What is added reaches the disk when the operating system writes the pages back, or at the latest on {@link #flush()}.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class MappedLongSet implements LongSet, Flushable, Closeable {
+    private static final int MAGIC = 0x4C534554; // LSET
+    private static final int HEADER_SIZE = 32;
+    private static final int MIN_CAPACITY_BITS = 16;
+
+    /**
+     * One mapping can not be bigger than 2 GB
+     */
+    private static final int MAX_CAPACITY_BITS = 27;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private final File file;
+
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+    private int capacityBits;
+    private long size;
+    private boolean containsZero;
+
+    /**
+     * @param file The file to keep the set in, created if it does not exist
+     * @throws IOException
+     */
+    public MappedLongSet(final File file) throws IOException {
+        this.file = Objects.requireNonNull(file);
+
+        if (file.exists() && file.length() >= HEADER_SIZE) {
+            map(file);
+            if (buffer.getInt(0) != MAGIC) {
+                close();
+                throw new IOException(file + " is not a set of IDs");
+            }
+            capacityBits = buffer.getInt(4);
+            size = buffer.getLong(8);
+            containsZero = buffer.getLong(16) != 0;
+        } else {
+            create(file, MIN_CAPACITY_BITS);
+        }
+    }
+
+    @Override
+    public boolean add(final long value) {
+        if (value == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            buffer.putLong(16, 1);
+            return added;
+        }
+
+        long mask = (1L << capacityBits) - 1;
+        for (long slot = LongSet.hash(value) & mask; ; slot = (slot + 1) & mask) {
+            long current = buffer.getLong(offset(slot));
+            if (current == value) {
+                return false;
+            }
+            if (current == 0) {
+                buffer.putLong(offset(slot), value);
+                buffer.putLong(8, ++size);
+                if (size > (1L << capacityBits) * LOAD_FACTOR) {
+                    try {
+                        grow();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Could not grow " + file, e);
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(final long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+
+        long mask = (1L << capacityBits) - 1;
+        for (long slot = LongSet.hash(value) & mask; ; slot = (slot + 1) & mask) {
+            long current = buffer.getLong(offset(slot));
+            if (current == value) {
+                return true;
+            }
+            if (current == 0) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    /**
+     * Forces everything added so far to the disk
+     */
+    @Override
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (randomAccessFile != null) {
+            buffer.force();
+            randomAccessFile.close();
+            randomAccessFile = null;
+        }
+    }
+
+    /**
+     * Rehashes the table into a file of twice the size, and replaces the current file with it
+     *
+     * @throws IOException
+     */
+    private void grow() throws IOException {
+        if (capacityBits == MAX_CAPACITY_BITS) {
+            throw new IllegalStateException(String.format("%s can not hold more than %d IDs", file, size));
+        }
+
+        MappedByteBuffer oldBuffer = buffer;
+        RandomAccessFile oldFile = randomAccessFile;
+        long oldCapacity = 1L << capacityBits;
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        create(tempFile, capacityBits + 1);
+        long mask = (1L << capacityBits) - 1;
+        for (long oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            long value = oldBuffer.getLong(offset(oldSlot));
+            if (value != 0) {
+                long slot = LongSet.hash(value) & mask;
+                while (buffer.getLong(offset(slot)) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                buffer.putLong(offset(slot), value);
+            }
+        }
+        buffer.putLong(8, size);
+        buffer.putLong(16, containsZero ? 1 : 0);
+        buffer.force();
+
+        oldFile.close();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void create(final File target, final int bits) throws IOException {
+        try (RandomAccessFile newFile = new RandomAccessFile(target, "rw")) {
+            newFile.setLength(0);
+            newFile.setLength(HEADER_SIZE + (8L << bits));
+        }
+        map(target);
+        capacityBits = bits;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, bits);
+    }
+
+    private void map(final File target) throws IOException {
+        randomAccessFile = new RandomAccessFile(target, "rw");
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+    }
+
+    private static int offset(final long slot) {
+        return (int) (HEADER_SIZE + (slot << 3));
+    }
+}
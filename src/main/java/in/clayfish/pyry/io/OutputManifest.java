@@ -0,0 +1,285 @@
+package in.clayfish.pyry.io;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * What the output folder holds, kept in {@code manifest.csv} so that a restart does not have to read all the output again. For every
+ * first-level and second-level file it records how many bytes of the file have been read, and the number of records, the smallest
+ * and the largest tweet ID and the largest conversation ID in those bytes.
+ * <p>
+ * {@link #refresh()} reads only what has been appended to the files since they were last read, a file which has shrunk is read again
+ * from the beginning. Compressed and columnar files are read up to their last complete block, plain files up to their last complete
+ * record, which may span several lines. The extractors refresh and save the manifest at every checkpoint, so at startup only what was
+ * written after the last checkpoint is left to read.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class OutputManifest {
+    private static final Logger logger = LogManager.getLogger(OutputManifest.class);
+
+    public static final String FILE_NAME = "manifest.csv";
+
+    private static final String FIRST_LEVEL_PREFIX = "first-level-";
+    private static final String SECOND_LEVEL_PREFIX = "second-level-";
+
+    private final File folder;
+    private final File manifestFile;
+    private final Map<String, Entry> entries;
+    private boolean changed;
+
+    /**
+     * @param folder The output folder
+     * @throws IOException
+     */
+    public OutputManifest(final File folder) throws IOException {
+        this.folder = Objects.requireNonNull(folder);
+        this.manifestFile = new File(folder, FILE_NAME);
+        this.entries = new TreeMap<>();
+
+        if (manifestFile.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * Reads what has been added to the output files since they were last read, and forgets the files which are gone
+     *
+     * @return {@code true} if anything has changed
+     * @throws IOException
+     */
+    public synchronized boolean refresh() throws IOException {
+        File[] files = folder.listFiles((dir, name) -> isOutputFile(name));
+        if (files == null) {
+            return false;
+        }
+
+        Map<String, Entry> current = new TreeMap<>();
+        for (File file : files) {
+            Entry entry = entries.get(file.getName());
+            if (entry == null) {
+                entry = new Entry();
+                changed = true;
+            }
+            current.put(file.getName(), entry);
+
+            long length = file.length();
+            if (entry.length == length) {
+                continue;
+            }
+            if (entry.length > length) {
+                logger.warn(String.format("%s has shrunk, reading it again", file.getName()));
+                entry.reset();
+            }
+            read(file, entry);
+            changed = true;
+        }
+
+        changed |= current.size() != entries.size();
+        entries.clear();
+        entries.putAll(current);
+        return changed;
+    }
+
+    /**
+     * Forgets what has been read of the given file, so that it is read again from the beginning by the next {@link #refresh()}. A file
+     * cut back may grow past the length read before it was cut, so that is not noticed otherwise.
+     *
+     * @param file An output file
+     */
+    public synchronized void forget(final File file) {
+        if (entries.remove(file.getName()) != null) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Saves the manifest if it has changed, atomically and durably replacing the previous one
+     *
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+
+        StringBuilder contents = new StringBuilder();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry value = entry.getValue();
+            contents.append(entry.getKey()).append(',').append(value.length).append(',').append(value.recordCount).append(',')
+                    .append(value.minTweetId).append(',').append(value.maxTweetId).append(',').append(value.maxConversationId).append("\r\n");
+        }
+
+        File tempFile = new File(manifestFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(contents.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        changed = false;
+    }
+
+    /**
+     * @param prefix {@code first-level-} or {@code second-level-}
+     * @return The largest tweet ID in the files having the prefix, {@link Long#MIN_VALUE} if there is none
+     */
+    public synchronized long getMaxTweetId(final String prefix) {
+        long max = Long.MIN_VALUE;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                max = Math.max(max, entry.getValue().maxTweetId);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param prefix {@code first-level-} or {@code second-level-}
+     * @return The smallest tweet ID in the files having the prefix, {@link Long#MAX_VALUE} if there is none
+     */
+    public synchronized long getMinTweetId(final String prefix) {
+        long min = Long.MAX_VALUE;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                min = Math.min(min, entry.getValue().minTweetId);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return The largest conversation ID in the second-level files, {@code 0} if there is none
+     */
+    public synchronized long getMaxConversationId() {
+        long max = 0;
+        for (Entry entry : entries.values()) {
+            max = Math.max(max, entry.maxConversationId);
+        }
+        return max;
+    }
+
+    /**
+     * @param file Any file
+     * @return Number of records in the file, or {@code -1} if the manifest does not know the file as it is now
+     */
+    public synchronized long getRecordCount(final File file) {
+        Entry entry = Objects.equals(file.getAbsoluteFile().getParentFile(), folder.getAbsoluteFile()) ? entries.get(file.getName()) : null;
+        return entry != null && entry.length == file.length() ? entry.recordCount : -1;
+    }
+
+    private void read(final File file, final Entry entry) throws IOException {
+        boolean secondLevel = file.getName().startsWith(SECOND_LEVEL_PREFIX);
+
+        if (file.getName().endsWith(".tcol")) {
+            if (file.length() < ColumnarFormat.FILE_HEADER_SIZE) {
+                // Just created, the header is yet to be written
+                return;
+            }
+            try (ColumnarReader reader = new ColumnarReader(file, Math.max(entry.length, ColumnarFormat.FILE_HEADER_SIZE))) {
+                while (reader.nextBlock()) {
+                    for (int row = 0; row < reader.getRowCount(); row++) {
+                        entry.add(reader.getId(row), reader.getConversationId(row));
+                    }
+                }
+                entry.length = reader.getPosition();
+            }
+        } else if (BlockIndex.isCompressed(file)) {
+            try (BlockInputStream in = new BlockInputStream(file, Math.max(entry.length, BlockFormat.FILE_HEADER_SIZE))) {
+                read(in.readRemaining(), entry, secondLevel);
+                entry.length = in.getPosition();
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, entry.length, channel.size() - entry.length);
+                // A record still being written is left for the next time, it may end in a line break inside a quoted field
+                entry.length += read(tail, entry, secondLevel);
+            }
+        }
+    }
+
+    /**
+     * @return Number of bytes read, up to the end of the last record ended by a line break
+     */
+    private static int read(final ByteBuffer records, final Entry entry, final boolean secondLevel) {
+        int end = records.position();
+        for (CsvDecoder decoder = new CsvDecoder(records); decoder.next() && decoder.isTerminated(); end = decoder.getPosition()) {
+            try {
+                entry.add(decoder.getLong(0), secondLevel && decoder.getFieldCount() > 1 ? decoder.getLong(1) : 0);
+            } catch (NumberFormatException e) {
+                entry.recordCount++;
+                logger.warn("Skipping a malformed record: " + e.getMessage());
+            }
+        }
+        return end - records.position();
+    }
+
+    private void load() throws IOException {
+        for (CsvDecoder decoder = CsvDecoder.open(manifestFile); decoder.next(); ) {
+            if (decoder.getFieldCount() != 6) {
+                logger.warn(FILE_NAME + " is malformed, the output will be read again");
+                entries.clear();
+                return;
+            }
+            Entry entry = new Entry();
+            entry.length = decoder.getLong(1);
+            entry.recordCount = decoder.getLong(2);
+            entry.minTweetId = decoder.getLong(3);
+            entry.maxTweetId = decoder.getLong(4);
+            entry.maxConversationId = decoder.getLong(5);
+            entries.put(decoder.getString(0), entry);
+        }
+    }
+
+    private static boolean isOutputFile(final String name) {
+        return (name.startsWith(FIRST_LEVEL_PREFIX) || name.startsWith(SECOND_LEVEL_PREFIX)) && (name.endsWith(".csv") || name.endsWith(".tcol"));
+    }
+
+    /**
+     * What is known about one output file
+     */
+    private static final class Entry {
+        /**
+         * Number of bytes read, always ending at a record or block boundary
+         */
+        private long length;
+        private long recordCount;
+        private long minTweetId;
+        private long maxTweetId;
+        private long maxConversationId;
+
+        private Entry() {
+            reset();
+        }
+
+        private void reset() {
+            length = 0;
+            recordCount = 0;
+            minTweetId = Long.MAX_VALUE;
+            maxTweetId = Long.MIN_VALUE;
+            maxConversationId = 0;
+        }
+
+        private void add(final long tweetId, final long conversationId) {
+            recordCount++;
+            minTweetId = Math.min(minTweetId, tweetId);
+            maxTweetId = Math.max(maxTweetId, tweetId);
+            maxConversationId = Math.max(maxConversationId, conversationId);
+        }
+    }
+}
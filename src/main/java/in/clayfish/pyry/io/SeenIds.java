@@ -0,0 +1,75 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.utils.LongHashSet;
+import in.clayfish.pyry.utils.LongSet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * IDs which have been written to the output already. An ID is added as soon as it is handed to the sink, but it is made durable only
+ * on {@link #commit()}, i.e. after the sink has been flushed. So after a crash the saved set never claims an ID whose record did not
+ * make it to the disk.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class SeenIds implements Closeable {
+    private final LongSet committed;
+    private final LongHashSet pending;
+
+    /**
+     * @param file     The file to keep the IDs in
+     * @param inMemory {@code true} to keep the IDs on the heap only, in which case they are forgotten when the process ends
+     * @throws IOException
+     */
+    public SeenIds(final File file, final boolean inMemory) throws IOException {
+        this.committed = inMemory ? new LongHashSet(1 << 16) : new MappedLongSet(file);
+        this.pending = new LongHashSet(1 << 12);
+    }
+
+    /**
+     * @param id The ID to look for
+     * @return {@code true} if the ID has been written already
+     */
+    public synchronized boolean contains(final long id) {
+        return committed.contains(id) || pending.contains(id);
+    }
+
+    /**
+     * @param id The ID being written
+     * @return {@code true} if the ID had not been written before
+     */
+    public synchronized boolean add(final long id) {
+        return !committed.contains(id) && pending.add(id);
+    }
+
+    /**
+     * Makes the IDs added so far durable, to be called once their records are on the disk
+     */
+    public synchronized void commit() {
+        pending.forEach(committed::add);
+        pending.clear();
+
+        if (committed instanceof MappedLongSet) {
+            ((MappedLongSet) committed).flush();
+        }
+    }
+
+    /**
+     * @return Number of IDs written
+     */
+    public synchronized long size() {
+        return committed.size() + pending.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (committed instanceof Closeable) {
+            ((Closeable) committed).close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package in.clayfish.pyry.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values, in the manner of HdrHistogram. Values below {@value #SUB_BUCKETS} have a bucket each,
+ * and every power of two above that is cut into {@value #SUB_BUCKETS} buckets, so a value is off by at most about 3% and the whole
+ * range of {@code long} takes under 2000 counters. Recording a value is a couple of atomic increments, so it can be left on.
+ * <p>
+ * This class is thread-safe. A snapshot taken while values are being recorded may miss some of them.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * @param value The value to record, a negative value is recorded as {@code 0}
+     */
+    public void record(final long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+
+        for (long current = max.get(); v > current && !max.compareAndSet(current, v); current = max.get()) {
+            // Lost the race to another value, try again
+        }
+    }
+
+    /**
+     * @return Number of values recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The largest value recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return Mean of the values recorded, {@code 0} if there are none
+     */
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * @param percentile Between {@code 0} and {@code 100}
+     * @return The value the given percent of the values are at or below, as the upper end of its bucket
+     */
+    public long getPercentile(final double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return Count, mean, the usual percentiles and max, in this order
+     */
+    public Map<String, Long> getSummary() {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", getCount());
+        summary.put("mean", getMean());
+        summary.put("p50", getPercentile(50));
+        summary.put("p90", getPercentile(90));
+        summary.put("p99", getPercentile(99));
+        summary.put("p999", getPercentile(99.9));
+        summary.put("max", getMax());
+        return summary;
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long upperBoundOf(final int index) {
+        if (index < SUB_BUCKETS * 2) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        long upper = ((subBucket + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
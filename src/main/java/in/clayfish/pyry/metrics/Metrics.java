@@ -0,0 +1,381 @@
+package in.clayfish.pyry.metrics;
+
+import in.clayfish.pyry.utils.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONValue;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics of the whole process: latencies of every {@link Stage}, requests by HTTP status, bytes in and out, depths of the queues
+ * between the stages, and the progress of the step with the time left. Everything is recorded with lock-free counters and
+ * {@link Histogram}s, so they are always on.
+ * <p>
+ * Once {@link #start(ApplicationProperties)}ed, the metrics are shown through JMX (see {@link MetricsMXBean}) if {@code metrics.jmx} is
+ * {@code true}, and saved every {@code metrics.interval} as JSON in {@code metrics.json} in the output folder.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class Metrics implements MetricsMXBean {
+    private static final Logger logger = LogManager.getLogger(Metrics.class);
+    private static final Metrics INSTANCE = new Metrics();
+
+    public static final String OBJECT_NAME = "in.clayfish.pyry:type=Metrics";
+    public static final String SNAPSHOT_FILE = "metrics.json";
+
+    /**
+     * Stages whose latency is recorded
+     */
+    public enum Stage {
+        HTTP, PARSE, SERIALIZE, WRITE, CHECKPOINT
+    }
+
+    private final long startTime;
+    private final Map<Stage, Histogram> latencies;
+    private final LongAdder requests;
+    private final LongAdder failedRequests;
+    private final ConcurrentMap<Integer, LongAdder> statusCounts;
+    private final LongAdder bytesIn;
+    private final LongAdder bytesOut;
+    private final LongAdder recordsWritten;
+    private final ConcurrentMap<String, LongSupplier> queues;
+    private final ConcurrentMap<String, Progress> progress;
+
+    private volatile double requestsPerSecond;
+    private long lastSampleTime;
+    private long lastSampleRequests;
+
+    private ScheduledExecutorService reporter;
+    private File snapshotFile;
+    private ObjectName objectName;
+
+    private Metrics() {
+        this.startTime = System.currentTimeMillis();
+        this.latencies = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new Histogram());
+        }
+        this.requests = new LongAdder();
+        this.failedRequests = new LongAdder();
+        this.statusCounts = new ConcurrentHashMap<>();
+        this.bytesIn = new LongAdder();
+        this.bytesOut = new LongAdder();
+        this.recordsWritten = new LongAdder();
+        this.queues = new ConcurrentHashMap<>();
+        this.progress = new ConcurrentHashMap<>();
+        this.lastSampleTime = startTime;
+    }
+
+    /**
+     * @return The metrics of the process
+     */
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param stage The stage which has done one piece of work
+     * @param since {@link System#nanoTime()} when it started on it
+     */
+    public void time(final Stage stage, final long since) {
+        latencies.get(stage).record((System.nanoTime() - since) / 1000);
+    }
+
+    /**
+     * @param status HTTP status of the response
+     * @param bytes  Length of its body
+     */
+    public void response(final int status, final long bytes) {
+        requests.increment();
+        statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+        bytesIn.add(bytes);
+    }
+
+    /**
+     * A request which did not get a response
+     */
+    public void failure() {
+        requests.increment();
+        failedRequests.increment();
+    }
+
+    /**
+     * @param bytes Bytes written to the output files
+     */
+    public void written(final long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * @param records Number of records, i.e. tweet IDs or tweets, handed to the output
+     */
+    public void recordsWritten(final long records) {
+        recordsWritten.add(records);
+    }
+
+    /**
+     * @param name  Name of the queue, a queue of the same name is replaced
+     * @param depth Number of items in the queue
+     */
+    public void queue(final String name, final LongSupplier depth) {
+        queues.put(name, depth);
+    }
+
+    /**
+     * @param name Name of the work, e.g. the step or a part of it. Work of the same name is replaced.
+     * @param done Share of the work done, between {@code 0} and {@code 1}
+     */
+    public void progress(final String name, final DoubleSupplier done) {
+        progress.put(name, new Progress(done));
+    }
+
+    /**
+     * Shows the metrics through JMX and starts saving them in the output folder, as configured
+     *
+     * @param props The application properties
+     */
+    public synchronized void start(final ApplicationProperties props) {
+        if (props.isMetricsJmx() && objectName == null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                objectName = new ObjectName(OBJECT_NAME);
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(this, objectName);
+                }
+            } catch (JMException e) {
+                logger.error("Could not register the metrics with JMX", e);
+            }
+        }
+
+        if (props.getMetricsInterval() > 0 && reporter == null) {
+            snapshotFile = new File(props.getOutputFolder(), SNAPSHOT_FILE);
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::save, props.getMetricsInterval(), props.getMetricsInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops saving the metrics, after saving them one last time
+     */
+    public synchronized void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+            save();
+        }
+    }
+
+    /**
+     * @return Everything, as saved in the snapshot file
+     */
+    public Map<String, Object> getSnapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("time", System.currentTimeMillis());
+        snapshot.put("uptimeSeconds", getUptimeSeconds());
+
+        Map<String, Object> http = new LinkedHashMap<>();
+        http.put("requests", getRequests());
+        http.put("failed", getFailedRequests());
+        http.put("requestsPerSecond", getRequestsPerSecond());
+        http.put("status", getStatusCounts());
+        snapshot.put("http", http);
+
+        Map<String, Object> bytes = new LinkedHashMap<>();
+        bytes.put("in", getBytesIn());
+        bytes.put("out", getBytesOut());
+        snapshot.put("bytes", bytes);
+        snapshot.put("recordsWritten", getRecordsWritten());
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        for (Map.Entry<Stage, Histogram> entry : latencies.entrySet()) {
+            latency.put(entry.getKey().name().toLowerCase(), entry.getValue().getSummary());
+        }
+        snapshot.put("latencyMicros", latency);
+        snapshot.put("queues", getQueueDepths());
+        snapshot.put("progress", getProgress());
+        snapshot.put("etaSeconds", getEtaSeconds());
+        return snapshot;
+    }
+
+    @Override
+    public long getUptimeSeconds() {
+        return (System.currentTimeMillis() - startTime) / 1000;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    @Override
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    @Override
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : statusCounts.entrySet()) {
+            counts.put(String.valueOf(entry.getKey()), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getRecordsWritten() {
+        return recordsWritten.sum();
+    }
+
+    @Override
+    public Map<String, Long> getHttpLatency() {
+        return latencies.get(Stage.HTTP).getSummary();
+    }
+
+    @Override
+    public Map<String, Long> getParseLatency() {
+        return latencies.get(Stage.PARSE).getSummary();
+    }
+
+    @Override
+    public Map<String, Long> getSerializeLatency() {
+        return latencies.get(Stage.SERIALIZE).getSummary();
+    }
+
+    @Override
+    public Map<String, Long> getWriteLatency() {
+        return latencies.get(Stage.WRITE).getSummary();
+    }
+
+    @Override
+    public Map<String, Long> getCheckpointLatency() {
+        return latencies.get(Stage.CHECKPOINT).getSummary();
+    }
+
+    @Override
+    public Map<String, Long> getQueueDepths() {
+        Map<String, Long> depths = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> entry : queues.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return depths;
+    }
+
+    @Override
+    public Map<String, Double> getProgress() {
+        Map<String, Double> done = new TreeMap<>();
+        for (Map.Entry<String, Progress> entry : progress.entrySet()) {
+            done.put(entry.getKey(), entry.getValue().done());
+        }
+        return done;
+    }
+
+    @Override
+    public Map<String, Long> getEtaSeconds() {
+        Map<String, Long> eta = new TreeMap<>();
+        for (Map.Entry<String, Progress> entry : progress.entrySet()) {
+            eta.put(entry.getKey(), entry.getValue().etaSeconds());
+        }
+        return eta;
+    }
+
+    /**
+     * Updates the rate of the requests, and saves the snapshot atomically
+     */
+    private synchronized void save() {
+        long now = System.currentTimeMillis();
+        long count = requests.sum();
+        if (now > lastSampleTime) {
+            requestsPerSecond = (count - lastSampleRequests) * 1000.0 / (now - lastSampleTime);
+        }
+        lastSampleTime = now;
+        lastSampleRequests = count;
+
+        if (snapshotFile == null) {
+            return;
+        }
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(JSONValue.toJSONString(getSnapshot()).getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not save the metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Work whose progress is followed, with where it stood when it was first seen to tell the pace by
+     */
+    private static final class Progress {
+        private final DoubleSupplier done;
+        private final long startTime;
+        private final double startDone;
+
+        private Progress(final DoubleSupplier done) {
+            this.done = done;
+            this.startTime = System.currentTimeMillis();
+            this.startDone = done();
+        }
+
+        private double done() {
+            double value = done.getAsDouble();
+            return Double.isNaN(value) ? 0 : Math.min(1, Math.max(0, value));
+        }
+
+        private long etaSeconds() {
+            double current = done();
+            if (current >= 1) {
+                return 0;
+            }
+            if (current <= startDone) {
+                return -1;
+            }
+            return (long) ((System.currentTimeMillis() - startTime) / 1000.0 * (1 - current) / (current - startDone));
+        }
+    }
+}
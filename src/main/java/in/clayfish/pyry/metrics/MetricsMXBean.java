@@ -0,0 +1,56 @@
+package in.clayfish.pyry.metrics;
+
+import java.util.Map;
+
+/**
+ * What {@link Metrics} shows through JMX, as {@code in.clayfish.pyry:type=Metrics}. Latencies are in microseconds.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public interface MetricsMXBean {
+
+    long getUptimeSeconds();
+
+    long getRequests();
+
+    long getFailedRequests();
+
+    /**
+     * @return Requests per second over the last {@code metrics.interval}
+     */
+    double getRequestsPerSecond();
+
+    /**
+     * @return Number of responses by HTTP status
+     */
+    Map<String, Long> getStatusCounts();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getRecordsWritten();
+
+    Map<String, Long> getHttpLatency();
+
+    Map<String, Long> getParseLatency();
+
+    Map<String, Long> getSerializeLatency();
+
+    Map<String, Long> getWriteLatency();
+
+    Map<String, Long> getCheckpointLatency();
+
+    Map<String, Long> getQueueDepths();
+
+    /**
+     * @return Share of the work done, between {@code 0} and {@code 1}, of the whole step and of its parts
+     */
+    Map<String, Double> getProgress();
+
+    /**
+     * @return Seconds left for the step and for its parts to be done at the current pace, {@code -1} if it can not be told yet
+     */
+    Map<String, Long> getEtaSeconds();
+}
@@ -1,14 +1,11 @@
 package in.clayfish.pyry.models;
 
-import in.clayfish.pyry.utils.IConstants;
+import in.clayfish.pyry.utils.LongHashSet;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
-
-import static java.lang.String.format;
 
 /**
  * @author shuklaalok7
@@ -17,16 +14,18 @@ import static java.lang.String.format;
 @Getter
 @Setter
 public class Conversation {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private long id;
     private Set<Tweet> tweets;
-    private Set<Long> tweetIds;
+    private LongHashSet tweetIds;
 
     /**
      *
      */
     private Conversation() {
         this.tweets = new HashSet<>();
-        this.tweetIds = new HashSet<>();
+        this.tweetIds = new LongHashSet();
     }
 
     /**
@@ -44,7 +43,10 @@ public class Conversation {
      */
     public void setTweets(Set<Tweet> tweets) {
         this.tweets = tweets;
-        this.tweetIds = this.tweets.stream().map(Tweet::getId).collect(Collectors.toSet());
+        this.tweetIds = new LongHashSet(tweets.size());
+        for (Tweet tweet : tweets) {
+            this.tweetIds.add(tweet.getId());
+        }
     }
 
     /**
@@ -58,8 +60,26 @@ public class Conversation {
         }
     }
 
+    /**
+     * Appends the records of all the tweets, one per line
+     *
+     * @param out The builder to append to
+     * @return The given builder
+     */
+    public StringBuilder toRecords(final StringBuilder out) {
+        boolean first = true;
+        for (Tweet tweet : tweets) {
+            if (!first) {
+                out.append(LINE_SEPARATOR);
+            }
+            tweet.toRecord(out);
+            first = false;
+        }
+        return out;
+    }
+
     @Override
     public String toString() {
-        return tweets.stream().map(Tweet::toString).reduce((s, s2) -> format("%s%n%s",s, s2)).orElse(IConstants.BLANK);
+        return toRecords(new StringBuilder(tweets.size() * 128)).toString();
     }
 }
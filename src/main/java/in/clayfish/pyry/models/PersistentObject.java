@@ -1,9 +1,6 @@
 package in.clayfish.pyry.models;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
-
-import static in.clayfish.pyry.utils.IConstants.*;
 
 /**
  * @author shuklaalok7
@@ -18,20 +15,11 @@ public abstract class PersistentObject<T extends PersistentObject> implements Se
     public abstract T fromRecord(String record);
 
     /**
-     * It sanitizes the fields of the object so that it does not cause any trouble while being saved in a comma-separated file
+     * Appends the record of this object, i.e. the form {@link #fromRecord(String)} reads
+     *
+     * @param out The builder to append to
+     * @return The given builder
      */
-    protected void sanitize() throws IllegalAccessException {
-        for(Field field : this.getClass().getDeclaredFields()) {
-            if(field.getType().isAssignableFrom(String.class)) {
-                field.setAccessible(true);
-                String value = (String) field.get(this);
-
-                if(value != null && !value.isEmpty()) {
-                    value = value.replaceAll(COMMA, BLANK).replaceAll(DOUBLE_QUOTES, BLANK);
-                    field.set(this, value);
-                }
-            }
-        }
-    }
+    public abstract StringBuilder toRecord(StringBuilder out);
 
 }
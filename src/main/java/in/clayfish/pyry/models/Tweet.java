@@ -1,5 +1,7 @@
 package in.clayfish.pyry.models;
 
+import in.clayfish.pyry.io.CsvDecoder;
+import in.clayfish.pyry.io.CsvEncoder;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
@@ -7,10 +9,6 @@ import org.apache.commons.lang3.StringUtils;
 import java.util.Date;
 import java.util.Objects;
 
-import static in.clayfish.pyry.utils.Converter.*;
-import static in.clayfish.pyry.utils.IConstants.BLANK;
-import static in.clayfish.pyry.utils.IConstants.COMMA;
-
 /**
  * The tweet
  *
@@ -35,39 +33,49 @@ public class Tweet extends PersistentObject<Tweet> {
             throw new IllegalArgumentException("record cannot be blank");
         }
 
-        String[] tweetMetadata = record.split(COMMA);
+        CsvDecoder decoder = CsvDecoder.of(record);
+        decoder.next();
+        return fromRecord(decoder);
+    }
 
-        if (tweetMetadata.length < 5 || tweetMetadata.length > 7) {
+    /**
+     * @param decoder Decoder positioned at the record of a tweet
+     * @return This tweet, read from the current record of the decoder
+     */
+    public Tweet fromRecord(final CsvDecoder decoder) {
+        if (decoder.getFieldCount() < 5 || decoder.getFieldCount() > 7) {
             throw new IllegalArgumentException("record is malformed and cannot be converted to tweet object");
         }
 
-        this.id = TO_LONG.apply(tweetMetadata[0]);
-        this.conversationId = TO_LONG.apply(tweetMetadata[1]);
-        this.timestamp = LONG_TO_DATE.apply(TO_LONG.apply(tweetMetadata[2]));
-        this.username = tweetMetadata[3];
-        this.user = tweetMetadata[4];
+        this.id = decoder.getLong(0);
+        this.conversationId = decoder.getLong(1);
+        this.timestamp = new Date(decoder.getLong(2));
+        this.username = decoder.getString(3);
+        this.user = decoder.getString(4);
 
-        if (tweetMetadata.length > 5) {
-            this.location = tweetMetadata[5];
+        if (decoder.getFieldCount() > 5) {
+            this.location = decoder.getString(5);
         }
 
-        if (tweetMetadata.length > 6) {
-            this.message = tweetMetadata[6];
+        if (decoder.getFieldCount() > 6) {
+            this.message = decoder.getString(6);
         }
 
         return this;
     }
 
+    @Override
+    public StringBuilder toRecord(final StringBuilder out) {
+        out.append(id).append(',').append(conversationId).append(',').append(timestamp.getTime()).append(',');
+        CsvEncoder.appendField(out, username).append(',');
+        CsvEncoder.appendField(out, user).append(',');
+        CsvEncoder.appendField(out, location).append(',');
+        return CsvEncoder.appendField(out, message);
+    }
+
     @Override
     public String toString() {
-        try {
-            this.sanitize();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Cannot serialize tweet: " + id);
-        }
-        return String.format("%d,%d,%d,%s,%s,%s,%s", id, conversationId, DATE_TO_LONG.apply(timestamp), username, user, location,
-                message.replaceAll(COMMA, BLANK));
+        return toRecord(new StringBuilder(128)).toString();
     }
 
 }
@@ -0,0 +1,21 @@
+package in.clayfish.pyry.parsers;
+
+import in.clayfish.pyry.models.Conversation;
+
+/**
+ * Converts the permalink page of a tweet to the conversation around it
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public interface ConversationParser {
+
+    /**
+     * @param conversationId ID to give to the conversation
+     * @param tweetId        ID of the tweet whose page it is
+     * @param html           The permalink page of the tweet
+     * @return Conversation around the given tweet
+     * @throws IllegalStateException If the page does not contain the tweet
+     */
+    Conversation parse(long conversationId, String tweetId, String html);
+}
@@ -0,0 +1,89 @@
+package in.clayfish.pyry.parsers;
+
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.utils.Converter;
+import in.clayfish.pyry.utils.IConstants;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.Date;
+
+/**
+ * Parses the whole page into a Jsoup {@link Document} and picks the tweets out of it with CSS selectors. Kept as the reference the
+ * {@link StreamingConversationParser} is checked against.
+ *
+ * @author shuklaalok7
+ * @since 18/01/16
+ */
+public class DomConversationParser implements ConversationParser {
+    private final String targetUsername;
+
+    /**
+     * @param targetUsername Twitter handle whose tweets are being fetched
+     */
+    public DomConversationParser(final String targetUsername) {
+        this.targetUsername = targetUsername;
+    }
+
+    @Override
+    public Conversation parse(final long conversationId, final String tweetId, final String html) {
+        Document document = Jsoup.parse(html);
+
+        Conversation conversation1 = new Conversation(conversationId);
+        for (Element streamItem : document.select("div.permalink-in-reply-tos li.stream-item")) {
+            conversation1.add(convertToTweet(streamItem));
+        }
+
+        // The tweet
+        Elements tweetBoxes = document.select("div.permalink-tweet-container .permalink-tweet");
+        if (tweetBoxes.isEmpty()) {
+            throw new IllegalStateException("Page does not contain the tweet " + tweetId);
+        }
+        Element tweetBox = tweetBoxes.get(0);
+        Element accountLink = tweetBox.select(".permalink-header a").get(0);
+
+        Tweet tweet1 = new Tweet();
+        tweet1.setId(Converter.TO_LONG.apply(tweetId));
+        tweet1.setUser(accountLink.select(".fullname").text().replace("Verified account", IConstants.BLANK));
+        tweet1.setUsername("@" + targetUsername);
+        tweet1.setMessage(tweetBox.select("p.tweet-text").text());
+        tweet1.setTimestamp(new Date(Converter.TO_LONG.apply(tweetBox.select(".time .js-relative-timestamp").attr("data-time-ms"))));
+        tweet1.setLocation(tweetBox.select(".tweet-geo-text").text());
+        conversation1.add(tweet1);
+
+        for (Element streamItem : document.select("div.replies-to li.stream-item")) {
+            conversation1.add(convertToTweet(streamItem));
+        }
+        return conversation1;
+    }
+
+    /**
+     * Returns tweet having conversationId not set
+     *
+     * @param streamItem    Found DOM element containing tweet
+     * @return Our persistent tweet object
+     */
+    private Tweet convertToTweet(Element streamItem) {
+        Tweet tweet = new Tweet();
+
+        StringBuilder message = new StringBuilder();
+        Element aElement = streamItem.select(".content .stream-item-header a").get(0);
+
+        Elements texts = streamItem.select(".content p.tweet-text");
+        if (!texts.isEmpty()) {
+            message.append(texts.get(0).text()).append(" ");
+        }
+
+        tweet.setId(Converter.TO_LONG.apply(streamItem.attr("data-item-id")));
+        tweet.setUser(aElement.select(".fullname").text().replace("Verified account", IConstants.BLANK));
+        tweet.setUsername(aElement.select(".username").text());
+        tweet.setMessage(message.toString());
+        tweet.setLocation(streamItem.select(".stream-item-footer .tweet-geo-text").text());
+        tweet.setTimestamp(new Date(Converter.TO_LONG.apply(streamItem.select(".stream-item-header .time .js-short-timestamp").attr("data-time-ms"))));
+
+        return tweet;
+    }
+}
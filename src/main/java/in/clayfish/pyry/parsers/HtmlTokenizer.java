@@ -0,0 +1,333 @@
+package in.clayfish.pyry.parsers;
+
+import org.jsoup.parser.Parser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Single forward pass over an HTML document which reports start tags, end tags and text to a {@link Handler} as they are met. It does
+ * not build any tree, keeps no state about the document beyond the current position and does not copy the text until asked to.
+ * <p>
+ * It understands just enough of HTML for the pages we scrape: comments, doctype, raw-text elements ({@code script}, {@code style}),
+ * void elements, quoted and unquoted attributes and character references.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class HtmlTokenizer {
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr"));
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList("script", "style", "textarea", "title"));
+
+    private final CharSequence html;
+    private final Attributes attributes;
+
+    /**
+     * @param html The document to tokenize
+     */
+    public HtmlTokenizer(final CharSequence html) {
+        this.html = html;
+        this.attributes = new Attributes();
+    }
+
+    /**
+     * Reports every token of the document to the given handler, in order
+     *
+     * @param handler Receiver of the tokens
+     */
+    public void tokenize(final Handler handler) {
+        final int length = html.length();
+        int position = 0;
+
+        while (position < length) {
+            int tagStart = indexOf('<', position);
+            if (tagStart < 0) {
+                handler.text(position, length);
+                return;
+            }
+            if (tagStart > position) {
+                handler.text(position, tagStart);
+            }
+            position = tagStart;
+
+            char next = tagStart + 1 < length ? html.charAt(tagStart + 1) : 0;
+            if (next == '!') {
+                position = startsWith("<!--", tagStart) ? skipPast("-->", tagStart + 4) : skipPast(">", tagStart);
+            } else if (next == '?') {
+                position = skipPast(">", tagStart);
+            } else if (next == '/') {
+                int nameEnd = readName(tagStart + 2);
+                if (nameEnd > tagStart + 2) {
+                    handler.endTag(html.subSequence(tagStart + 2, nameEnd).toString().toLowerCase());
+                }
+                position = skipPast(">", nameEnd);
+            } else if (isLetter(next)) {
+                int nameEnd = readName(tagStart + 1);
+                String name = html.subSequence(tagStart + 1, nameEnd).toString().toLowerCase();
+                position = readAttributes(nameEnd);
+                boolean selfClosing = position >= 2 && html.charAt(position - 2) == '/';
+
+                boolean isVoid = VOID_ELEMENTS.contains(name);
+                handler.startTag(name, attributes, isVoid || selfClosing);
+
+                if (RAW_TEXT_ELEMENTS.contains(name) && !selfClosing) {
+                    int end = indexOfIgnoreCase("</" + name, position);
+                    end = end < 0 ? length : end;
+                    if (!"script".equals(name) && !"style".equals(name) && end > position) {
+                        handler.text(position, end);
+                    }
+                    position = end;
+                }
+            } else {
+                // A lone '<' is text
+                handler.text(tagStart, tagStart + 1);
+                position = tagStart + 1;
+            }
+        }
+    }
+
+    /**
+     * Appends the text between the given positions to the given builder, decoding the character references
+     *
+     * @param out   The builder to append to
+     * @param start Start of the text, inclusive
+     * @param end   End of the text, exclusive
+     */
+    public void appendDecoded(final StringBuilder out, final int start, final int end) {
+        appendDecoded(out, start, end, false);
+    }
+
+    /**
+     * Decodes the references the way Jsoup does, named ones included, so that the text reads as it does in the DOM. Text without
+     * references, most of it, is copied as is.
+     */
+    private void appendDecoded(final StringBuilder out, final int start, final int end, final boolean inAttribute) {
+        for (int i = start; i < end; i++) {
+            if (html.charAt(i) == '&') {
+                out.append(html, start, i).append(Parser.unescapeEntities(html.subSequence(i, end).toString(), inAttribute));
+                return;
+            }
+        }
+        out.append(html, start, end);
+    }
+
+    private int readAttributes(int position) {
+        final int length = html.length();
+        attributes.clear();
+
+        while (position < length) {
+            char c = html.charAt(position);
+            if (c == '>') {
+                return position + 1;
+            }
+            if (isWhitespace(c) || c == '/') {
+                position++;
+                continue;
+            }
+
+            int nameStart = position;
+            while (position < length && !isWhitespace(html.charAt(position)) && "=>/".indexOf(html.charAt(position)) < 0) {
+                position++;
+            }
+            int nameEnd = position;
+
+            while (position < length && isWhitespace(html.charAt(position))) {
+                position++;
+            }
+            if (position < length && html.charAt(position) == '=') {
+                position++;
+                while (position < length && isWhitespace(html.charAt(position))) {
+                    position++;
+                }
+
+                char quote = position < length ? html.charAt(position) : 0;
+                int valueStart, valueEnd;
+                if (quote == '"' || quote == '\'') {
+                    valueStart = position + 1;
+                    valueEnd = indexOf(quote, valueStart);
+                    valueEnd = valueEnd < 0 ? length : valueEnd;
+                    position = Math.min(length, valueEnd + 1);
+                } else {
+                    valueStart = position;
+                    while (position < length && !isWhitespace(html.charAt(position)) && html.charAt(position) != '>') {
+                        position++;
+                    }
+                    valueEnd = position;
+                }
+                attributes.add(nameStart, nameEnd, valueStart, valueEnd);
+            } else {
+                attributes.add(nameStart, nameEnd, nameEnd, nameEnd);
+            }
+        }
+        return length;
+    }
+
+    private int readName(int position) {
+        while (position < html.length()) {
+            char c = html.charAt(position);
+            if (isWhitespace(c) || c == '>' || c == '/') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private int indexOf(final char c, final int from) {
+        for (int i = from; i < html.length(); i++) {
+            if (html.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfIgnoreCase(final String search, final int from) {
+        for (int i = from; i <= html.length() - search.length(); i++) {
+            if (regionMatches(search, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(final String search, final int position) {
+        return position + search.length() <= html.length() && regionMatches(search, position);
+    }
+
+    private boolean regionMatches(final String search, final int position) {
+        for (int j = 0; j < search.length(); j++) {
+            if (Character.toLowerCase(html.charAt(position + j)) != search.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipPast(final String search, final int from) {
+        int index = indexOfIgnoreCase(search, from);
+        return index < 0 ? html.length() : index + search.length();
+    }
+
+    private static boolean isLetter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Receiver of the tokens
+     */
+    public interface Handler {
+        /**
+         * @param name       Lower-case name of the element
+         * @param attributes Attributes of the element, valid only during this call
+         * @param selfClosing {@code true} for void and self-closed elements, no end tag will be reported for them
+         */
+        void startTag(String name, Attributes attributes, boolean selfClosing);
+
+        /**
+         * @param name Lower-case name of the element
+         */
+        void endTag(String name);
+
+        /**
+         * Text between the given positions, use {@link HtmlTokenizer#appendDecoded(StringBuilder, int, int)} to read it
+         *
+         * @param start Start of the text, inclusive
+         * @param end   End of the text, exclusive
+         */
+        void text(int start, int end);
+    }
+
+    /**
+     * Attributes of the current start tag. The instance is reused for every tag, values are decoded only when asked for.
+     */
+    public final class Attributes {
+        private int[] bounds = new int[32];
+        private int size;
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void add(final int nameStart, final int nameEnd, final int valueStart, final int valueEnd) {
+            if (size * 4 + 4 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            int offset = size * 4;
+            bounds[offset] = nameStart;
+            bounds[offset + 1] = nameEnd;
+            bounds[offset + 2] = valueStart;
+            bounds[offset + 3] = valueEnd;
+            size++;
+        }
+
+        /**
+         * @param name Lower-case name of the attribute
+         * @return Decoded value of the attribute, {@code null} if the element does not have it
+         */
+        public String get(final String name) {
+            int offset = find(name);
+            if (offset < 0) {
+                return null;
+            }
+            StringBuilder value = new StringBuilder(bounds[offset + 3] - bounds[offset + 2]);
+            appendDecoded(value, bounds[offset + 2], bounds[offset + 3], true);
+            return value.toString();
+        }
+
+        /**
+         * @param className The class to look for
+         * @return {@code true} if the {@code class} attribute of the element contains the given class, without decoding it
+         */
+        public boolean hasClass(final String className) {
+            int offset = find("class");
+            if (offset < 0) {
+                return false;
+            }
+
+            int end = bounds[offset + 3];
+            for (int i = bounds[offset + 2]; i < end; ) {
+                while (i < end && isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                int tokenStart = i;
+                while (i < end && !isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                if (i - tokenStart == className.length()) {
+                    boolean matches = true;
+                    for (int j = 0; j < className.length() && matches; j++) {
+                        matches = html.charAt(tokenStart + j) == className.charAt(j);
+                    }
+                    if (matches) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private int find(final String name) {
+            for (int i = 0; i < size; i++) {
+                int offset = i * 4;
+                if (bounds[offset + 1] - bounds[offset] != name.length()) {
+                    continue;
+                }
+                boolean matches = true;
+                for (int j = 0; j < name.length() && matches; j++) {
+                    matches = Character.toLowerCase(html.charAt(bounds[offset] + j)) == name.charAt(j);
+                }
+                if (matches) {
+                    return offset;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package in.clayfish.pyry.parsers;
+
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.utils.Converter;
+import in.clayfish.pyry.utils.IConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Picks the tweets out of the permalink page in one forward pass of the {@link HtmlTokenizer}, without building the DOM. Only a stack
+ * of the open elements, as bit masks of the classes which matter, and the text of the fields being read are kept. Every tweet is added
+ * to the conversation as soon as its {@code li.stream-item} closes.
+ * <p>
+ * It reads the same fields, with the same selectors and the same whitespace handling, as {@link DomConversationParser}.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class StreamingConversationParser implements ConversationParser {
+    private static final Set<String> BLOCK_ELEMENTS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "br", "dd", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form",
+            "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre", "section", "table", "tbody", "td",
+            "tfoot", "th", "thead", "tr", "ul"));
+
+    // Regions of the page
+    private static final int ANCESTORS = 1;
+    private static final int MAIN = 1 << 1;
+    private static final int REPLIES = 1 << 2;
+
+    // Parts of a tweet, only meaningful inside one
+    private static final int CONTENT = 1 << 3;
+    private static final int HEADER = 1 << 4;
+    private static final int FOOTER = 1 << 5;
+    private static final int TIME = 1 << 6;
+    private static final int PERMALINK_HEADER = 1 << 7;
+    private static final int ACCOUNT_LINK = 1 << 8;
+    private static final int TWEET_PARTS = CONTENT | HEADER | FOOTER | TIME | PERMALINK_HEADER | ACCOUNT_LINK;
+
+    private final String targetUsername;
+
+    /**
+     * @param targetUsername Twitter handle whose tweets are being fetched
+     */
+    public StreamingConversationParser(final String targetUsername) {
+        this.targetUsername = targetUsername;
+    }
+
+    @Override
+    public Conversation parse(final long conversationId, final String tweetId, final String html) {
+        Pass pass = new Pass(new Conversation(conversationId), tweetId, html);
+        pass.run();
+        return pass.conversation;
+    }
+
+    /**
+     * State of one pass over one page
+     */
+    private final class Pass implements HtmlTokenizer.Handler {
+        private final Conversation conversation;
+        private final String tweetId;
+        private final HtmlTokenizer tokenizer;
+        private final List<Frame> frames;
+        private final List<Capture> active;
+        private final StringBuilder scratch;
+
+        private int depth;
+        private TweetState main;
+
+        private Pass(final Conversation conversation, final String tweetId, final String html) {
+            this.conversation = conversation;
+            this.tweetId = tweetId;
+            this.tokenizer = new HtmlTokenizer(html);
+            this.frames = new ArrayList<>();
+            this.active = new ArrayList<>();
+            this.scratch = new StringBuilder();
+        }
+
+        private void run() {
+            tokenizer.tokenize(this);
+            while (depth > 0) {
+                close(frames.get(--depth));
+            }
+
+            if (main == null) {
+                throw new IllegalStateException("Page does not contain the tweet " + tweetId);
+            }
+        }
+
+        @Override
+        public void startTag(final String name, final HtmlTokenizer.Attributes attributes, final boolean selfClosing) {
+            Frame parent = depth > 0 ? frames.get(depth - 1) : null;
+            int context = parent == null ? 0 : parent.mask;
+            TweetState owner = parent == null ? null : parent.owner;
+            TweetState opened = null;
+
+            if (BLOCK_ELEMENTS.contains(name)) {
+                for (Capture capture : active) {
+                    capture.space();
+                }
+            }
+
+            int own = 0;
+            if ("div".equals(name)) {
+                own |= attributes.hasClass("permalink-in-reply-tos") ? ANCESTORS : 0;
+                own |= attributes.hasClass("replies-to") ? REPLIES : 0;
+                own |= attributes.hasClass("permalink-tweet-container") ? MAIN : 0;
+            }
+
+            if ((context & (ANCESTORS | REPLIES)) != 0 && "li".equals(name) && attributes.hasClass("stream-item")) {
+                opened = new TweetState(attributes.get("data-item-id"), false);
+            } else if ((context & MAIN) != 0 && main == null && attributes.hasClass("permalink-tweet")) {
+                opened = main = new TweetState(tweetId, true);
+            }
+            if (opened != null) {
+                owner = opened;
+                context &= ~TWEET_PARTS;
+            }
+
+            if (owner != null) {
+                own |= attributes.hasClass("content") ? CONTENT : 0;
+                own |= attributes.hasClass("stream-item-header") ? HEADER : 0;
+                own |= attributes.hasClass("stream-item-footer") ? FOOTER : 0;
+                own |= attributes.hasClass("time") ? TIME : 0;
+                own |= attributes.hasClass("permalink-header") ? PERMALINK_HEADER : 0;
+            }
+
+            Frame frame = selfClosing ? null : push(name);
+            if (owner != null && opened == null) {
+                own |= read(owner, context, name, attributes, frame);
+            }
+
+            if (frame != null) {
+                frame.mask = context | own;
+                frame.owner = owner;
+                frame.opened = opened;
+            }
+        }
+
+        @Override
+        public void endTag(final String name) {
+            for (int i = depth - 1; i >= 0; i--) {
+                if (frames.get(i).name.equals(name)) {
+                    while (depth > i) {
+                        close(frames.get(--depth));
+                    }
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void text(final int start, final int end) {
+            if (active.isEmpty()) {
+                return;
+            }
+
+            scratch.setLength(0);
+            tokenizer.appendDecoded(scratch, start, end);
+            for (Capture capture : active) {
+                capture.append(scratch);
+            }
+        }
+
+        /**
+         * Starts reading the fields of the tweet which the element holds
+         *
+         * @return Bits to add to the mask of the element
+         */
+        private int read(final TweetState owner, final int context, final String name, final HtmlTokenizer.Attributes attributes,
+                         final Frame frame) {
+            int own = 0;
+
+            if ("a".equals(name) && !owner.accountLinkFound
+                    && (owner.main ? (context & PERMALINK_HEADER) != 0 : (context & CONTENT) != 0 && (context & HEADER) != 0)) {
+                owner.accountLinkFound = true;
+                own |= ACCOUNT_LINK;
+            }
+
+            if ((context & ACCOUNT_LINK) != 0) {
+                if (attributes.hasClass("fullname")) {
+                    begin(owner.fullname, frame);
+                }
+                if (!owner.main && attributes.hasClass("username")) {
+                    begin(owner.username, frame);
+                }
+            }
+
+            if ("p".equals(name) && attributes.hasClass("tweet-text")) {
+                if (owner.main) {
+                    begin(owner.text, frame);
+                } else if ((context & CONTENT) != 0 && !owner.textFound) {
+                    owner.textFound = true;
+                    begin(owner.text, frame);
+                }
+            }
+
+            if (attributes.hasClass("tweet-geo-text") && (owner.main || (context & FOOTER) != 0)) {
+                begin(owner.location, frame);
+            }
+
+            if (owner.timestamp == null && (context & TIME) != 0 && (owner.main ? attributes.hasClass("js-relative-timestamp")
+                    : (context & HEADER) != 0 && attributes.hasClass("js-short-timestamp"))) {
+                // Like Elements.attr(), the first element having the attribute wins
+                owner.timestamp = attributes.get("data-time-ms");
+            }
+            return own;
+        }
+
+        private void begin(final Capture capture, final Frame frame) {
+            capture.begin();
+            if (frame == null) {
+                capture.end();
+            } else {
+                active.add(capture);
+                frame.endings.add(capture);
+            }
+        }
+
+        private Frame push(final String name) {
+            if (depth == frames.size()) {
+                frames.add(new Frame());
+            }
+            Frame frame = frames.get(depth++);
+            frame.name = name;
+            frame.endings.clear();
+            return frame;
+        }
+
+        private void close(final Frame frame) {
+            for (Capture capture : frame.endings) {
+                capture.end();
+                active.remove(capture);
+            }
+
+            if (frame.opened != null) {
+                conversation.add(frame.opened.toTweet());
+            }
+        }
+    }
+
+    /**
+     * Fields of one tweet, as they are being read
+     */
+    private final class TweetState {
+        private final String id;
+        private final boolean main;
+        private final Capture fullname = new Capture();
+        private final Capture username = new Capture();
+        private final Capture text = new Capture();
+        private final Capture location = new Capture();
+
+        private boolean accountLinkFound;
+        private boolean textFound;
+        private String timestamp;
+
+        private TweetState(final String id, final boolean main) {
+            this.id = id;
+            this.main = main;
+        }
+
+        private Tweet toTweet() {
+            if (!accountLinkFound) {
+                throw new IllegalStateException("Could not find the account of the tweet " + id);
+            }
+
+            Tweet tweet = new Tweet();
+            tweet.setId(Converter.TO_LONG.apply(id));
+            tweet.setUser(fullname.toString().replace("Verified account", IConstants.BLANK));
+            if (main) {
+                tweet.setUsername("@" + targetUsername);
+                tweet.setMessage(text.toString());
+            } else {
+                tweet.setUsername(username.toString());
+                tweet.setMessage(textFound ? text.toString() + " " : IConstants.BLANK);
+            }
+            tweet.setLocation(location.toString());
+            tweet.setTimestamp(new Date(Converter.TO_LONG.apply(timestamp)));
+            return tweet;
+        }
+    }
+
+    /**
+     * Text of the elements matching one selector, joined the way Jsoup's {@code Elements.text()} joins them
+     */
+    private static final class Capture {
+        private final StringBuilder joined = new StringBuilder();
+        private final StringBuilder current = new StringBuilder();
+        private int open;
+
+        private void begin() {
+            if (open++ == 0) {
+                current.setLength(0);
+            }
+        }
+
+        private void end() {
+            if (--open > 0) {
+                return;
+            }
+
+            int length = current.length();
+            if (length > 0 && current.charAt(length - 1) == ' ') {
+                current.setLength(length - 1);
+            }
+            if (joined.length() != 0) {
+                joined.append(' ');
+            }
+            joined.append(current);
+        }
+
+        /**
+         * Collapses the whitespace the way Jsoup does
+         */
+        private void append(final CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (HtmlTokenizer.isWhitespace(c)) {
+                    space();
+                } else {
+                    current.append(c);
+                }
+            }
+        }
+
+        private void space() {
+            int length = current.length();
+            if (length > 0 && current.charAt(length - 1) != ' ') {
+                current.append(' ');
+            }
+        }
+
+        @Override
+        public String toString() {
+            return joined.toString();
+        }
+    }
+
+    /**
+     * An open element
+     */
+    private static final class Frame {
+        private final List<Capture> endings = new ArrayList<>(2);
+        private String name;
+        private int mask;
+        private TweetState owner;
+        private TweetState opened;
+    }
+}
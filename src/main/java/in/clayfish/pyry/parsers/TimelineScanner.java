@@ -0,0 +1,474 @@
+package in.clayfish.pyry.parsers;
+
+import java.util.Arrays;
+
+/**
+ * Reads a page of the search timeline, i.e. a JSON object like {@code {"min_position": "...", "has_more_items": true,
+ * "items_html": "..."}}, in one pass. The {@code data-item-id} of every {@code li.stream-item} in {@code items_html} is read straight
+ * out of the JSON string into a {@code long[]}, without unescaping the HTML into a string or building a DOM for it.
+ * <p>
+ * An instance is meant to be reused for every page read by one thread, the IDs of the last page are overwritten by the next one.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class TimelineScanner {
+    private static final String STREAM_ITEM = "stream-item";
+    private static final char[] CLASS = "class".toCharArray();
+    private static final char[] DATA_ITEM_ID = "data-item-id".toCharArray();
+
+    // States of the HTML scanner
+    private static final int TEXT = 0;
+    private static final int TAG_NAME = 1;
+    private static final int OTHER_TAG = 2;
+    private static final int OTHER_TAG_QUOTED = 3;
+    private static final int ATTRIBUTES = 4;
+    private static final int ATTRIBUTE_NAME = 5;
+    private static final int AFTER_ATTRIBUTE_NAME = 6;
+    private static final int BEFORE_VALUE = 7;
+    private static final int VALUE = 8;
+
+    // Attributes of the li we care about
+    private static final int OTHER = 0;
+    private static final int CLASS_ATTRIBUTE = 1;
+    private static final int ITEM_ID_ATTRIBUTE = 2;
+
+    private long[] itemIds = new long[32];
+    private int itemCount;
+    private boolean hasMoreItems;
+    private CharSequence json;
+    private int minPositionStart;
+    private int minPositionEnd;
+
+    private int state;
+    private int tagNameLength;
+    private boolean li;
+    private char quote;
+    private final char[] attributeName = new char[DATA_ITEM_ID.length + 1];
+    private int attributeNameLength;
+    private int attribute;
+    private boolean streamItem;
+    private int classTokenLength;
+    private boolean classTokenMatches;
+    private long itemId;
+    private boolean itemIdValid;
+
+    /**
+     * @param json Body of the response
+     * @return {@code false} if the body is not a JSON object
+     */
+    public boolean scan(final CharSequence json) {
+        this.json = json;
+        this.itemCount = 0;
+        this.hasMoreItems = false;
+        this.minPositionStart = -1;
+        this.minPositionEnd = -1;
+
+        int position = skipWhitespace(0);
+        if (position >= json.length() || json.charAt(position) != '{') {
+            return false;
+        }
+        position++;
+
+        while (true) {
+            position = skipWhitespace(position);
+            if (position >= json.length()) {
+                return false;
+            }
+
+            char c = json.charAt(position);
+            if (c == '}') {
+                return true;
+            }
+            if (c == ',') {
+                position++;
+                continue;
+            }
+            if (c != '"') {
+                return false;
+            }
+
+            int keyStart = position + 1;
+            int keyEnd = skipString(position);
+            if (keyEnd < 0) {
+                return false;
+            }
+            position = skipWhitespace(keyEnd + 1);
+            if (position >= json.length() || json.charAt(position) != ':') {
+                return false;
+            }
+            position = skipWhitespace(position + 1);
+            if (position >= json.length()) {
+                return false;
+            }
+
+            boolean isString = json.charAt(position) == '"';
+            if (isString && keyEquals("items_html", keyStart, keyEnd)) {
+                position = scanItems(position + 1);
+            } else if (isString && keyEquals("min_position", keyStart, keyEnd)) {
+                minPositionStart = position + 1;
+                minPositionEnd = skipString(position);
+                position = minPositionEnd < 0 ? -1 : minPositionEnd + 1;
+            } else {
+                if (keyEquals("has_more_items", keyStart, keyEnd)) {
+                    hasMoreItems = startsWith("true", position);
+                }
+                position = skipValue(position);
+            }
+
+            if (position < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return IDs of the stream items of the last page, only the first {@link #getItemCount()} of them are valid
+     */
+    public long[] getItemIds() {
+        return itemIds;
+    }
+
+    /**
+     * @return Number of stream items on the last page
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return {@code has_more_items} of the last page
+     */
+    public boolean hasMoreItems() {
+        return hasMoreItems;
+    }
+
+    /**
+     * @return {@code min_position} of the last page, {@code null} if it has none. The string is created only when asked for.
+     */
+    public String getMinPosition() {
+        if (minPositionStart < 0) {
+            return null;
+        }
+        StringBuilder minPosition = new StringBuilder(minPositionEnd - minPositionStart);
+        for (int i = minPositionStart; i < minPositionEnd; i++) {
+            char c = json.charAt(i);
+            minPosition.append(c == '\\' && i + 1 < minPositionEnd ? json.charAt(++i) : c);
+        }
+        return minPosition.toString();
+    }
+
+    /**
+     * Unescapes the JSON string one character at a time and feeds the characters to the HTML scanner
+     *
+     * @param position Position after the opening quote
+     * @return Position after the closing quote, {@code -1} if the string does not end
+     */
+    private int scanItems(int position) {
+        final int length = json.length();
+        state = TEXT;
+
+        while (position < length) {
+            char c = json.charAt(position++);
+            if (c == '"') {
+                return position;
+            }
+
+            if (c == '\\') {
+                if (position >= length) {
+                    return -1;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'u':
+                        if (position + 4 > length) {
+                            return -1;
+                        }
+                        c = 0;
+                        for (int end = position + 4; position < end; position++) {
+                            int digit = Character.digit(json.charAt(position), 16);
+                            if (digit < 0) {
+                                return -1;
+                            }
+                            c = (char) (c << 4 | digit);
+                        }
+                        break;
+                    default:
+                        c = escaped;
+                }
+            }
+
+            feed(c);
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the HTML scanner by one character. Only the start tags of {@code li} elements are looked into, everything else is skipped.
+     */
+    private void feed(final char c) {
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    state = TAG_NAME;
+                    tagNameLength = 0;
+                    li = true;
+                }
+                break;
+
+            case TAG_NAME:
+                if (HtmlTokenizer.isWhitespace(c) || c == '>' || c == '/') {
+                    if (li && tagNameLength == 2) {
+                        streamItem = false;
+                        itemIdValid = false;
+                        state = ATTRIBUTES;
+                        feed(c);
+                    } else {
+                        state = tagNameLength == 0 && c != '/' ? TEXT : OTHER_TAG;
+                        feed(c);
+                    }
+                } else if (tagNameLength == 0 && !Character.isLetter(c) && c != '!') {
+                    state = TEXT;
+                } else {
+                    li &= tagNameLength < 2 && Character.toLowerCase(c) == "li".charAt(tagNameLength);
+                    tagNameLength++;
+                }
+                break;
+
+            case OTHER_TAG:
+                if (c == '>') {
+                    state = TEXT;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                    state = OTHER_TAG_QUOTED;
+                }
+                break;
+
+            case OTHER_TAG_QUOTED:
+                if (c == quote) {
+                    state = OTHER_TAG;
+                }
+                break;
+
+            case ATTRIBUTES:
+            case AFTER_ATTRIBUTE_NAME:
+                if (c == '>') {
+                    endLi();
+                } else if (c == '=' && state == AFTER_ATTRIBUTE_NAME) {
+                    state = BEFORE_VALUE;
+                } else if (!HtmlTokenizer.isWhitespace(c) && c != '/') {
+                    attributeNameLength = 0;
+                    appendToAttributeName(c);
+                    state = ATTRIBUTE_NAME;
+                }
+                break;
+
+            case ATTRIBUTE_NAME:
+                if (c == '=') {
+                    state = BEFORE_VALUE;
+                } else if (c == '>') {
+                    endLi();
+                } else if (HtmlTokenizer.isWhitespace(c)) {
+                    state = AFTER_ATTRIBUTE_NAME;
+                } else if (c == '/') {
+                    state = ATTRIBUTES;
+                } else {
+                    appendToAttributeName(c);
+                }
+                break;
+
+            case BEFORE_VALUE:
+                if (c == '>') {
+                    endLi();
+                } else if (!HtmlTokenizer.isWhitespace(c)) {
+                    beginValue();
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                    } else {
+                        quote = 0;
+                        valueChar(c);
+                    }
+                    state = VALUE;
+                }
+                break;
+
+            case VALUE:
+                if (quote != 0 ? c == quote : HtmlTokenizer.isWhitespace(c) || c == '>') {
+                    endValue();
+                    state = ATTRIBUTES;
+                    if (c == '>') {
+                        endLi();
+                    }
+                } else {
+                    valueChar(c);
+                }
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown state " + state);
+        }
+    }
+
+    private void appendToAttributeName(final char c) {
+        if (attributeNameLength < attributeName.length) {
+            attributeName[attributeNameLength] = Character.toLowerCase(c);
+        }
+        attributeNameLength++;
+    }
+
+    private boolean attributeNameEquals(final char[] name) {
+        if (attributeNameLength != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (attributeName[i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void beginValue() {
+        if (attributeNameEquals(CLASS)) {
+            attribute = CLASS_ATTRIBUTE;
+            classTokenLength = 0;
+            classTokenMatches = true;
+        } else if (attributeNameEquals(DATA_ITEM_ID)) {
+            attribute = ITEM_ID_ATTRIBUTE;
+            itemId = 0;
+            itemIdValid = true;
+        } else {
+            attribute = OTHER;
+        }
+    }
+
+    private void valueChar(final char c) {
+        if (attribute == CLASS_ATTRIBUTE) {
+            if (HtmlTokenizer.isWhitespace(c)) {
+                endClassToken();
+            } else {
+                classTokenMatches &= classTokenLength < STREAM_ITEM.length() && c == STREAM_ITEM.charAt(classTokenLength);
+                classTokenLength++;
+            }
+        } else if (attribute == ITEM_ID_ATTRIBUTE) {
+            if (c >= '0' && c <= '9') {
+                itemId = itemId * 10 + (c - '0');
+            } else {
+                itemIdValid = false;
+            }
+        }
+    }
+
+    private void endValue() {
+        if (attribute == CLASS_ATTRIBUTE) {
+            endClassToken();
+        }
+    }
+
+    private void endClassToken() {
+        streamItem |= classTokenMatches && classTokenLength == STREAM_ITEM.length();
+        classTokenLength = 0;
+        classTokenMatches = true;
+    }
+
+    private void endLi() {
+        state = TEXT;
+        if (!streamItem || !itemIdValid) {
+            return;
+        }
+
+        if (itemCount == itemIds.length) {
+            itemIds = Arrays.copyOf(itemIds, itemIds.length * 2);
+        }
+        itemIds[itemCount++] = itemId;
+    }
+
+    private int skipWhitespace(int position) {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @param position Position of the opening quote
+     * @return Position of the closing quote, {@code -1} if the string does not end
+     */
+    private int skipString(int position) {
+        for (position++; position < json.length(); position++) {
+            char c = json.charAt(position);
+            if (c == '\\') {
+                position++;
+            } else if (c == '"') {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param position Position of the first character of the value
+     * @return Position after the value, {@code -1} if it does not end
+     */
+    private int skipValue(int position) {
+        char c = json.charAt(position);
+        if (c == '"') {
+            int end = skipString(position);
+            return end < 0 ? -1 : end + 1;
+        }
+
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (; position < json.length(); position++) {
+                c = json.charAt(position);
+                if (c == '"') {
+                    position = skipString(position);
+                    if (position < 0) {
+                        return -1;
+                    }
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return position + 1;
+                }
+            }
+            return -1;
+        }
+
+        while (position < json.length() && ",}]".indexOf(json.charAt(position)) < 0 && !Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private boolean keyEquals(final String key, final int start, final int end) {
+        return end - start == key.length() && startsWith(key, start);
+    }
+
+    private boolean startsWith(final String search, final int position) {
+        if (position + search.length() > json.length()) {
+            return false;
+        }
+        for (int i = 0; i < search.length(); i++) {
+            if (json.charAt(position + i) != search.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
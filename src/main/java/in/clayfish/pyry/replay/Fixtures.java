@@ -0,0 +1,76 @@
+package in.clayfish.pyry.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Where the responses of Twitter are recorded, and replayed from, in a folder of fixtures
+ * <ul>
+ * <li>{@code timeline/<position>.json} - the page of the search timeline before the tweet ID {@code position}</li>
+ * <li>{@code status/<tweetId>.html} - the permalink page of the conversation of the tweet</li>
+ * </ul>
+ * No other page is recorded.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public abstract class Fixtures {
+    public static final String TIMELINE = "timeline";
+    public static final String STATUS = "status";
+
+    private static final Pattern TIMELINE_POSITION = Pattern.compile("(?:^|&)max_position=TWEET-(\\d+)-");
+    private static final Pattern STATUS_PATH = Pattern.compile("/[^/]+/status/(\\d+)/?");
+
+    /**
+     * @param uri The URI requested
+     * @return The fixture of the URI relative to the folder of fixtures, {@code null} if such pages are not recorded
+     */
+    public static String pathOf(final URI uri) {
+        if (uri.getPath() == null) {
+            return null;
+        }
+
+        if (uri.getPath().endsWith("/timeline") && uri.getRawQuery() != null) {
+            Matcher matcher = TIMELINE_POSITION.matcher(uri.getRawQuery());
+            return matcher.find() ? String.format("%s/%s.json", TIMELINE, matcher.group(1)) : null;
+        }
+
+        Matcher matcher = STATUS_PATH.matcher(uri.getPath());
+        return matcher.matches() ? String.format("%s/%s.html", STATUS, matcher.group(1)) : null;
+    }
+
+    /**
+     * Saves the body of a response as the fixture of its URL, if such pages are recorded
+     *
+     * @param folder The folder of fixtures
+     * @param url    The URL requested
+     * @param body   Body of the response
+     * @throws IOException
+     */
+    public static void record(final File folder, final String url, final String body) throws IOException {
+        String path;
+        try {
+            path = pathOf(new URI(url));
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        if (path == null || body == null) {
+            return;
+        }
+
+        File fixture = new File(folder, path);
+        if (!fixture.getParentFile().exists() && !fixture.getParentFile().mkdirs()) {
+            throw new IOException("Cannot create " + fixture.getParentFile());
+        }
+        File tempFile = new File(String.format("%s.%d.tmp", fixture.getPath(), Thread.currentThread().getId()));
+        Files.write(tempFile.toPath(), body.getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile.toPath(), fixture.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,283 @@
+package in.clayfish.pyry.replay;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import in.clayfish.pyry.utils.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for Twitter, serving the {@link Fixtures} of a folder over HTTP so that both the steps can run, and be load tested,
+ * without the network. It can be embedded, see {@code http.replay-folder}, or run on its own and be pointed at with
+ * {@code http.redirect-to}:
+ * <pre>
+ * java -cp twitter-scraper.jar in.clayfish.pyry.replay.ReplayServer [port]
+ * </pre>
+ * A page which has not been recorded is made up if possible:
+ * <ul>
+ * <li>A page of the timeline has a tweet every {@code http.replay.tweet-interval} milliseconds, down to the beginning of Twitter</li>
+ * <li>A permalink page is one of the recorded permalink pages, with the ID of its tweet replaced by the one asked for</li>
+ * <li>Any other page is an empty HTML page</li>
+ * </ul>
+ * Every response is delayed by {@code http.replay.latency} milliseconds give or take a half, a share of {@code http.replay.error-rate}
+ * of the requests fails with {@code 500}, and requests over {@code http.replay.max-requests-per-second} are throttled with {@code 429}.
+ * The randomness is seeded, so a run can be repeated.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class ReplayServer {
+    private static final Logger logger = LogManager.getLogger(ReplayServer.class);
+
+    private static final int PAGE_SIZE = 20;
+    private static final int TIMESTAMP_SHIFT = 22;
+    private static final String EMPTY_PAGE = "<!DOCTYPE html><html><head><title>Twitter</title></head><body></body></html>";
+
+    private final File folder;
+    private final long latency;
+    private final double errorRate;
+    private final double maxRequestsPerSecond;
+    private final long tweetInterval;
+    private final Random random;
+
+    /**
+     * Recorded permalink pages to make up the others from
+     */
+    private final File[] templates;
+
+    private final AtomicLong requests;
+    private final AtomicLong throttled;
+    private final AtomicLong failed;
+    private long throttleSecond;
+    private int throttleCount;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param folder               The folder of fixtures
+     * @param latency              Average delay of a response in milliseconds
+     * @param errorRate            Share of the requests to fail, between 0 and 1
+     * @param maxRequestsPerSecond Requests over this in a second are throttled, {@code 0} not to throttle
+     * @param tweetInterval        Milliseconds between the made-up tweets of the timeline, {@code 0} to serve the recorded pages only
+     */
+    public ReplayServer(final File folder, final long latency, final double errorRate, final double maxRequestsPerSecond,
+                        final long tweetInterval) {
+        this.folder = Objects.requireNonNull(folder);
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.tweetInterval = tweetInterval;
+        this.random = new Random(0);
+        this.requests = new AtomicLong();
+        this.throttled = new AtomicLong();
+        this.failed = new AtomicLong();
+
+        File[] statusFiles = new File(folder, Fixtures.STATUS).listFiles((dir, name) -> name.matches("\\d+\\.html"));
+        this.templates = statusFiles == null ? new File[0] : statusFiles;
+        Arrays.sort(templates);
+    }
+
+    /**
+     * @param props The application properties
+     * @return A server configured by the {@code http.replay.*} properties
+     */
+    public static ReplayServer of(final ApplicationProperties props) {
+        return new ReplayServer(new File(props.getReplayFolder()), props.getReplayLatency(), props.getReplayErrorRate(),
+                props.getReplayMaxRequestsPerSecond(), props.getReplayTweetInterval());
+    }
+
+    /**
+     * Starts serving on the loopback address. The threads of the server are daemons, so they do not keep the process alive.
+     *
+     * @param port The port to listen on, {@code 0} for any free port
+     * @return This server
+     * @throws IOException
+     */
+    public ReplayServer start(final int port) throws IOException {
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "replay-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+
+        // The dispatcher thread of the server inherits being a daemon from the thread starting it
+        Thread starter = new Thread(server::start, "replay-server-starter");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting the replay server", e);
+        }
+
+        logger.info(String.format("Replaying %s on %s", folder, getBaseUrl()));
+        return this;
+    }
+
+    /**
+     * @return The URL to send the requests to, without a trailing slash
+     */
+    public String getBaseUrl() {
+        return String.format("http://%s:%d", server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            logger.info(String.format("Served %d requests, throttled %d and failed %d", requests.get(), throttled.get(), failed.get()));
+        }
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            double chance;
+            long delay;
+            synchronized (random) {
+                chance = random.nextDouble();
+                delay = latency <= 0 ? 0 : latency / 2 + (long) (random.nextDouble() * latency);
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            if (!admit()) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                respond(exchange, 429, "text/plain", "Rate limit exceeded");
+                return;
+            }
+            if (chance < errorRate) {
+                failed.incrementAndGet();
+                respond(exchange, 500, "text/plain", "Internal error");
+                return;
+            }
+
+            URI uri = exchange.getRequestURI();
+            String path = Fixtures.pathOf(uri);
+            if (path == null) {
+                respond(exchange, 200, "text/html;charset=utf-8", EMPTY_PAGE);
+                return;
+            }
+
+            File fixture = new File(folder, path);
+            String body = fixture.exists() ? new String(Files.readAllBytes(fixture.toPath()), StandardCharsets.UTF_8) : makeUp(path);
+            if (body == null) {
+                respond(exchange, 404, "text/plain", "No fixture for " + uri);
+            } else {
+                respond(exchange, 200, path.startsWith(Fixtures.TIMELINE) ? "application/json;charset=utf-8" : "text/html;charset=utf-8", body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not serve " + exchange.getRequestURI(), e);
+            respond(exchange, 500, "text/plain", String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return {@code false} if the request is over the limit of the current second
+     */
+    private synchronized boolean admit() {
+        if (maxRequestsPerSecond <= 0) {
+            return true;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        if (second != throttleSecond) {
+            throttleSecond = second;
+            throttleCount = 0;
+        }
+        return ++throttleCount <= maxRequestsPerSecond;
+    }
+
+    /**
+     * @param path Path of the fixture which has not been recorded
+     * @return The page made up for it, {@code null} if it can not be made up
+     * @throws IOException
+     */
+    private String makeUp(final String path) throws IOException {
+        String name = path.substring(path.indexOf('/') + 1, path.lastIndexOf('.'));
+        long id = Long.parseLong(name);
+
+        if (path.startsWith(Fixtures.TIMELINE)) {
+            return tweetInterval > 0 ? makeUpTimeline(id) : null;
+        }
+        if (templates.length == 0) {
+            return null;
+        }
+        File template = templates[(int) Math.floorMod(id, (long) templates.length)];
+        String templateId = template.getName().substring(0, template.getName().indexOf('.'));
+        return new String(Files.readAllBytes(template.toPath()), StandardCharsets.UTF_8).replace(templateId, name);
+    }
+
+    /**
+     * @param position Only the tweets before this are on the page
+     * @return A page of made-up tweets, one every {@link #tweetInterval} milliseconds
+     */
+    private String makeUpTimeline(final long position) {
+        long step = tweetInterval << TIMESTAMP_SHIFT;
+        long id = (position - 1) / step * step;
+
+        StringBuilder items = new StringBuilder();
+        long first = id;
+        long last = id;
+        for (int i = 0; i < PAGE_SIZE && id > 0; i++, id -= step) {
+            items.append("<li class=\\\"js-stream-item stream-item stream-item\\\" data-item-id=\\\"").append(id)
+                    .append("\\\" id=\\\"stream-item-tweet-").append(id).append("\\\" data-item-type=\\\"tweet\\\"><\\/li>\\n");
+            last = id;
+        }
+        return String.format("{\"min_position\":\"TWEET-%d-%d\",\"has_more_items\":%b,\"items_html\":\"%s\"}", last, first, id > 0, items);
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String contentType, final String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Serves the fixtures of {@code http.replay-folder} till the process is killed
+     *
+     * @param args The port to listen on, 8089 if not given
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("log4j.configurationFile", "config/log4j2.xml");
+        System.setProperty("twitter-scraper.configurationFile", "config/application.properties");
+
+        ApplicationProperties props = new ApplicationProperties();
+        if (props.getReplayFolder() == null || props.getReplayFolder().isEmpty()) {
+            throw new IllegalStateException("Please set http.replay-folder to the folder of fixtures");
+        }
+
+        ReplayServer server = ReplayServer.of(props).start(args.length > 0 ? Integer.parseInt(args[0]) : 8089);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,177 @@
+package in.clayfish.pyry.scheduler;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Requests in flight shared by the handles scraped together. A handle takes a permit for every request and gives it back once the
+ * response is in. While handles are waiting, every permit given back goes to one of them by smooth weighted round-robin, weighted by the
+ * backlog of the handle, so a handle with twice the work left gets twice the requests. A handle with nothing waiting is skipped, so the
+ * others take up its share.
+ * <p>
+ * The backlogs are read once a second on a background thread, never while a permit is being given.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class FairShare {
+    private static final long REFRESH_INTERVAL = 1000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Tenant> tenants = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService refresher;
+
+    /**
+     * Permits nobody holds, guarded by {@link #lock}
+     */
+    private int available;
+
+    /**
+     * @param permits Requests allowed in flight at once, across all the handles
+     */
+    public FairShare(final int permits) {
+        this.available = Math.max(1, permits);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fair-share");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> tenants.forEach(Tenant::refresh), REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param name Name of the handle
+     * @return The share of the handle, weighed at {@code 1} until {@link Tenant#weighBy(LongSupplier)} is called
+     */
+    public Tenant join(final String name) {
+        Tenant tenant = new Tenant(name);
+        tenants.add(tenant);
+        return tenant;
+    }
+
+    /**
+     * Stops reading the backlogs
+     */
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Gives the permits available to the handles waiting for them, to be called holding {@link #lock}
+     */
+    private void grant() {
+        while (available > 0) {
+            Tenant next = null;
+            long total = 0;
+            for (Tenant tenant : tenants) {
+                if (tenant.waiting > tenant.granted) {
+                    tenant.current += tenant.weight;
+                    total += tenant.weight;
+                    if (next == null || tenant.current > next.current) {
+                        next = tenant;
+                    }
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            next.current -= total;
+            next.granted++;
+            available--;
+            next.turn.signal();
+        }
+    }
+
+    /**
+     * Share of one handle
+     */
+    public final class Tenant {
+        @Getter
+        private final String name;
+
+        private final Condition turn = lock.newCondition();
+        private volatile LongSupplier backlog = () -> 1;
+        private volatile long weight = 1;
+
+        /**
+         * Guarded by {@link #lock}: the current weight of the round-robin, the threads waiting for a permit and the permits given to
+         * them but not taken yet
+         */
+        private long current;
+        private int waiting;
+        private int granted;
+
+        private Tenant(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param backlog Work left for the handle, its share is in proportion to it
+         */
+        public void weighBy(final LongSupplier backlog) {
+            this.backlog = backlog;
+            refresh();
+        }
+
+        /**
+         * Waits for the turn of the handle and takes a permit
+         *
+         * @throws InterruptedException
+         */
+        public void acquire() throws InterruptedException {
+            lock.lock();
+            try {
+                waiting++;
+                grant();
+                try {
+                    while (granted == 0) {
+                        turn.await();
+                    }
+                } catch (InterruptedException e) {
+                    waiting--;
+                    if (granted > waiting) {
+                        // The permit given to this thread goes back
+                        granted--;
+                        available++;
+                        grant();
+                    }
+                    throw e;
+                }
+                waiting--;
+                granted--;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Gives back a permit taken with {@link #acquire()}
+         */
+        public void release() {
+            lock.lock();
+            try {
+                available++;
+                grant();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void refresh() {
+            try {
+                weight = Math.max(1, backlog.getAsLong());
+            } catch (RuntimeException e) {
+                weight = 1;
+            }
+        }
+    }
+}
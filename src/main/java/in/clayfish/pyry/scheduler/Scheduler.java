@@ -0,0 +1,130 @@
+package in.clayfish.pyry.scheduler;
+
+import in.clayfish.pyry.extractors.ConversationExtractor;
+import in.clayfish.pyry.extractors.Extractor;
+import in.clayfish.pyry.extractors.TweetIdChannel;
+import in.clayfish.pyry.extractors.TweetIdExtractor;
+import in.clayfish.pyry.utils.AppUtils;
+import in.clayfish.pyry.utils.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the step set by {@code target.step}, or both the steps with {@code pipeline.streaming}, for every handle listed in
+ * {@code target.handles-file}, all of them at once in this process.
+ * <p>
+ * The handles share the HTTP client with its cookies and rate limiter, and {@code pipeline.in-flight} requests in flight, given out by
+ * {@link FairShare} in proportion to the backlog of every handle. Every handle keeps its own output folder, i.e. {@code output-folder}
+ * resolved with its {@code target.username}, with its own progress and state, so it can be scraped on its own later as well.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class Scheduler implements Runnable {
+    private static final Logger logger = LogManager.getLogger(Scheduler.class);
+
+    private final ApplicationProperties props;
+    private final List<String> handles;
+
+    /**
+     * @param props The application properties, {@code target.username} is ignored
+     * @throws IOException If the handles cannot be read
+     */
+    public Scheduler(final ApplicationProperties props) throws IOException {
+        this.props = props;
+        this.handles = readHandles(props.getTargetHandlesFile());
+        if (handles.isEmpty()) {
+            throw new IllegalStateException("No handles in " + props.getTargetHandlesFile());
+        }
+    }
+
+    @Override
+    public void run() {
+        int inFlight = props.getInFlightRequests() > 0 ? props.getInFlightRequests() : props.getNumberOfConcurrentThreads();
+        FairShare fairShare = new FairShare(inFlight);
+        ExecutorService extractors = Executors.newFixedThreadPool(handles.size() * (props.isStreaming() ? 2 : 1));
+
+        try {
+            for (String handle : handles) {
+                try {
+                    ApplicationProperties handleProps = props.forHandle(handle);
+                    AppUtils.createOutputFolder(handleProps);
+                    AppUtils.initialize(handleProps);
+
+                    FairShare.Tenant share = fairShare.join(handle);
+                    if (props.isStreaming()) {
+                        // Both count tweets, the ones step 1 is yet to find are estimated from the ones it has found
+                        TweetIdChannel channel = new TweetIdChannel(props.getStreamingBuffer() > 0 ? props.getStreamingBuffer() : 100000);
+                        Extractor tweetIdExtractor = new TweetIdExtractor(handleProps, share, channel);
+                        Extractor conversationExtractor = new ConversationExtractor(handleProps, share, channel);
+                        share.weighBy(() -> tweetIdExtractor.getBacklog() + conversationExtractor.getBacklog());
+                        extractors.submit(tweetIdExtractor);
+                        extractors.submit(conversationExtractor);
+                    } else {
+                        Extractor extractor = props.getStep() == 1 ? new TweetIdExtractor(handleProps, share)
+                                : new ConversationExtractor(handleProps, share);
+                        share.weighBy(extractor::getBacklog);
+                        extractors.submit(extractor);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Could not start scraping " + handle + ", skipping it", e);
+                }
+            }
+            logger.info("Running step {} for {} handles", props.isStreaming() ? "1 and 2" : props.getStep(), handles.size());
+
+            extractors.shutdown();
+            while (!extractors.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.debug("Waiting for the handles to be done...");
+            }
+        } catch (InterruptedException e) {
+            // Every extractor saves its progress once interrupted
+            extractors.shutdownNow();
+            try {
+                extractors.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ignored) {
+            }
+        } finally {
+            fairShare.close();
+        }
+    }
+
+    /**
+     * @param path File on the disk, or in the classpath, listing a handle on every line. Blank lines and lines starting with {@code #}
+     *             are skipped
+     * @return The handles, in the order they are listed, without repetition
+     * @throws IOException
+     */
+    public static List<String> readHandles(final String path) throws IOException {
+        File file = new File(path);
+        InputStream in = file.isFile() ? new FileInputStream(file) : Scheduler.class.getClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            throw new IOException("Cannot find " + path);
+        }
+
+        Set<String> handles = new LinkedHashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    handles.add(line.startsWith("@") ? line.substring(1) : line);
+                }
+            }
+        }
+        return new ArrayList<>(handles);
+    }
+}
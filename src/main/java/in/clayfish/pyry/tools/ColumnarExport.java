@@ -0,0 +1,65 @@
+package in.clayfish.pyry.tools;
+
+import in.clayfish.pyry.enums.OutputFormat;
+import in.clayfish.pyry.io.ColumnarReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts columnar second-level files to CSV files, written next to them with the same name, for the tools which only read CSV.
+ * <pre>
+ * java -cp twitter-scraper.jar in.clayfish.pyry.tools.ColumnarExport &lt;files or folders&gt;
+ * </pre>
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class ColumnarExport {
+    private static final String RECORD_SEPARATOR = "\r\n";
+    private static final String SUFFIX = "." + OutputFormat.COLUMNAR.getExtension();
+
+    /**
+     * @param args Columnar files, or folders to convert all the columnar files in
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ColumnarExport <files or folders>");
+            System.exit(1);
+        }
+
+        for (String arg : args) {
+            File file = new File(arg);
+            File[] files = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(SUFFIX)) : new File[]{file};
+            for (File columnarFile : files) {
+                System.out.println(String.format("%s: %d tweets", columnarFile, export(columnarFile)));
+            }
+        }
+    }
+
+    /**
+     * @param columnarFile The file to convert
+     * @return Number of tweets exported
+     * @throws IOException
+     */
+    public static long export(final File columnarFile) throws IOException {
+        String name = columnarFile.getName();
+        File csvFile = new File(columnarFile.getParentFile(),
+                (name.endsWith(SUFFIX) ? name.substring(0, name.length() - SUFFIX.length()) : name) + "." + OutputFormat.CSV.getExtension());
+
+        long count = 0;
+        StringBuilder record = new StringBuilder(4096);
+        try (ColumnarReader reader = new ColumnarReader(columnarFile);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile), StandardCharsets.UTF_8))) {
+            while (reader.nextBlock()) {
+                for (int row = 0; row < reader.getRowCount(); row++) {
+                    record.setLength(0);
+                    writer.append(reader.getTweet(row).toRecord(record)).append(RECORD_SEPARATOR);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
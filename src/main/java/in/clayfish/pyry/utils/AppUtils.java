@@ -1,6 +1,12 @@
 package in.clayfish.pyry.utils;
 
-import in.clayfish.pyry.models.Tweet;
+import in.clayfish.pyry.enums.OutputFormat;
+import in.clayfish.pyry.io.BlockIndex;
+import in.clayfish.pyry.io.BlockInputStream;
+import in.clayfish.pyry.io.CsvDecoder;
+import in.clayfish.pyry.io.IdAllocator;
+import in.clayfish.pyry.io.LineIndex;
+import in.clayfish.pyry.io.OutputManifest;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
@@ -9,15 +15,27 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 /**
  * Static utility-class for helper functions. All the functions are thread-safe.
+ * <p>
+ * Reads do not take any lock, the files being read are either immutable inputs or only appended to. Writes lock only the file being
+ * written, through a fixed set of striped monitors, so threads writing to their own files never wait on each other.
  *
  * @author shuklaalok7
  * @since 16/01/16
@@ -26,12 +44,35 @@ public abstract class AppUtils {
     private static final Logger logger = LogManager.getLogger(AppUtils.class);
 
     private static final CSVFormat CUSTOM = CSVFormat.DEFAULT.withQuote(null);
-    private static ApplicationProperties props;
-    private static AtomicLong counter;
-    private static boolean initialized = false;
+    private static final int LOCK_STRIPES = 64;
+    private static final String CONVERSATION_IDS_FILE = "conversation-ids.hwm";
+    private static final int CONVERSATION_ID_BLOCK = 1000;
+    private static final Object[] FILE_LOCKS = new Object[LOCK_STRIPES];
 
     /**
-     * It's necessary to call this method before other methods can be called.
+     * State of every output folder initialized, by its absolute path
+     */
+    private static final Map<File, Output> OUTPUTS = new ConcurrentHashMap<>();
+
+    /**
+     * Lines counted in the files the manifest does not know as they are, by their absolute path
+     */
+    private static final Map<File, LineCount> LINE_COUNTS = new ConcurrentHashMap<>();
+
+    /**
+     * (kind)-(index).(extension) of an output file, e.g. first-level-3.csv or second-level-0-3.tcol
+     */
+    private static final Pattern OUTPUT_FILE_NAME = Pattern.compile("(.+)-(\\d+)(\\.\\w+)");
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            FILE_LOCKS[i] = new Object();
+        }
+    }
+
+    /**
+     * It's necessary to call this method for the output folder of the given properties before the methods taking them can be called.
+     * Every output folder, i.e. every target handle, is initialized on its own.
      *
      * @param props ApplicationProperties to initialize this utility with
      * @return {@code true}, if it has initialized successfully, {@code false} otherwise
@@ -39,41 +80,69 @@ public abstract class AppUtils {
      */
     public static synchronized boolean initialize(ApplicationProperties props) throws IOException {
         Objects.requireNonNull(props);
-        initialized = true;
 
-        AppUtils.props = props;
-        counter = new AtomicLong(getLastConversationId());
+        OutputManifest manifest = new OutputManifest(props.getOutputFolder());
+        manifest.refresh();
+        manifest.save();
+        IdAllocator conversationIds = new IdAllocator(new File(props.getOutputFolder(), CONVERSATION_IDS_FILE),
+                manifest.getMaxConversationId(), CONVERSATION_ID_BLOCK);
+        OUTPUTS.put(props.getOutputFolder().getAbsoluteFile(), new Output(manifest, conversationIds));
 
         return true;
     }
 
     /**
-     * @return An incrementing number to be used as conversationId
+     * Creates the output folder of the given properties, if it does not exist already
+     *
+     * @param props The application properties of the target handle
      */
-    public static synchronized long generateConversationId() {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
+    public static void createOutputFolder(final ApplicationProperties props) {
+        if (props.getOutputFolder().exists()) {
+            if (!props.getOutputFolder().isDirectory()) {
+                throw new IllegalStateException("Please check output folder: " + props.getOutputFolder().getPath());
+            }
+        } else {
+            boolean created = props.getOutputFolder().mkdirs();
+            if (!created) {
+                throw new IllegalStateException("Cannot create output folder: " + props.getOutputFolder().getPath());
+            }
         }
+    }
 
-        return counter.incrementAndGet();
+    /**
+     * @param props The application properties of the target handle
+     * @return A unique number to be used as conversationId, increasing within a thread. Threads never wait on each other for it.
+     */
+    public static long generateConversationId(final ApplicationProperties props) {
+        return outputOf(props).conversationIds.next();
     }
 
     /**
-     * @param file  The CSV file to read
+     * @param file  The CSV file to read, a compressed file is read from the block having the starting line
      * @param start The line number to start reading from
      * @param end   The line number to read up to
      * @return List of CSVRecord which are read from the given file
      * @throws IOException
      */
-    public static synchronized List<CSVRecord> readCsvFile(final File file, final long start, final long end) throws IOException {
+    public static List<CSVRecord> readCsvFile(final File file, final long start, final long end) throws IOException {
         if (!file.exists() || start < 0 || end < 1) {
             throw new IllegalArgumentException(String.format(
                     "%s should exist, start(%d) should be greater than -1 and end(%d) should be greater than 0", file.getName(), start, end));
         }
 
-        CSVParser csvParser = new CSVParser(new FileReader(file), CUSTOM);
+        long skip = start;
+        Reader reader;
+        if (BlockIndex.isCompressed(file)) {
+            BlockIndex index = BlockIndex.open(file);
+            skip = start - index.floorRecord(start);
+            reader = new InputStreamReader(new BlockInputStream(file, index.floorOffset(start)), StandardCharsets.UTF_8);
+        } else {
+            reader = new FileReader(file);
+        }
 
-        return StreamSupport.stream(csvParser.spliterator(), false).skip(start).limit(end - start).collect(Collectors.toList());
+        try (CSVParser csvParser = new CSVParser(reader, CUSTOM)) {
+            return StreamSupport.stream(csvParser.spliterator(), false).skip(skip).limit(end - start).collect(Collectors.toList());
+        }
     }
 
     /**
@@ -81,7 +150,7 @@ public abstract class AppUtils {
      * @return The first record from the given file
      * @throws IOException
      */
-    public static synchronized CSVRecord readFirstRecord(final File file) throws IOException {
+    public static CSVRecord readFirstRecord(final File file) throws IOException {
         return readNthRecord(file, 0);
     }
 
@@ -91,7 +160,7 @@ public abstract class AppUtils {
      * @return nth record from the given file
      * @throws IOException
      */
-    public static synchronized CSVRecord readNthRecord(final File file, long n) throws IOException {
+    public static CSVRecord readNthRecord(final File file, long n) throws IOException {
         List<CSVRecord> result = readCsvFile(file, n, n + 1);
         if (result != null && !result.isEmpty()) {
             return result.get(0);
@@ -105,7 +174,7 @@ public abstract class AppUtils {
      * @return The last record from the given file
      * @throws IOException
      */
-    public static synchronized CSVRecord readLastRecord(final File file) throws IOException {
+    public static CSVRecord readLastRecord(final File file) throws IOException {
         if (file.exists()) {
             long count = getLineCount(file);
 
@@ -122,7 +191,7 @@ public abstract class AppUtils {
      * @param <T>        extends {@link Object}
      * @throws IOException
      */
-    public static synchronized <T> void appendToCsv(final File file, final List<T> objects) throws IOException {
+    public static <T> void appendToCsv(final File file, final List<T> objects) throws IOException {
         writeToCsv(file, objects, true);
     }
 
@@ -133,24 +202,19 @@ public abstract class AppUtils {
      * @param <T>       extends {@link Object}
      * @throws IOException
      */
-    public static synchronized <T> void writeToCsv(final File file, final T object, final boolean append) throws IOException {
-        if (!file.exists()) {
-            boolean created = file.createNewFile();
-
-            if (!created) {
-                throw new FileNotFoundException(file.getName() + " does not exist, nor could be created");
+    public static <T> void writeToCsv(final File file, final T object, final boolean append) throws IOException {
+        synchronized (lockFor(file)) {
+            createIfAbsent(file);
+            try (CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(file, append), CUSTOM)) {
+                if (object instanceof String) {
+                    logger.trace("Printing {}", object);
+                    csvPrinter.print(object);
+                    csvPrinter.println();
+                } else {
+                    csvPrinter.printRecord(Collections.singleton(object));
+                }
             }
         }
-        CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(file, append), CUSTOM);
-        if (object instanceof String) {
-            logger.debug("Printing " + object);
-            csvPrinter.print(object);
-            csvPrinter.println();
-        } else {
-            csvPrinter.printRecord(Collections.singleton(object));
-        }
-
-        csvPrinter.flush();
     }
 
     /**
@@ -159,82 +223,101 @@ public abstract class AppUtils {
      * @param append  Whether to append in the given file
      * @param <T>     extend Object
      */
-    public static synchronized <T> void writeToCsv(final File file, final List<T> objects, final boolean append) throws IOException {
-        if (!file.exists()) {
-            boolean created = file.createNewFile();
-
-            if (!created) {
-                throw new FileNotFoundException(file.getName() + " does not exist, nor could be created");
+    public static <T> void writeToCsv(final File file, final List<T> objects, final boolean append) throws IOException {
+        synchronized (lockFor(file)) {
+            createIfAbsent(file);
+            try (CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(file, append), CUSTOM)) {
+                for (Object object : objects) {
+                    csvPrinter.printRecord(Collections.singleton(object));
+                }
             }
         }
-        CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(file, append), CUSTOM);
-
-        for (Object object : objects) {
-            csvPrinter.printRecord(Collections.singleton(object));
-        }
-
-        csvPrinter.flush();
     }
 
     /**
+     * @param props        The application properties of the target handle
      * @param step         {@code 1} or {@code 2}
      * @param threadNumber Serial of spawned thread
      * @return newly created file
      * @throws IOException
      */
-    public static synchronized File createNewOutputFile(final int step, final int threadNumber) throws IOException {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
+    public static File createNewOutputFile(final ApplicationProperties props, final int step, final int threadNumber) throws IOException {
+        return createNewOutputFile(props, step, threadNumber, OutputFormat.CSV.getExtension());
+    }
 
+    /**
+     * @param props        The application properties of the target handle
+     * @param step         {@code 1} or {@code 2}
+     * @param threadNumber Serial of spawned thread
+     * @param extension    Extension of the file, without the dot
+     * @return newly created file
+     * @throws IOException
+     */
+    public static File createNewOutputFile(final ApplicationProperties props, final int step, final int threadNumber,
+                                           final String extension) throws IOException {
+        outputOf(props);
         if (threadNumber > props.getNumberOfConcurrentThreads()) {
             throw new IllegalStateException(String.format("Thread %d: Threads should be less than maximum number of threads(%d)", threadNumber,
                     props.getNumberOfConcurrentThreads()));
         }
 
         String prefix = getOutputFilePrefix(step);
-        int currentIndex = getCurrentOutputFileIndex(prefix);
-        File newOutputFile = new File(
-                String.format("%s/%s%d-%d.csv", props.getOutputFolder().getPath(), prefix, threadNumber, currentIndex + 1));
-        boolean created = newOutputFile.createNewFile();
-
-        if (!created) {
-            throw new IllegalStateException(String.format("Thread %d: Cannot create new output file for %s", threadNumber,
-                    getOutputFilePrefix(step)));
+        synchronized (lockFor(new File(props.getOutputFolder(), prefix))) {
+            int currentIndex = getCurrentOutputFileIndex(props, prefix, extension);
+            File newOutputFile = new File(
+                    String.format("%s/%s%d-%d.%s", props.getOutputFolder().getPath(), prefix, threadNumber, currentIndex + 1, extension));
+            boolean created = newOutputFile.createNewFile();
+
+            if (!created) {
+                throw new IllegalStateException(String.format("Thread %d: Cannot create new output file for %s", threadNumber,
+                        getOutputFilePrefix(step)));
+            }
+            return newOutputFile;
         }
-        return newOutputFile;
     }
 
     /**
-     * @param step {@code 1} or {@code 2}
+     * @param props The application properties of the target handle
+     * @param step  {@code 1} or {@code 2}
      * @return newly created output file
      * @throws IOException
      */
-    public static synchronized File createNewOutputFile(final int step) throws IOException {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
+    public static File createNewOutputFile(final ApplicationProperties props, final int step) throws IOException {
+        outputOf(props);
 
         String prefix = getOutputFilePrefix(step);
-        int currentIndex = getCurrentOutputFileIndex(prefix);
-        File newOutputFile = new File(String.format("%s/%s%d.csv", props.getOutputFolder().getPath(), prefix, currentIndex + 1));
-        boolean created = newOutputFile.createNewFile();
+        synchronized (lockFor(new File(props.getOutputFolder(), prefix))) {
+            int currentIndex = getCurrentOutputFileIndex(props, prefix);
+            File newOutputFile = new File(String.format("%s/%s%d.csv", props.getOutputFolder().getPath(), prefix, currentIndex + 1));
+            boolean created = newOutputFile.createNewFile();
 
-        if (!created) {
-            throw new IllegalStateException("Cannot create new output file for " + getOutputFilePrefix(step));
+            if (!created) {
+                throw new IllegalStateException("Cannot create new output file for " + getOutputFilePrefix(step));
+            }
+            return newOutputFile;
         }
-        return newOutputFile;
     }
 
     /**
+     * @param props        The application properties of the target handle
      * @param step         {@code 1} or {@code 2}
      * @param threadNumber The number of thread spawned
      * @return current output file
      */
-    public static synchronized File getCurrentOutputFile(final int step, final int threadNumber) {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
+    public static File getCurrentOutputFile(final ApplicationProperties props, final int step, final int threadNumber) {
+        return getCurrentOutputFile(props, step, threadNumber, OutputFormat.CSV.getExtension());
+    }
+
+    /**
+     * @param props        The application properties of the target handle
+     * @param step         {@code 1} or {@code 2}
+     * @param threadNumber The number of thread spawned
+     * @param extension    Extension of the file, without the dot
+     * @return current output file
+     */
+    public static File getCurrentOutputFile(final ApplicationProperties props, final int step, final int threadNumber,
+                                            final String extension) {
+        outputOf(props);
 
         if (threadNumber > props.getNumberOfConcurrentThreads()) {
             throw new IllegalStateException(String.format("Thread %d: Threads should be less than maximum number of threads(%d)", threadNumber,
@@ -242,26 +325,25 @@ public abstract class AppUtils {
         }
 
         String prefix = getOutputFilePrefix(step);
-        int currentIndex = getCurrentOutputFileIndex(prefix);
+        int currentIndex = getCurrentOutputFileIndex(props, prefix, extension);
 
         if (currentIndex == 0) {
             currentIndex++;
         }
 
-        return new File(String.format("%s/%s%d-%d.csv", props.getOutputFolder().getPath(), prefix, threadNumber, currentIndex));
+        return new File(String.format("%s/%s%d-%d.%s", props.getOutputFolder().getPath(), prefix, threadNumber, currentIndex, extension));
     }
 
     /**
-     * @param step {@code 1} or {@code 2}
+     * @param props The application properties of the target handle
+     * @param step  {@code 1} or {@code 2}
      * @return get output file which is being currently in use
      */
-    public static synchronized File getCurrentOutputFile(final int step) {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
+    public static File getCurrentOutputFile(final ApplicationProperties props, final int step) {
+        outputOf(props);
 
         String prefix = getOutputFilePrefix(step);
-        int currentIndex = getCurrentOutputFileIndex(prefix);
+        int currentIndex = getCurrentOutputFileIndex(props, prefix);
 
         if (currentIndex == 0) {
             currentIndex++;
@@ -271,29 +353,37 @@ public abstract class AppUtils {
     }
 
     /**
-     * @param step {@code 1} or {@code 2}
+     * @param props The application properties of the target handle
+     * @param step  {@code 1} or {@code 2}
      * @return index of current output file
      */
-    public static synchronized int getCurrentOutputFileIndex(final int step) {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
-        return getCurrentOutputFileIndex(getOutputFilePrefix(step));
+    public static int getCurrentOutputFileIndex(final ApplicationProperties props, final int step) {
+        return getCurrentOutputFileIndex(props, getOutputFilePrefix(step));
     }
 
     /**
+     * @param props  The application properties of the target handle
      * @param prefix prefix obtained from {@link #getOutputFilePrefix(int)}
      * @return index of current output file
      */
-    public static synchronized int getCurrentOutputFileIndex(final String prefix) {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
+    public static int getCurrentOutputFileIndex(final ApplicationProperties props, final String prefix) {
+        return getCurrentOutputFileIndex(props, prefix, OutputFormat.CSV.getExtension());
+    }
 
+    /**
+     * @param props     The application properties of the target handle
+     * @param prefix    prefix obtained from {@link #getOutputFilePrefix(int)}
+     * @param extension Extension of the files, without the dot
+     * @return index of current output file
+     */
+    private static int getCurrentOutputFileIndex(final ApplicationProperties props, final String prefix, final String extension) {
+        outputOf(props);
+
+        final String suffix = "." + extension;
         int maxIndex = 0;
-        for (File firstLevelOutputFile : props.getOutputFolder().listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".csv"))) {
+        for (File firstLevelOutputFile : props.getOutputFolder().listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix))) {
             String[] nameParts = firstLevelOutputFile.getName().split(IConstants.MINUS);
-            int index = Converter.TO_INT.apply(nameParts[nameParts.length - 1].replace(".csv", IConstants.BLANK));
+            int index = Converter.TO_INT.apply(nameParts[nameParts.length - 1].replace(suffix, IConstants.BLANK));
 
             if (index > maxIndex) {
                 maxIndex = index;
@@ -304,124 +394,204 @@ public abstract class AppUtils {
     }
 
     /**
-     * @param step {@code 1} or {@code 2}
+     * @param props The application properties of the target handle
+     * @param step  {@code 1} or {@code 2}
      * @return latest tweet id which was fetched
      * @throws IOException
      */
-    public static synchronized long getLatestTweetIdFetched(final int step) throws IOException {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
+    public static long getLatestTweetIdFetched(final ApplicationProperties props, final int step) throws IOException {
+        return outputOf(props).manifest.getMaxTweetId(getOutputFilePrefix(step));
+    }
 
-        long latestTweetId = Long.MIN_VALUE;
-        final String prefix = getOutputFilePrefix(step);
-        for (File outputFile : props.getOutputFolder().listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".csv"))) {
-            CSVParser csvParser = new CSVParser(new FileReader(outputFile), CUSTOM);
-            long maxTweetId = StreamSupport.stream(csvParser.spliterator(), false).mapToLong(csvRecord -> getTweetId(csvRecord, step)).max()
-                    .orElse(Long.MIN_VALUE);
+    /**
+     * @param file The file to count the lines in
+     * @return Number of lines in the given CSV file, taken from the manifest of its folder if it knows the file as it is. Otherwise they
+     * are counted from the block headers alone if it is compressed, or from where they were last counted if it has only grown since, so
+     * a file being written is read only as far as it is new.
+     * @throws IOException
+     */
+    public static long getLineCount(File file) throws IOException {
+        Objects.requireNonNull(file);
+        Output output = OUTPUTS.get(file.getAbsoluteFile().getParentFile());
+        long count = output == null ? -1 : output.manifest.getRecordCount(file);
+        if (count >= 0) {
+            return count;
+        }
+        if (!file.exists()) {
+            return 0;
+        }
 
-            if (maxTweetId > latestTweetId) {
-                latestTweetId = maxTweetId;
-            }
+        long length = file.length();
+        LineCount counted = LINE_COUNTS.get(file.getAbsoluteFile());
+        if (counted != null && counted.length == length) {
+            return counted.count;
         }
 
-        return latestTweetId;
+        if (BlockIndex.isCompressed(file)) {
+            counted = new LineCount(length, length, BlockIndex.open(file).getRecordCount(), 0);
+        } else {
+            counted = count(file, counted == null || counted.offset > length ? null : counted);
+        }
+        LINE_COUNTS.put(file.getAbsoluteFile(), counted);
+        return counted.count;
     }
 
     /**
-     * @param file The file to count the lines in
-     * @return Number of lines in the given CSV file
+     * @param file    A plain CSV file
+     * @param counted What was counted of the file before, {@code null} to count from the beginning
+     * @return The lines of the file counted as far as the last record ended by a line break, and the record after it, if any
      * @throws IOException
      */
-    public static synchronized long getLineCount(File file) throws IOException {
-        Objects.requireNonNull(file);
-        if (file.exists()) {
-            CSVParser csvParser = new CSVParser(new FileReader(file), CUSTOM);
-            return StreamSupport.stream(csvParser.spliterator(), false).count();
+    private static LineCount count(final File file, final LineCount counted) throws IOException {
+        long offset = counted == null ? 0 : counted.offset;
+        long complete = counted == null ? 0 : counted.count - counted.partial;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, offset, length - offset);
+            int end = 0;
+            int partial = 0;
+            for (CsvDecoder decoder = new CsvDecoder(tail); decoder.next(); ) {
+                if (decoder.isTerminated()) {
+                    complete++;
+                    end = decoder.getPosition();
+                } else {
+                    partial = 1;
+                }
+            }
+            return new LineCount(length, offset + end, complete + partial, partial);
         }
-        return 0;
     }
 
     /**
-     * @param step {@code 1} or {@code 2}
+     * @param props The application properties of the target handle
+     * @param step  {@code 1} or {@code 2}
      * @return Get the oldest tweet id fetched
      * @throws IOException
      */
-    public static synchronized long getOldestTweetIdFetched(final int step) throws IOException {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
-        }
+    public static long getOldestTweetIdFetched(final ApplicationProperties props, final int step) throws IOException {
+        return outputOf(props).manifest.getMinTweetId(getOutputFilePrefix(step));
+    }
 
-        long oldestTweetId = Long.MAX_VALUE;
-        final String prefix = getOutputFilePrefix(step);
-        for (File outputFile : props.getOutputFolder().listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".csv"))) {
-            CSVParser csvParser = new CSVParser(new FileReader(outputFile), CUSTOM);
-            long minTweetId = StreamSupport.stream(csvParser.spliterator(), false).mapToLong(csvRecord -> getTweetId(csvRecord, step)).min()
-                    .orElse(Long.MAX_VALUE);
+    /**
+     * Reads what has been written to the output files since the last time, and saves the {@link OutputManifest}. To be called once
+     * the output is on the disk.
+     *
+     * @param props The application properties of the target handle
+     * @throws IOException
+     */
+    public static void updateManifest(final ApplicationProperties props) throws IOException {
+        OutputManifest manifest = outputOf(props).manifest;
+        manifest.refresh();
+        manifest.save();
+    }
 
-            if (minTweetId < oldestTweetId) {
-                oldestTweetId = minTweetId;
-            }
+    /**
+     * Forgets what the {@link OutputManifest} knows about the given files, and reads them again from the beginning. To be called after
+     * cutting an output file back or deleting it, as what was read of it may not be there anymore.
+     *
+     * @param props The application properties of the target handle
+     * @param files The files cut back or deleted
+     * @throws IOException
+     */
+    public static void resetManifest(final ApplicationProperties props, final List<File> files) throws IOException {
+        OutputManifest manifest = outputOf(props).manifest;
+        for (File file : files) {
+            manifest.forget(file);
+            LINE_COUNTS.remove(file.getAbsoluteFile());
         }
-
-        return oldestTweetId;
+        manifest.refresh();
+        manifest.save();
     }
 
     /**
-     * It looks in the second-level-*-*.csv files for the largest conversationId
+     * Cuts the output back to where it was at the last checkpoint, i.e. cuts the given file back to the given length and deletes any
+     * later file of the same kind, along with the line indexes of those files. The manifest should be reset with the files cut off, see
+     * {@link #resetManifest(ApplicationProperties, List)}.
      *
-     * @return Last used conversationId
+     * @param output The file being written at the last checkpoint, {@code null} if there was none
+     * @param length Length of the file at the last checkpoint
+     * @return The files cut back or deleted
      * @throws IOException
      */
-    private static synchronized long getLastConversationId() throws IOException {
-        if (!initialized) {
-            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
+    public static List<File> cutBack(final File output, final long length) throws IOException {
+        List<File> cut = new ArrayList<>();
+        if (output == null || !output.exists()) {
+            return cut;
         }
 
-        long lastConversationId = 0;
-        final String prefix = getOutputFilePrefix(2);
-        for (File outputFile : props.getOutputFolder().listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".csv"))) {
-            CSVParser csvParser = new CSVParser(new FileReader(outputFile), CUSTOM);
-            long maxConversationId = StreamSupport.stream(csvParser.spliterator(), false)
-                    .map(csvRecord -> StreamSupport.stream(csvRecord.spliterator(), false).reduce((s, s2) -> s + "," + s2).orElse(IConstants.BLANK))
-                    .filter(record -> !record.isEmpty()).map(recordString -> new Tweet().fromRecord(recordString)).mapToLong(Tweet::getConversationId).max()
-                    .orElse(0);
-
-            if (lastConversationId < maxConversationId) {
-                lastConversationId = maxConversationId;
+        if (output.length() > length) {
+            logger.warn(String.format("Cutting %s back to %d bytes, the rest was written after the last checkpoint", output.getName(),
+                    length));
+            try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(length);
             }
+            cut.add(output);
         }
 
-        return lastConversationId;
+        Matcher checkpointed = OUTPUT_FILE_NAME.matcher(output.getName());
+        File[] files = !checkpointed.matches() ? new File[0] : output.getAbsoluteFile().getParentFile().listFiles((dir, name) -> {
+            Matcher matcher = OUTPUT_FILE_NAME.matcher(name);
+            return matcher.matches() && matcher.group(1).equals(checkpointed.group(1)) && matcher.group(3).equals(checkpointed.group(3))
+                    && Long.parseLong(matcher.group(2)) > Long.parseLong(checkpointed.group(2));
+        });
+        for (File file : files == null ? new File[0] : files) {
+            logger.warn(MessageFormat.format("Deleting {0}, it was started after the last checkpoint", file.getName()));
+            if (!file.delete()) {
+                throw new IOException("Could not delete " + file);
+            }
+            cut.add(file);
+        }
+
+        for (File file : cut) {
+            File lineIndex = new File(file.getPath() + LineIndex.EXTENSION);
+            if (lineIndex.exists() && !lineIndex.delete()) {
+                throw new IOException("Could not delete " + lineIndex);
+            }
+        }
+        return cut;
     }
 
     /**
-     * This implementation is not complete for step 2
-     *
-     * @param record The record from which the tweetID is extracted
-     * @param step   {@code 1} or {@code 2} as per {@link ApplicationProperties#getStep()}
-     * @return Extracted tweet id
+     * @param props The application properties of the target handle
+     * @return State of the output folder of the given properties
      */
-    private static long getTweetId(final CSVRecord record, final int step) {
-        switch (step) {
-            case 1:
-                return Long.parseLong(record.get(0).trim());
+    private static Output outputOf(final ApplicationProperties props) {
+        Output output = OUTPUTS.get(props.getOutputFolder().getAbsoluteFile());
+        if (output == null) {
+            throw new IllegalStateException("AppUtils is not initialized. Please call AppUtils.initialize(props) first");
+        }
+        return output;
+    }
 
-            case 2:
-                // Left to implement
-                break;
+    /**
+     * @param file File to create, if it does not exist already
+     * @throws IOException
+     */
+    private static void createIfAbsent(final File file) throws IOException {
+        if (!file.exists()) {
+            boolean created = file.createNewFile();
 
-            default:
-                throw new IllegalArgumentException("Step should be 1 or 2, found " + step);
+            if (!created && !file.exists()) {
+                throw new FileNotFoundException(file.getName() + " does not exist, nor could be created");
+            }
         }
-        return 0;
+    }
+
+    /**
+     * Files which hash to the same stripe share a monitor, files in different stripes can be written concurrently
+     *
+     * @param file The file to be locked
+     * @return The monitor guarding the given file
+     */
+    private static Object lockFor(final File file) {
+        return FILE_LOCKS[(file.getAbsolutePath().hashCode() & 0x7fffffff) % LOCK_STRIPES];
     }
 
     /**
      * @param step The step for which the prefix is required
      * @return The file-prefix to use
      */
-    private synchronized static String getOutputFilePrefix(final int step) {
+    private static String getOutputFilePrefix(final int step) {
         switch (step) {
             case 1:
                 return "first-level-";
@@ -433,4 +603,39 @@ public abstract class AppUtils {
                 throw new IllegalArgumentException("Wrong step value: " + step);
         }
     }
+
+    /**
+     * What is kept for an output folder
+     */
+    private static final class Output {
+        private final OutputManifest manifest;
+        private final IdAllocator conversationIds;
+
+        private Output(final OutputManifest manifest, final IdAllocator conversationIds) {
+            this.manifest = manifest;
+            this.conversationIds = conversationIds;
+        }
+    }
+
+    /**
+     * Lines counted in a plain file as far as {@link #offset}, the end of its last record ended by a line break, or in a compressed
+     * file as a whole
+     */
+    private static final class LineCount {
+        private final long length;
+        private final long offset;
+        private final long count;
+
+        /**
+         * {@code 1} if {@link #count} includes a record after {@link #offset}, which may still be being written
+         */
+        private final int partial;
+
+        private LineCount(final long length, final long offset, final long count, final int partial) {
+            this.length = length;
+            this.offset = offset;
+            this.count = count;
+            this.partial = partial;
+        }
+    }
 }
@@ -3,6 +3,7 @@ package in.clayfish.pyry.utils;
 import in.clayfish.pyry.annotations.Converters;
 import in.clayfish.pyry.annotations.Property;
 import in.clayfish.pyry.enums.Mode;
+import in.clayfish.pyry.enums.OutputFormat;
 import lombok.Getter;
 
 import java.io.File;
@@ -20,6 +21,10 @@ public class ApplicationProperties {
     @Property("target.username")
     private String targetUsername;
 
+    @Getter
+    @Property("target.handles-file")
+    private String targetHandlesFile;
+
     @Getter
     @Property("target.starting-tweet")
     @Converters({"TO_LONG"})
@@ -63,6 +68,16 @@ public class ApplicationProperties {
     @Converters({"TO_BOOLEAN"})
     private boolean toContinue;
 
+    @Getter
+    @Property("target.refresh")
+    @Converters({"TO_BOOLEAN"})
+    private boolean refresh;
+
+    @Getter
+    @Property("refresh.active-days")
+    @Converters({"TO_INT"})
+    private int activeDays;
+
     @Getter
     @Property("mode")
     @Converters({"TO_MODE"})
@@ -73,6 +88,152 @@ public class ApplicationProperties {
     @Converters({"TO_INT"})
     private int step;
 
+    @Getter
+    @Property("pipeline.in-flight")
+    @Converters({"TO_INT"})
+    private int inFlightRequests;
+
+    @Getter
+    @Property("pipeline.parse-threads")
+    @Converters({"TO_INT"})
+    private int parseThreads;
+
+    @Getter
+    @Property("pipeline.chunk-size")
+    @Converters({"TO_INT"})
+    private int chunkSize;
+
+    @Getter
+    @Property("dedup.in-memory")
+    @Converters({"TO_BOOLEAN"})
+    private boolean inMemoryDedup;
+
+    @Getter
+    @Property("pipeline.parser")
+    private String parser;
+
+    @Getter
+    @Property("pipeline.streaming")
+    @Converters({"TO_BOOLEAN"})
+    private boolean streaming;
+
+    @Getter
+    @Property("pipeline.streaming-buffer")
+    @Converters({"TO_INT"})
+    private int streamingBuffer;
+
+    @Getter
+    @Property("rate-limit.requests-per-second")
+    @Converters({"TO_DOUBLE"})
+    private double requestsPerSecond;
+
+    @Getter
+    @Property("rate-limit.min-requests-per-second")
+    @Converters({"TO_DOUBLE"})
+    private double minRequestsPerSecond;
+
+    @Getter
+    @Property("rate-limit.max-requests-per-second")
+    @Converters({"TO_DOUBLE"})
+    private double maxRequestsPerSecond;
+
+    @Getter
+    @Property("rate-limit.burst")
+    @Converters({"TO_INT"})
+    private int burst;
+
+    @Getter
+    @Property("rate-limit.target-latency")
+    @Converters({"TO_LONG"})
+    private long targetLatency;
+
+    @Getter
+    @Property("retry.max-attempts")
+    @Converters({"TO_INT"})
+    private int maxAttempts;
+
+    @Getter
+    @Property("retry.backoff")
+    @Converters({"TO_LONG"})
+    private long backoff;
+
+    @Getter
+    @Property("retry.max-backoff")
+    @Converters({"TO_LONG"})
+    private long maxBackoff;
+
+    @Getter
+    @Property("output.format")
+    @Converters({"TO_OUTPUT_FORMAT"})
+    private OutputFormat outputFormat;
+
+    @Getter
+    @Property("checkpoint.interval")
+    @Converters({"TO_LONG"})
+    private long checkpointInterval;
+
+    @Getter
+    @Property("output.compress")
+    @Converters({"TO_BOOLEAN"})
+    private boolean compressOutput;
+
+    @Getter
+    @Property("output.flush-size")
+    @Converters({"TO_INT"})
+    private int flushSize;
+
+    @Getter
+    @Property("output.flush-interval")
+    @Converters({"TO_LONG"})
+    private long flushInterval;
+
+    @Getter
+    @Property("http.replay-folder")
+    private String replayFolder;
+
+    @Getter
+    @Property("http.redirect-to")
+    private String redirectTo;
+
+    @Getter
+    @Property("http.record-folder")
+    private String recordFolder;
+
+    @Getter
+    @Property("http.replay.latency")
+    @Converters({"TO_LONG"})
+    private long replayLatency;
+
+    @Getter
+    @Property("http.replay.error-rate")
+    @Converters({"TO_DOUBLE"})
+    private double replayErrorRate;
+
+    @Getter
+    @Property("http.replay.max-requests-per-second")
+    @Converters({"TO_DOUBLE"})
+    private double replayMaxRequestsPerSecond;
+
+    @Getter
+    @Property("http.replay.tweet-interval")
+    @Converters({"TO_LONG"})
+    private long replayTweetInterval;
+
+    @Getter
+    @Property("metrics.jmx")
+    @Converters({"TO_BOOLEAN"})
+    private boolean metricsJmx;
+
+    @Getter
+    @Property("metrics.interval")
+    @Converters({"TO_LONG"})
+    private long metricsInterval;
+
+    @Getter
+    @Property("logging.sample-interval")
+    @Converters({"TO_LONG"})
+    private long logSampleInterval;
+
     /**
      * Internal structure
      */
@@ -84,7 +245,7 @@ public class ApplicationProperties {
     Converter<String, String> basicConverter = new Converter<String, String>() {
         @Override
         public String apply(String src) {
-            if (!src.contains("${")) {
+            if (src == null || !src.contains("${")) {
                 return src;
             }
 
@@ -102,11 +263,40 @@ public class ApplicationProperties {
      *
      * @throws IOException If something goes south
      */
-    @SuppressWarnings(IConstants.UNCHECKED)
     public ApplicationProperties(final String propertiesFile) throws IOException {
         props = new Properties();
         props.load(this.getClass().getClassLoader().getResourceAsStream(propertiesFile));
+        load();
+    }
 
+    /**
+     * @param props Properties as they are in the file, the references to other properties are resolved here
+     * @throws IOException If something goes south
+     */
+    private ApplicationProperties(final Properties props) throws IOException {
+        this.props = props;
+        load();
+    }
+
+    public ApplicationProperties() throws IOException {
+        this(System.getProperty("twitter-scraper.configurationFile"));
+    }
+
+    /**
+     * @param username The handle to target
+     * @return The same properties for the given {@code target.username}, with everything referring to it (like {@code output-folder}
+     * and {@code base-url}) resolved for it
+     * @throws IOException If something goes south
+     */
+    public ApplicationProperties forHandle(final String username) throws IOException {
+        Properties handleProps = new Properties();
+        handleProps.putAll(props);
+        handleProps.setProperty("target.username", username);
+        return new ApplicationProperties(handleProps);
+    }
+
+    @SuppressWarnings(IConstants.UNCHECKED)
+    private void load() throws IOException {
         for (Field field : this.getClass().getDeclaredFields()) {
             field.setAccessible(true);
             if (field.isAnnotationPresent(Property.class)) {
@@ -130,8 +320,4 @@ public class ApplicationProperties {
             }
         }
     }
-
-    public ApplicationProperties() throws IOException {
-        this(System.getProperty("twitter-scraper.configurationFile"));
-    }
 }
@@ -1,6 +1,7 @@
 package in.clayfish.pyry.utils;
 
 import in.clayfish.pyry.enums.Mode;
+import in.clayfish.pyry.enums.OutputFormat;
 import in.clayfish.pyry.models.Tweet;
 
 import java.io.File;
@@ -30,8 +31,16 @@ public interface Converter<T, U> extends Function<T, U> {
         return Integer.parseInt(src);
     };
 
+    Converter<String, Double> TO_DOUBLE = (src) -> {
+        if(src == null || src.isEmpty()) {
+            return 0D;
+        }
+        return Double.parseDouble(src);
+    };
+
     Converter<String, Boolean> TO_BOOLEAN = (src) -> !(src == null || src.isEmpty()) && Boolean.parseBoolean(src);
     Converter<String, Mode> TO_MODE = Mode::find;
+    Converter<String, OutputFormat> TO_OUTPUT_FORMAT = OutputFormat::find;
 
     Converter<String, File> TO_FILE = File::new;
     Converter<String, String> IN_OUTPUT_FOLDER = (src) -> String.format("%s/%s", System.getProperty("user.dir"), src);
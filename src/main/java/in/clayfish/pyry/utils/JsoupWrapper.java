@@ -1,6 +1,9 @@
 package in.clayfish.pyry.utils;
 
 import in.clayfish.pyry.enums.Mode;
+import in.clayfish.pyry.metrics.Metrics;
+import in.clayfish.pyry.replay.Fixtures;
+import in.clayfish.pyry.replay.ReplayServer;
 import lombok.Getter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -8,45 +11,104 @@ import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class must be thread-safe
+ * This class must be thread-safe. One instance, obtained through {@link #getInstance(ApplicationProperties)}, is shared by all the
+ * extractors of the process so that they share the cookies and the warm-up request is made only once.
+ * <p>
+ * All the requests are paced by one {@link RateLimiter}.
+ * <p>
+ * The requests can be sent to a {@link ReplayServer} instead of Twitter, and the responses can be recorded as {@link Fixtures}, see
+ * {@code http.replay-folder}, {@code http.redirect-to} and {@code http.record-folder}.
  *
  * @author shuklaalok7
  * @since 8/4/15 00:55
  */
 public class JsoupWrapper {
+    private static final Object INSTANCE_LOCK = new Object();
+    private static volatile JsoupWrapper instance;
+
     private final Logger logger = LogManager.getLogger(JsoupWrapper.class);
     private final int timeoutInMilliseconds;
     private final String userAgent;
     private final ApplicationProperties props;
+    private final LogSampler logSampler;
+
+    @Getter
+    private final Map<String, String> cookies;
 
     @Getter
-    private Map<String, String> cookies;
+    private final RateLimiter rateLimiter;
+    private final Object initLock = new Object();
+    private volatile boolean initialized;
+
+    /**
+     * Scheme, host and port to send the requests to instead of the ones in the URLs, {@code null} to send them as they are
+     */
+    private final String redirectTo;
+    private final File recordFolder;
+    private ReplayServer replayServer;
 
     /**
      * @param props The properties set from the properties file
      */
     public JsoupWrapper(final ApplicationProperties props, final boolean initialize) throws IOException {
         this.props = props;
-        this.cookies = new HashMap<>();
+        this.cookies = new ConcurrentHashMap<>();
+
+        double rate = props.getRequestsPerSecond();
+        this.rateLimiter = rate <= 0 ? null : new RateLimiter(rate,
+                props.getMinRequestsPerSecond() > 0 ? props.getMinRequestsPerSecond() : Math.min(rate, 1),
+                props.getMaxRequestsPerSecond() > 0 ? props.getMaxRequestsPerSecond() : rate, props.getBurst(), props.getTargetLatency());
         this.userAgent = props.getUserAgent();
         this.timeoutInMilliseconds = props.getConnectionTimeout();
+        this.logSampler = new LogSampler(props.getLogSampleInterval());
+
+        if (isSet(props.getReplayFolder())) {
+            this.replayServer = ReplayServer.of(props).start(0);
+            this.redirectTo = replayServer.getBaseUrl();
+        } else {
+            this.redirectTo = isSet(props.getRedirectTo()) ? props.getRedirectTo().replaceAll("/+$", "") : null;
+        }
+        this.recordFolder = isSet(props.getRecordFolder()) ? new File(props.getRecordFolder()) : null;
 
         if (initialize) {
             this.init();
         }
     }
 
+    /**
+     * @param props The properties set from the properties file
+     * @return The wrapper shared by the whole process, created on the first call
+     */
+    public static JsoupWrapper getInstance(final ApplicationProperties props) throws IOException {
+        if (instance == null) {
+            synchronized (INSTANCE_LOCK) {
+                if (instance == null) {
+                    instance = new JsoupWrapper(props, false);
+                }
+            }
+        }
+        return instance;
+    }
+
     /**
      * @param url The URL to connect
      * @return The Jsoup connection object
      */
     public Connection connect(String url) {
-        return Jsoup.connect(url).userAgent(userAgent)
+        return Jsoup.connect(redirect(url)).userAgent(userAgent)
                 .header("Accept", "application/json")
                 .ignoreContentType(true)
                 .ignoreHttpErrors(true)
@@ -54,29 +116,74 @@ public class JsoupWrapper {
     }
 
     /**
+     * Paces the request through the shared {@link RateLimiter}. Throttled and failed requests are retried after the time asked for
+     * in {@code Retry-After}, or after an exponential backoff with jitter.
+     *
      * @param connection Jsoup connection object
      * @param method     HTTP method
-     * @return Jsoup Connection.Response object
+     * @return Jsoup Connection.Response object, {@code null} if the request could not be made successfully even after retrying
      */
     public Connection.Response execute(Connection connection, Connection.Method method) {
-        Connection.Response response;
-
         if (method != null) {
             connection.method(method);
         }
 
+        if (logger.isDebugEnabled() && logSampler.sample()) {
+            logger.debug("Calling {}", connection.request().url());
+        }
+        if (props.getMode() == Mode.TEST) {
+            return null;
+        }
+
         try {
-            logger.debug("Calling " + connection.request().url());
-            if (props.getMode() == Mode.TEST) {
-                return null;
+            for (int attempt = 0; ; attempt++) {
+                Connection.Response response = null;
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+
+                long startTime = System.currentTimeMillis();
+                long start = System.nanoTime();
+                try {
+                    response = connection.execute();
+                    Metrics.getInstance().time(Metrics.Stage.HTTP, start);
+                    Metrics.getInstance().response(response.statusCode(), response.bodyAsBytes().length);
+                    if (rateLimiter != null) {
+                        rateLimiter.onResponse(response.statusCode(), System.currentTimeMillis() - startTime);
+                    }
+                } catch (IOException e) {
+                    Metrics.getInstance().failure();
+                    logger.warn("Attempt {} to call {} failed: {}", attempt + 1, connection.request().url(), e.getMessage());
+                    if (rateLimiter != null) {
+                        rateLimiter.onFailure();
+                    }
+                }
+
+                if (response != null && !isRetryable(response.statusCode())) {
+                    this.cookies.putAll(response.cookies());
+                    if (recordFolder != null && response.statusCode() == 200) {
+                        record(connection.request().url().toString(), response.body());
+                    }
+                    return response;
+                }
+
+                if (attempt + 1 >= props.getMaxAttempts()) {
+                    logger.error("Giving up on {} after {} attempts", connection.request().url(), attempt + 1);
+                    return null;
+                }
+
+                long delay = getRetryAfter(response);
+                if (delay >= 0 && rateLimiter != null) {
+                    rateLimiter.pause(delay);
+                } else if (delay < 0) {
+                    delay = getBackoff(attempt);
+                }
+                Thread.sleep(delay);
             }
-            response = connection.execute();
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
         }
-        this.cookies.putAll(response.cookies());
-        return response;
     }
 
     /**
@@ -93,7 +200,8 @@ public class JsoupWrapper {
      * @throws IOException
      */
     public Document get(Connection connection) throws IOException {
-        return this.execute(connection).parse();
+        Connection.Response response = this.execute(connection);
+        return response == null ? null : response.parse();
     }
 
     /**
@@ -102,17 +210,106 @@ public class JsoupWrapper {
      * @throws IOException
      */
     public Document post(Connection connection) throws IOException {
-        return this.execute(connection, Connection.Method.POST).parse();
+        Connection.Response response = this.execute(connection, Connection.Method.POST);
+        return response == null ? null : response.parse();
     }
 
     /**
-     * Makes initial call to setup the cookies
+     * @param url The URL asked for
+     * @return The URL to connect, i.e. the same path and query on {@link #redirectTo}
+     */
+    private String redirect(final String url) {
+        if (redirectTo == null) {
+            return url;
+        }
+        try {
+            URI uri = new URI(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return redirectTo + path + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Cannot redirect " + url, e);
+        }
+    }
+
+    /**
+     * Saves the response as a fixture. A response which could not be saved is only logged, the run goes on.
+     *
+     * @param url  The URL requested
+     * @param body Body of the response
+     */
+    private void record(final String url, final String body) {
+        try {
+            Fixtures.record(recordFolder, url, body);
+        } catch (IOException e) {
+            logger.warn(String.format("Could not record %s: %s", url, e.getMessage()));
+        }
+    }
+
+    private static boolean isSet(final String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    /**
+     * @param statusCode HTTP status of the response
+     * @return {@code true} if the request should be made again
+     */
+    private boolean isRetryable(final int statusCode) {
+        return RateLimiter.isThrottled(statusCode) || statusCode == 500 || statusCode == 502 || statusCode == 504;
+    }
+
+    /**
+     * @param response The response which may carry {@code Retry-After}
+     * @return Milliseconds the server asked us to wait for, {@code -1} if it did not ask
+     */
+    private long getRetryAfter(final Connection.Response response) {
+        String retryAfter = response == null ? null : response.header("Retry-After");
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.min(props.getMaxBackoff(), TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter)));
+        } catch (NumberFormatException e) {
+            try {
+                long until = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.min(props.getMaxBackoff(), Math.max(0, until - System.currentTimeMillis()));
+            } catch (DateTimeParseException e1) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with full jitter, so that the requests which failed together do not retry together
+     *
+     * @param attempt Number of attempts failed already, minus one
+     * @return Milliseconds to wait before retrying
+     */
+    private long getBackoff(final int attempt) {
+        long ceiling = Math.min(props.getMaxBackoff(), props.getBackoff() << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(Math.max(1, ceiling) + 1);
+    }
+
+    /**
+     * Makes initial call to setup the cookies. Only the first call makes the request, the calls made meanwhile wait for it to be done,
+     * so that no request goes without the cookies. If it fails, the next call makes it again.
      */
     public void init() throws IOException {
-        Connection connection = this.connect(props.getBaseUrl());
+        if (initialized) {
+            return;
+        }
 
-        // This initial get requests sets our jsoupWrapper with appropriate cookies
-        this.get(connection);
+        synchronized (initLock) {
+            if (initialized) {
+                return;
+            }
+            Connection connection = this.connect(props.getBaseUrl());
+
+            // This initial get requests sets our jsoupWrapper with appropriate cookies
+            this.get(connection);
+            initialized = true;
+        }
     }
 
 }
@@ -0,0 +1,29 @@
+package in.clayfish.pyry.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets one in every {@code interval} messages of a call site through, for the messages logged for every record. Call it only when the
+ * level is enabled, so that nothing is counted when nothing would be logged.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class LogSampler {
+    private final long interval;
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param interval One in every this many messages is logged, {@code 1} or less logs all of them
+     */
+    public LogSampler(final long interval) {
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * @return {@code true} if this message should be logged
+     */
+    public boolean sample() {
+        return interval == 1 || count.getAndIncrement() % interval == 0;
+    }
+}
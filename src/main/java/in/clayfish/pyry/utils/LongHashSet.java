@@ -0,0 +1,119 @@
+package in.clayfish.pyry.utils;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link LongSet} on the heap, an open-addressing hash table of {@code long}s with linear probing. {@code 0} marks an empty slot, so
+ * the value {@code 0} itself is kept aside in a flag.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class LongHashSet implements LongSet {
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] table;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Number of values expected, the table grows beyond it if required
+     */
+    public LongHashSet(final int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        this.table = new long[capacity];
+    }
+
+    @Override
+    public boolean add(final long value) {
+        if (value == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+
+        int mask = table.length - 1;
+        for (int slot = (int) LongSet.hash(value) & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == value) {
+                return false;
+            }
+            if (table[slot] == 0) {
+                table[slot] = value;
+                if (++size > table.length * LOAD_FACTOR) {
+                    grow();
+                }
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(final long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+
+        int mask = table.length - 1;
+        for (int slot = (int) LongSet.hash(value) & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == value) {
+                return true;
+            }
+            if (table[slot] == 0) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    /**
+     * Removes every value, keeping the table allocated
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        containsZero = false;
+    }
+
+    /**
+     * @param action Action to run for every value of the set, in no particular order
+     */
+    public void forEach(final LongConsumer action) {
+        for (long value : table) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+        if (containsZero) {
+            action.accept(0);
+        }
+    }
+
+    private void grow() {
+        long[] oldTable = table;
+        table = new long[oldTable.length << 1];
+        int mask = table.length - 1;
+        for (long value : oldTable) {
+            if (value != 0) {
+                int slot = (int) LongSet.hash(value) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+}
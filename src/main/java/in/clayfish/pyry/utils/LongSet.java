@@ -0,0 +1,42 @@
+package in.clayfish.pyry.utils;
+
+/**
+ * Set of primitive {@code long} values, e.g. tweet IDs, without boxing them
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public interface LongSet {
+
+    /**
+     * @param value The value to add
+     * @return {@code true} if the set did not contain the value already
+     */
+    boolean add(long value);
+
+    /**
+     * @param value The value to look for
+     * @return {@code true} if the set contains the value
+     */
+    boolean contains(long value);
+
+    /**
+     * @return Number of values in the set
+     */
+    long size();
+
+    /**
+     * Spreads the bits of the value, so that IDs which differ only in a few bits do not crowd the same slots
+     *
+     * @param value The value to hash
+     * @return The mixed value, the finalizer of MurmurHash3
+     */
+    static long hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,151 @@
+package in.clayfish.pyry.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by all the requests of the process. The rate adapts to what the server tells us, AIMD-style: it grows by a
+ * small step with every successful response and is cut by half when the server throttles us or responds slowly. Only one cut is made
+ * per cool-down period, so a burst of throttled responses to requests which were already in flight counts as one signal.
+ * <p>
+ * The server can also ask for a pause, through {@code Retry-After}, in which case nobody gets a token until the pause is over.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class RateLimiter {
+    private static final Logger logger = LogManager.getLogger(RateLimiter.class);
+    private static final long COOL_DOWN = TimeUnit.SECONDS.toNanos(1);
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private final double minRate;
+    private final double maxRate;
+    private final double burst;
+    private final long targetLatency;
+
+    /**
+     * Permits per second
+     */
+    private double rate;
+    private double storedPermits;
+    private long nextFreeTime;
+    private long pausedUntil;
+    private long lastDecreaseTime;
+
+    /**
+     * @param rate          Permits per second to start with
+     * @param minRate       The rate is never cut below this
+     * @param maxRate       The rate never grows over this
+     * @param burst         Number of permits which can be saved up while idle
+     * @param targetLatency Responses slower than this many milliseconds are taken as a sign of congestion, {@code 0} to ignore latency
+     */
+    public RateLimiter(final double rate, final double minRate, final double maxRate, final double burst, final long targetLatency) {
+        if (rate <= 0 || minRate <= 0 || maxRate < minRate) {
+            throw new IllegalArgumentException(String.format("Rates should be positive and %.2f <= %.2f, found rate %.2f", minRate, maxRate, rate));
+        }
+        this.rate = Math.max(minRate, Math.min(maxRate, rate));
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.burst = Math.max(1, burst);
+        this.targetLatency = targetLatency;
+        this.nextFreeTime = System.nanoTime();
+        this.pausedUntil = nextFreeTime;
+        this.lastDecreaseTime = nextFreeTime - COOL_DOWN;
+    }
+
+    /**
+     * Blocks until a permit is available
+     *
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        long waitTime = reserve();
+        if (waitTime > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitTime);
+        }
+    }
+
+    /**
+     * @param statusCode HTTP status of the response
+     * @param latency    Milliseconds the request took
+     */
+    public synchronized void onResponse(final int statusCode, final long latency) {
+        if (isThrottled(statusCode) || statusCode >= 500 || (targetLatency > 0 && latency > targetLatency)) {
+            decrease();
+        } else {
+            // Additive increase, by about one permit per second for every second's worth of successful responses
+            rate = Math.min(maxRate, rate + 1 / rate);
+        }
+    }
+
+    /**
+     * Request failed without any response, e.g. timed out
+     */
+    public synchronized void onFailure() {
+        decrease();
+    }
+
+    /**
+     * @param millis Nobody gets a permit for this many milliseconds from now
+     */
+    public synchronized void pause(final long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+            storedPermits = 0;
+            logger.warn(String.format("Pausing all requests for %d ms", millis));
+        }
+    }
+
+    /**
+     * @return Current rate in permits per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * @param statusCode HTTP status of the response
+     * @return {@code true} if the server asks us to slow down
+     */
+    public static boolean isThrottled(final int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    /**
+     * @return Nanoseconds to wait before the reserved permit can be used
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        if (now > nextFreeTime) {
+            storedPermits = Math.min(burst, storedPermits + (now - nextFreeTime) * rate / TimeUnit.SECONDS.toNanos(1));
+            nextFreeTime = now;
+        }
+        if (pausedUntil - nextFreeTime > 0) {
+            nextFreeTime = pausedUntil;
+        }
+
+        long waitTime = nextFreeTime - now;
+        if (storedPermits >= 1) {
+            storedPermits--;
+        } else {
+            nextFreeTime += (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+        return waitTime;
+    }
+
+    private void decrease() {
+        long now = System.nanoTime();
+        if (now - lastDecreaseTime < COOL_DOWN) {
+            return;
+        }
+        lastDecreaseTime = now;
+        rate = Math.max(minRate, rate * DECREASE_FACTOR);
+        storedPermits = 0;
+        logger.info(String.format("Slowing down to %.2f requests per second", rate));
+    }
+}
@@ -0,0 +1,116 @@
+package in.clayfish.pyry.extractors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class TimelineWindowsTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long NOW = 1476576000000L;
+    private static final long NEWEST = TimelineWindows.idAt(NOW);
+    private static final long OLDEST = TimelineWindows.idAt(NOW - 40 * DAY);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cutsRangeIntoWindowsOfTime() throws IOException {
+        List<TimelineWindows.Window> windows = new TimelineWindows(folder.getRoot(), NEWEST, OLDEST, 4).getWindows();
+
+        assertEquals(4, windows.size());
+        assertEquals(NEWEST, windows.get(0).getNewest());
+        assertEquals(OLDEST, windows.get(3).getOldest());
+        for (int i = 0; i < windows.size(); i++) {
+            TimelineWindows.Window window = windows.get(i);
+            assertEquals(window.getNewest() + 1, window.getNext());
+            assertEquals(0, window.getProgress(), 0);
+            assertEquals(TimelineWindows.idAt(NOW - 10 * DAY * i), window.getNewest());
+            if (i > 0) {
+                assertEquals(windows.get(i - 1).getOldest(), window.getNewest());
+            }
+        }
+        assertEquals(40 * DAY, new TimelineWindows(folder.newFolder(), NEWEST, OLDEST, 4).getBacklog(), 1);
+    }
+
+    @Test
+    public void reloadsProgressAndOutput() throws IOException {
+        TimelineWindows windows = new TimelineWindows(folder.getRoot(), NEWEST, OLDEST, 4);
+        TimelineWindows.Window first = windows.getWindows().get(0);
+        long middle = (first.getNewest() + first.getOldest()) / 2;
+        windows.progress(first, middle);
+        windows.complete(windows.getWindows().get(2));
+        File output = new File(folder.getRoot(), "first-level-3.csv");
+        windows.save(output, 1234);
+
+        // Cut before, so the arguments are ignored
+        TimelineWindows reloaded = new TimelineWindows(folder.getRoot(), NEWEST + 1000, -1, 1);
+        assertEquals(4, reloaded.getWindows().size());
+        for (int i = 0; i < 4; i++) {
+            TimelineWindows.Window window = reloaded.getWindows().get(i);
+            assertEquals(windows.getWindows().get(i).getNewest(), window.getNewest());
+            assertEquals(windows.getWindows().get(i).getOldest(), window.getOldest());
+            assertEquals(windows.getWindows().get(i).getNext(), window.getNext());
+            assertEquals(i == 2, window.isDone());
+        }
+        assertEquals(middle, reloaded.getWindows().get(0).getNext());
+        assertEquals(0.375, reloaded.getProgress(), 0.001);
+        assertEquals(output, reloaded.getOutputFile());
+        assertEquals(1234, reloaded.getOutputLength());
+        assertFalse(new File(folder.getRoot(), "progress-first-level.csv.tmp").exists());
+
+        // Saving the progress alone keeps the position of the output
+        reloaded.save();
+        assertEquals(1234, new TimelineWindows(folder.getRoot(), NEWEST, OLDEST, 4).getOutputLength());
+    }
+
+    @Test
+    public void readsProgressWithoutOutput() throws IOException {
+        String windows = String.format("%d,%d,%d,false\r\n%d,%d,%d,true\r\n", NEWEST, NEWEST - 1000, NEWEST - 10, NEWEST - 1000, OLDEST,
+                NEWEST - 1000);
+        Files.write(new File(folder.getRoot(), "progress-first-level.csv").toPath(), windows.getBytes(StandardCharsets.UTF_8));
+
+        TimelineWindows reloaded = new TimelineWindows(folder.getRoot(), NEWEST, OLDEST, 4);
+        assertNull(reloaded.getOutputFile());
+        assertEquals(2, reloaded.getWindows().size());
+        assertEquals(NEWEST - 10, reloaded.getWindows().get(0).getNext());
+        assertTrue(reloaded.getWindows().get(1).isDone());
+    }
+
+    @Test
+    public void extendsOnlyOverNewerTweets() throws IOException {
+        TimelineWindows windows = new TimelineWindows(folder.getRoot(), NEWEST, OLDEST, 4);
+        for (TimelineWindows.Window window : windows.getWindows()) {
+            windows.complete(window);
+        }
+
+        long newer = TimelineWindows.idAt(NOW + 2 * DAY);
+        windows.extend(newer, NEWEST - 5, 2);
+        List<TimelineWindows.Window> extended = new TimelineWindows(folder.getRoot(), NEWEST, OLDEST, 4).getWindows();
+        assertEquals(3, extended.size());
+        assertEquals(newer, extended.get(0).getNewest());
+        assertEquals(NEWEST, extended.get(1).getOldest());
+        assertFalse(extended.get(1).isDone());
+        assertEquals(NEWEST, extended.get(2).getNewest());
+        assertEquals(OLDEST, extended.get(2).getOldest());
+        assertTrue(extended.get(2).isDone());
+
+        // Nothing newer than what is stored
+        windows.extend(newer, newer, 2);
+        assertEquals(3, windows.getWindows().size());
+    }
+}
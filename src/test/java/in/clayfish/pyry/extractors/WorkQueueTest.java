@@ -0,0 +1,177 @@
+package in.clayfish.pyry.extractors;
+
+import in.clayfish.pyry.utils.AppUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class WorkQueueTest {
+    private static final long FIRST_ID = 688346849024040960L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cutsChunksAcrossFiles() throws IOException {
+        writeTweetIds(1, 0, 25);
+        writeTweetIds(2, 25, 10);
+
+        WorkQueue queue = new WorkQueue(folder.getRoot(), 10);
+        assertChunk(queue.next(), 1, 0, 10);
+        assertChunk(queue.next(), 1, 10, 20);
+        assertChunk(queue.next(), 1, 20, 25);
+        assertChunk(queue.next(), 2, 0, 10);
+        assertNull(queue.next());
+        assertEquals(0, queue.getProgress(), 0);
+        assertEquals(35, queue.getBacklog());
+    }
+
+    @Test
+    public void resumesUnfinishedChunks() throws IOException {
+        writeTweetIds(1, 0, 25);
+        writeTweetIds(2, 25, 10);
+        WorkQueue queue = new WorkQueue(folder.getRoot(), 10);
+        queue.complete(queue.next());
+        WorkQueue.Chunk second = queue.next();
+        queue.progress(second, 14);
+        queue.next();
+        File output = new File(folder.getRoot(), "second-level-0-1.csv");
+        queue.save(output, 321);
+
+        WorkQueue resumed = new WorkQueue(folder.getRoot(), 10);
+        assertEquals(output, resumed.getOutputFile());
+        assertEquals(321, resumed.getOutputLength());
+        WorkQueue.Chunk chunk = resumed.next();
+        assertChunk(chunk, 1, 10, 20);
+        assertEquals(14, chunk.getNext());
+        assertChunk(resumed.next(), 1, 20, 25);
+        assertChunk(resumed.next(), 2, 0, 10);
+        assertNull(resumed.next());
+        assertEquals(21, resumed.getBacklog());
+
+        // Saving the progress alone keeps the position of the output
+        resumed.save();
+        assertEquals(321, new WorkQueue(folder.getRoot(), 10).getOutputLength());
+    }
+
+    @Test
+    public void resumesFromCheckpointAfterCuttingOutputBack() throws IOException {
+        writeTweetIds(1, 0, 20);
+        WorkQueue queue = new WorkQueue(folder.getRoot(), 10);
+        WorkQueue.Chunk chunk = queue.next();
+        File output = new File(folder.getRoot(), "second-level-0-1.csv");
+        append(output, "1,1,\"@a\",\"A\",\"\",\"first\",1452867720000\r\n");
+        queue.progress(chunk, 3);
+        queue.save(output, output.length());
+        long checkpointed = output.length();
+
+        // Written after the checkpoint, the last file started too
+        queue.progress(chunk, 10);
+        append(output, "2,2,\"@b\",\"B\",\"\",\"after the\r\ncheckpoint\",1452867780000\r\n");
+        File later = new File(folder.getRoot(), "second-level-0-2.csv");
+        append(later, "3,3,\"@c\",\"C\",\"\",\"later\",1452867840000\r\n");
+        File otherWriter = new File(folder.getRoot(), "second-level-1-2.csv");
+        append(otherWriter, "4,4,\"@d\",\"D\",\"\",\"other\",1452867900000\r\n");
+
+        WorkQueue resumed = new WorkQueue(folder.getRoot(), 10);
+        List<File> cut = AppUtils.cutBack(resumed.getOutputFile(), resumed.getOutputLength());
+        assertEquals(2, cut.size());
+        assertEquals(checkpointed, output.length());
+        assertFalse(later.exists());
+        assertTrue(otherWriter.exists());
+
+        WorkQueue.Chunk pending = resumed.next();
+        assertChunk(pending, 1, 0, 10);
+        assertEquals(3, pending.getNext());
+        assertChunk(resumed.next(), 1, 10, 20);
+    }
+
+    @Test
+    public void importsLegacyCounters() throws IOException {
+        writeTweetIds(1, 0, 30);
+        append(new File(folder.getRoot(), "counter-second-level-1.csv"), "1,4,10\r\n");
+        append(new File(folder.getRoot(), "counter-second-level-2.csv"), "1,20,20\r\n");
+        append(new File(folder.getRoot(), "counter-second-level-3.csv"), "1,12,20\r\n");
+
+        WorkQueue queue = new WorkQueue(folder.getRoot(), 10);
+        assertTrue(new File(folder.getRoot(), "progress-second-level.csv").exists());
+        assertNull(queue.getOutputFile());
+        assertEquals(6 + 8 + 10, queue.getBacklog());
+
+        // Saved right away, the counters are not imported again
+        WorkQueue reloaded = new WorkQueue(folder.getRoot(), 10);
+        long[][] expected = {{4, 10}, {12, 20}, {20, 30}};
+        for (long[] range : expected) {
+            WorkQueue.Chunk chunk = reloaded.next();
+            assertEquals(range[0], chunk.getNext());
+            assertEquals(range[1], chunk.getEnd());
+        }
+        assertNull(reloaded.next());
+    }
+
+    @Test
+    public void takesChunksFromChannel() throws IOException {
+        writeTweetIds(1, 0, 25);
+        TweetIdChannel channel = new TweetIdChannel(100);
+        channel.publish(1, 10, Collections.emptyList());
+        WorkQueue queue = new WorkQueue(folder.getRoot(), 10, channel);
+
+        // Read from the file up to what step 1 has published
+        WorkQueue.Chunk chunk = queue.next();
+        assertChunk(chunk, 1, 0, 10);
+        assertFalse(chunk.hasTweetIds());
+        assertNull(queue.next());
+
+        long[] tweetIds = new long[15];
+        for (int i = 0; i < tweetIds.length; i++) {
+            tweetIds[i] = FIRST_ID + 10 + i;
+        }
+        channel.publish(1, 25, Collections.singletonList(new TweetIdChannel.Segment(1, 10, tweetIds, false)));
+        chunk = queue.next();
+        assertChunk(chunk, 1, 10, 20);
+        assertTrue(chunk.hasTweetIds());
+        assertEquals(FIRST_ID + 10, chunk.getTweetId(10));
+        assertEquals(FIRST_ID + 19, chunk.getTweetId(19));
+        assertChunk(queue.next(), 1, 20, 25);
+        assertNull(queue.next());
+
+        // Segments the frontier has passed are dropped
+        channel.publish(1, 25, Collections.singletonList(new TweetIdChannel.Segment(1, 20, new long[]{1, 2, 3, 4, 5}, false)));
+        assertNull(queue.next());
+    }
+
+    private void writeTweetIds(final int fileIndex, final int from, final int count) throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (int i = from; i < from + count; i++) {
+            records.append(FIRST_ID + i).append("\r\n");
+        }
+        append(new File(folder.getRoot(), String.format("first-level-%d.csv", fileIndex)), records.toString());
+    }
+
+    private static void append(final File file, final String records) throws IOException {
+        Files.write(file.toPath(), records.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void assertChunk(final WorkQueue.Chunk chunk, final int fileIndex, final long start, final long end) {
+        assertEquals(fileIndex, chunk.getFileIndex());
+        assertEquals(start, chunk.getStart());
+        assertEquals(end, chunk.getEnd());
+    }
+}
@@ -0,0 +1,87 @@
+package in.clayfish.pyry.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class BlockFormatTest {
+
+    @Test
+    public void writesFileHeader() {
+        ByteBuffer header = ByteBuffer.wrap(BlockFormat.fileHeader());
+        assertEquals(BlockFormat.FILE_HEADER_SIZE, header.limit());
+        assertEquals(BlockFormat.MAGIC, header.getInt());
+        assertEquals(BlockFormat.VERSION, header.getInt());
+    }
+
+    @Test
+    public void encodesRecordsIntoBlock() throws Exception {
+        String records = "688346849024040960,1,\"Zürich, \"\"Schweiz\"\"\"\r\n"
+                + "688346849024040961,1,\"two\r\nlines\"\r\n"
+                + "688346849024040962\r\n";
+        byte[] raw = records.getBytes(StandardCharsets.UTF_8);
+
+        byte[] block = BlockFormat.encode(records);
+        ByteBuffer header = ByteBuffer.wrap(block);
+        int compressedLength = header.getInt();
+        assertEquals(block.length - BlockFormat.BLOCK_HEADER_SIZE, compressedLength);
+        assertEquals(raw.length, header.getInt());
+        assertEquals(3, header.getInt());
+
+        CRC32 crc = new CRC32();
+        crc.update(block, BlockFormat.BLOCK_HEADER_SIZE, compressedLength);
+        assertEquals((int) crc.getValue(), header.getInt());
+
+        assertArrayEquals(raw, inflate(block, raw.length));
+    }
+
+    @Test
+    public void encodesBlocksIndependently() throws Exception {
+        String first = "1\r\n2\r\n";
+        String second = "3\r\n";
+
+        byte[] block = BlockFormat.encode(first);
+        BlockFormat.encode(second);
+        assertArrayEquals(block, BlockFormat.encode(first));
+        assertArrayEquals(second.getBytes(StandardCharsets.UTF_8), inflate(BlockFormat.encode(second), second.length()));
+    }
+
+    @Test
+    public void encodesEmptyBlock() {
+        ByteBuffer header = ByteBuffer.wrap(BlockFormat.encode(""));
+        assertTrue(header.getInt() > 0);
+        assertEquals(0, header.getInt());
+        assertEquals(0, header.getInt());
+    }
+
+    private static byte[] inflate(final byte[] block, final int rawLength) throws Exception {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, BlockFormat.BLOCK_HEADER_SIZE, block.length - BlockFormat.BLOCK_HEADER_SIZE);
+            byte[] raw = new byte[rawLength + 1];
+            int length = 0;
+            while (!inflater.finished() && length < raw.length) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            return Arrays.copyOf(raw, length);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package in.clayfish.pyry.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class BlockIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    /**
+     * Offsets of the blocks of {@link #file}, of 3, 0, 4 and 2 records, and of its end
+     */
+    private long[] offsets;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "first-level-1.csv");
+        offsets = write(file, "0\r\n1\r\n2\r\n", "", "3\r\n4\r\n5\r\n6\r\n", "7\r\n8\r\n");
+    }
+
+    @Test
+    public void tellsCompressedFilesApart() throws IOException {
+        File plain = folder.newFile("first-level-2.csv");
+        Files.write(plain.toPath(), "688346849024040960\r\n".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(BlockIndex.isCompressed(file));
+        assertFalse(BlockIndex.isCompressed(plain));
+        assertFalse(BlockIndex.isCompressed(folder.newFile("first-level-3.csv")));
+        assertFalse(BlockIndex.isCompressed(new File(folder.getRoot(), "first-level-4.csv")));
+    }
+
+    @Test
+    public void countsRecordsFromHeaders() throws IOException {
+        BlockIndex index = BlockIndex.open(file);
+        assertEquals(9, index.getRecordCount());
+        assertEquals(file.length(), index.getValidLength());
+    }
+
+    @Test
+    public void findsBlockOfRecord() throws IOException {
+        BlockIndex index = BlockIndex.open(file);
+        long[] firstRecords = {0, 0, 0, 3, 3, 3, 3, 7, 7};
+        long[] blockOffsets = {offsets[0], offsets[0], offsets[0], offsets[2], offsets[2], offsets[2], offsets[2], offsets[3], offsets[3]};
+
+        for (int record = 0; record < firstRecords.length; record++) {
+            assertEquals("Block of " + record, firstRecords[record], index.floorRecord(record));
+            assertEquals("Offset of " + record, blockOffsets[record], index.floorOffset(record));
+        }
+        // Past the last record, the last block
+        assertEquals(7, index.floorRecord(20));
+        assertEquals(offsets[3], index.floorOffset(20));
+    }
+
+    @Test
+    public void endsAtTornBlock() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(offsets[3] + 5);
+        }
+
+        BlockIndex index = BlockIndex.open(file);
+        assertEquals(7, index.getRecordCount());
+        assertEquals(offsets[3], index.getValidLength());
+        assertEquals(offsets[2], index.floorOffset(8));
+    }
+
+    @Test
+    public void verifiesChecksums() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offsets[2] + BlockFormat.BLOCK_HEADER_SIZE);
+            int first = raf.read();
+            raf.seek(offsets[2] + BlockFormat.BLOCK_HEADER_SIZE);
+            raf.write(first ^ 0xff);
+        }
+
+        assertEquals(9, BlockIndex.open(file).getRecordCount());
+        BlockIndex verified = BlockIndex.verify(file);
+        assertEquals(3, verified.getRecordCount());
+        assertEquals(offsets[2], verified.getValidLength());
+    }
+
+    @Test
+    public void rejectsPlainFile() throws IOException {
+        File plain = folder.newFile("first-level-2.csv");
+        Files.write(plain.toPath(), "688346849024040960\r\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            BlockIndex.open(plain);
+            fail("Indexed a plain file");
+        } catch (IOException expected) {
+            // Not a compressed file
+        }
+    }
+
+    /**
+     * Writes a compressed file of the given blocks
+     *
+     * @return Offsets of the blocks, and of the end of the file
+     */
+    static long[] write(final File file, final String... blocks) throws IOException {
+        long[] offsets = new long[blocks.length + 1];
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(BlockFormat.fileHeader());
+            offsets[0] = BlockFormat.FILE_HEADER_SIZE;
+            for (int i = 0; i < blocks.length; i++) {
+                byte[] block = BlockFormat.encode(blocks[i]);
+                out.write(block);
+                offsets[i + 1] = offsets[i] + block.length;
+            }
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,89 @@
+package in.clayfish.pyry.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class BlockInputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsAllBlocks() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        BlockIndexTest.write(file, "0\r\n1\r\n", "", "2,\"Zürich\"\r\n", "3\r\n");
+
+        assertEquals("0\r\n1\r\n2,\"Zürich\"\r\n3\r\n", decode(BlockInputStream.readAll(file)));
+    }
+
+    @Test
+    public void readsFromBlock() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        long[] offsets = BlockIndexTest.write(file, "0\r\n1\r\n", "2\r\n", "3\r\n4\r\n");
+
+        try (BlockInputStream in = new BlockInputStream(file, offsets[1])) {
+            assertEquals('2', in.read());
+            assertEquals(offsets[2], in.getPosition());
+            assertEquals("\r\n3\r\n4\r\n", decode(in.readRemaining()));
+            assertEquals(offsets[3], in.getPosition());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void readsLargeBlocks() throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (long id = 688346849024040960L; records.length() < 300000; id++) {
+            records.append(id).append(",\"message ").append(id % 97).append("\"\r\n");
+        }
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        BlockIndexTest.write(file, records.toString(), records.toString());
+
+        assertEquals(records.toString() + records, decode(BlockInputStream.readAll(file)));
+    }
+
+    @Test
+    public void endsAtTornBlock() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        long[] offsets = BlockIndexTest.write(file, "0\r\n", "1\r\n", "2\r\n");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(offsets[3] - 1);
+        }
+
+        try (BlockInputStream in = new BlockInputStream(file, BlockFormat.FILE_HEADER_SIZE)) {
+            assertEquals("0\r\n1\r\n", decode(in.readRemaining()));
+            assertEquals(offsets[2], in.getPosition());
+        }
+    }
+
+    @Test
+    public void endsAtDamagedBlock() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        long[] offsets = BlockIndexTest.write(file, "0\r\n", "1\r\n", "2\r\n");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offsets[2] - 1);
+            int last = raf.read();
+            raf.seek(offsets[2] - 1);
+            raf.write(last ^ 0xff);
+        }
+
+        assertEquals("0\r\n", decode(BlockInputStream.readAll(file)));
+    }
+
+    private static String decode(final ByteBuffer buffer) {
+        return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,243 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.models.Tweet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes conversations with {@link ColumnarWriter} and reads them back with {@link ColumnarReader}
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class ColumnarWriterTest {
+    private static final CsvSink.RollOver NO_ROLL_OVER = () -> {
+        throw new IllegalStateException("The file should not roll over");
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-1.tcol");
+        Conversation conversation = new Conversation(42);
+        conversation.add(tweet(700000000000000001L, 1452826260000L, "@zurich", "Zürich Tourismus", "Zürich, Schweiz", "Grüezi! 🇨🇭"));
+        conversation.add(tweet(700000000000000005L, 1452826200000L, null, null, null, null));
+        conversation.add(tweet(700000000000000003L, 1452826300000L, "@tokyo", "東京", "", "東京にもある？ \"quoted\", comma\nnewline"));
+        conversation.add(tweet(699999999999999999L, 1452826260000L, "@zurich", "Zürich Tourismus", null, ""));
+
+        try (ColumnarWriter writer = new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER)) {
+            writer.write(conversation);
+        }
+
+        List<Tweet> read = readAll(file, ColumnarFormat.FILE_HEADER_SIZE);
+        assertEquals(conversation.getTweets().size(), read.size());
+        for (Tweet tweet : read) {
+            assertEquals(42, tweet.getConversationId());
+            assertTweetIn(conversation, tweet);
+        }
+    }
+
+    @Test
+    public void splitsLongConversationsIntoBlocks() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-1.tcol");
+        Conversation conversation = conversation(1, 700000000000000000L, ColumnarFormat.BLOCK_ROWS + 10);
+
+        try (ColumnarWriter writer = new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER)) {
+            writer.write(conversation);
+        }
+
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            assertTrue(reader.nextBlock());
+            assertEquals(ColumnarFormat.BLOCK_ROWS, reader.getRowCount());
+            assertTrue(reader.nextBlock());
+            assertEquals(10, reader.getRowCount());
+            assertFalse(reader.nextBlock());
+        }
+        assertEquals(ColumnarFormat.BLOCK_ROWS + 10, readAll(file, ColumnarFormat.FILE_HEADER_SIZE).size());
+    }
+
+    @Test
+    public void dropsTornLastBlockAndAppendsAfterIt() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-1.tcol");
+        Conversation first = conversation(1, 700000000000000000L, 3);
+        Conversation torn = conversation(2, 710000000000000000L, 5);
+        Conversation next = conversation(3, 720000000000000000L, 4);
+
+        long firstBlockEnd;
+        try (ColumnarWriter writer = new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER)) {
+            writer.write(first);
+            writer.flush();
+            firstBlockEnd = file.length();
+            writer.write(torn);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        assertEquals(3, readAll(file, ColumnarFormat.FILE_HEADER_SIZE).size());
+
+        try (ColumnarWriter writer = new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER)) {
+            assertEquals(firstBlockEnd, file.length());
+            writer.write(next);
+        }
+
+        List<Tweet> read = readAll(file, ColumnarFormat.FILE_HEADER_SIZE);
+        assertEquals(7, read.size());
+        for (Tweet tweet : read) {
+            assertTweetIn(tweet.getConversationId() == 1 ? first : next, tweet);
+        }
+    }
+
+    @Test
+    public void dropsLastBlockNotMatchingItsChecksum() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-1.tcol");
+        long firstBlockEnd;
+        try (ColumnarWriter writer = new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER)) {
+            writer.write(conversation(1, 700000000000000000L, 3));
+            writer.flush();
+            firstBlockEnd = file.length();
+            writer.write(conversation(2, 710000000000000000L, 3));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xff);
+        }
+
+        new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER).close();
+        assertEquals(firstBlockEnd, file.length());
+        assertEquals(3, readAll(file, ColumnarFormat.FILE_HEADER_SIZE).size());
+    }
+
+    @Test
+    public void resumesAtPosition() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-1.tcol");
+        Conversation first = conversation(1, 700000000000000000L, 3);
+        Conversation second = conversation(2, 710000000000000000L, 2);
+        try (ColumnarWriter writer = new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER)) {
+            writer.write(first);
+            writer.flush();
+            writer.write(second);
+        }
+
+        long position;
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            assertTrue(reader.nextBlock());
+            assertEquals(3, reader.getRowCount());
+            position = reader.getPosition();
+        }
+
+        List<Tweet> rest = readAll(file, position);
+        assertEquals(2, rest.size());
+        for (Tweet tweet : rest) {
+            assertTweetIn(second, tweet);
+        }
+
+        try (ColumnarReader reader = new ColumnarReader(file, file.length())) {
+            assertFalse(reader.nextBlock());
+            assertEquals(file.length(), reader.getPosition());
+        }
+    }
+
+    @Test
+    public void rejectsOffsetOutsideTheFile() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-1.tcol");
+        new ColumnarWriter(file, Long.MAX_VALUE, NO_ROLL_OVER).close();
+
+        try {
+            new ColumnarReader(file, file.length() + 1);
+            fail("Read a block past the end of the file");
+        } catch (IOException expected) {
+            // There is no block there
+        }
+    }
+
+    @Test
+    public void rollsOverOnceFileIsFull() throws IOException {
+        File first = new File(folder.getRoot(), "second-level-1.tcol");
+        File second = new File(folder.getRoot(), "second-level-2.tcol");
+        File third = new File(folder.getRoot(), "second-level-3.tcol");
+        Iterator<File> next = Arrays.asList(second, third).iterator();
+
+        // Every block fills a file of a byte
+        try (ColumnarWriter writer = new ColumnarWriter(first, 1, next::next)) {
+            writer.write(conversation(1, 700000000000000000L, 2));
+            writer.flush();
+            assertEquals(second, writer.getFile());
+            writer.write(conversation(2, 710000000000000000L, 3));
+        }
+
+        assertFalse(next.hasNext());
+        assertEquals(2, readAll(first, ColumnarFormat.FILE_HEADER_SIZE).size());
+        List<Tweet> read = readAll(second, ColumnarFormat.FILE_HEADER_SIZE);
+        assertEquals(3, read.size());
+        assertEquals(2, read.get(0).getConversationId());
+        assertEquals(ColumnarFormat.FILE_HEADER_SIZE, third.length());
+    }
+
+    private static List<Tweet> readAll(final File file, final long offset) throws IOException {
+        List<Tweet> tweets = new ArrayList<>();
+        try (ColumnarReader reader = new ColumnarReader(file, offset)) {
+            while (reader.nextBlock()) {
+                for (int row = 0; row < reader.getRowCount(); row++) {
+                    tweets.add(reader.getTweet(row));
+                }
+            }
+        }
+        return tweets;
+    }
+
+    private static void assertTweetIn(final Conversation conversation, final Tweet read) {
+        for (Tweet tweet : conversation.getTweets()) {
+            if (tweet.getId() == read.getId()) {
+                assertEquals(tweet.getConversationId(), read.getConversationId());
+                assertEquals(tweet.getTimestamp(), read.getTimestamp());
+                assertEquals(tweet.getUsername(), read.getUsername());
+                assertEquals(tweet.getUser(), read.getUser());
+                assertEquals(tweet.getLocation(), read.getLocation());
+                assertEquals(tweet.getMessage(), read.getMessage());
+                return;
+            }
+        }
+        fail("Read a tweet which was not written: " + read.getId());
+    }
+
+    private static Conversation conversation(final long id, final long firstTweetId, final int size) {
+        Conversation conversation = new Conversation(id);
+        for (int i = 0; i < size; i++) {
+            conversation.add(tweet(firstTweetId + i * 7, 1452826260000L + i * 1000, "@user" + i % 3, "User " + i % 3,
+                    i % 2 == 0 ? null : "Pune", "Message " + i));
+        }
+        return conversation;
+    }
+
+    private static Tweet tweet(final long id, final long timestamp, final String username, final String user, final String location,
+                               final String message) {
+        Tweet tweet = new Tweet();
+        tweet.setId(id);
+        tweet.setTimestamp(new Date(timestamp));
+        tweet.setUsername(username);
+        tweet.setUser(user);
+        tweet.setLocation(location);
+        tweet.setMessage(message);
+        return tweet;
+    }
+}
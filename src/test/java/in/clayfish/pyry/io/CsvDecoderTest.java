@@ -0,0 +1,223 @@
+package in.clayfish.pyry.io;
+
+import in.clayfish.pyry.models.Tweet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Reads back with {@link CsvDecoder} what {@link CsvEncoder} writes
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class CsvDecoderTest {
+    private static final String[] VALUES = {"plain", "", "with, comma", "with \"quotes\"", "\"", "\"\"", "two\r\nlines", "line\nfeed",
+            "carriage\rreturn", "Zürich, Schweiz", "東京にもある？", "🇨🇭 \"flag\"", " spaces ", ",", "trailing,"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void quotesOnlyWhenNeeded() {
+        assertEquals("plain", field("plain"));
+        assertEquals("", field(""));
+        assertEquals("", field(null));
+        assertEquals(" spaces ", field(" spaces "));
+        assertEquals("Zürich", field("Zürich"));
+        assertEquals("\"a,b\"", field("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", field("say \"hi\""));
+        assertEquals("\"a\r\nb\"", field("a\r\nb"));
+        assertEquals("\"a\nb\"", field("a\nb"));
+    }
+
+    @Test
+    public void readsBackEncodedFields() {
+        StringBuilder records = new StringBuilder();
+        for (String value : VALUES) {
+            CsvEncoder.appendField(records.append("688346849024040960,"), value).append(',');
+            CsvEncoder.appendField(records, value).append("\r\n");
+        }
+
+        CsvDecoder decoder = CsvDecoder.of(records.toString());
+        for (String value : VALUES) {
+            assertTrue(decoder.next());
+            assertEquals(3, decoder.getFieldCount());
+            assertEquals(688346849024040960L, decoder.getLong(0));
+            assertEquals(value, decoder.getString(1));
+            assertEquals(value, decoder.getString(2));
+            assertEquals(value.isEmpty(), decoder.isEmpty(1));
+        }
+        assertFalse(decoder.next());
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void skipsBlankLines() {
+        CsvDecoder decoder = CsvDecoder.of("\r\n\n1,a\n\n\r\n2,b\r\n\r\n3");
+        for (int record = 1; record <= 3; record++) {
+            assertTrue(decoder.next());
+            assertEquals(record, decoder.getLong(0));
+        }
+        assertFalse(decoder.next());
+        assertEquals(0, decoder.getFieldCount());
+    }
+
+    @Test
+    public void readsEmptyFields() {
+        CsvDecoder decoder = CsvDecoder.of(",,\"\"\r\n");
+        assertTrue(decoder.next());
+        assertEquals(3, decoder.getFieldCount());
+        for (int field = 0; field < 3; field++) {
+            assertTrue(decoder.isEmpty(field));
+            assertEquals("", decoder.getString(field));
+        }
+    }
+
+    @Test
+    public void ignoresTextAfterClosingQuote() {
+        CsvDecoder decoder = CsvDecoder.of("\"quoted\"junk,next\r\n\"unterminated,field\r\n");
+        assertTrue(decoder.next());
+        assertEquals("quoted", decoder.getString(0));
+        assertEquals("next", decoder.getString(1));
+        assertTrue(decoder.next());
+        assertEquals(1, decoder.getFieldCount());
+        assertEquals("unterminated,field\r\n", decoder.getString(0));
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void tellsRecordsCutShort() {
+        String records = "1,a\r\n2,\"b\r\n";
+        CsvDecoder decoder = CsvDecoder.of(records);
+        assertTrue(decoder.next());
+        assertTrue(decoder.isTerminated());
+        assertEquals(5, decoder.getPosition());
+
+        // The line break is inside a quoted field which is not closed yet
+        assertTrue(decoder.next());
+        assertFalse(decoder.isTerminated());
+        assertEquals(records.length(), decoder.getPosition());
+
+        decoder = CsvDecoder.of("1,\"b\r\nc\"\r\n2");
+        assertTrue(decoder.next());
+        assertTrue(decoder.isTerminated());
+        assertTrue(decoder.next());
+        assertFalse(decoder.isTerminated());
+    }
+
+    @Test
+    public void readsFromBufferPosition() {
+        ByteBuffer buffer = ByteBuffer.wrap("skipped\r\n7,eight\r\nignored".getBytes(StandardCharsets.UTF_8));
+        buffer.position(9).limit(18);
+
+        CsvDecoder decoder = new CsvDecoder(buffer);
+        assertTrue(decoder.next());
+        assertEquals(7, decoder.getLong(0));
+        assertEquals("eight", decoder.getString(1));
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void parsesLongs() {
+        CsvDecoder decoder = CsvDecoder.of("0,-0, 42 ,-1,9223372036854775807,-9223372036854775808,\"17\"");
+        assertTrue(decoder.next());
+        long[] expected = {0, 0, 42, -1, Long.MAX_VALUE, Long.MIN_VALUE, 17};
+        for (int field = 0; field < expected.length; field++) {
+            assertEquals(expected[field], decoder.getLong(field));
+        }
+    }
+
+    @Test
+    public void rejectsWhatIsNotLong() {
+        CsvDecoder decoder = CsvDecoder.of("9223372036854775808,-9223372036854775809,99999999999999999999,12a,,-, ,1.5,+1");
+        assertTrue(decoder.next());
+        for (int field = 0; field < decoder.getFieldCount(); field++) {
+            try {
+                decoder.getLong(field);
+                fail("Parsed " + decoder.getString(field));
+            } catch (NumberFormatException expected) {
+                // Not a long
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsMissingField() {
+        CsvDecoder decoder = CsvDecoder.of("1,2");
+        decoder.next();
+        decoder.getString(2);
+    }
+
+    @Test
+    public void readsPlainAndCompressedFiles() throws IOException {
+        String records = "688346849024040960,\"a, b\"\r\n688346849024040961,\"东\r\n京\"\r\n";
+        File plain = folder.newFile("first-level-1.csv");
+        Files.write(plain.toPath(), records.getBytes(StandardCharsets.UTF_8));
+        File compressed = new File(folder.getRoot(), "first-level-2.csv");
+        int firstRecordEnd = records.indexOf("\r\n") + 2;
+        BlockIndexTest.write(compressed, records.substring(0, firstRecordEnd), records.substring(firstRecordEnd));
+
+        for (File file : new File[]{plain, compressed}) {
+            CsvDecoder decoder = CsvDecoder.open(file);
+            assertTrue(decoder.next());
+            assertEquals("a, b", decoder.getString(1));
+            assertTrue(decoder.next());
+            assertEquals(688346849024040961L, decoder.getLong(0));
+            assertEquals("东\r\n京", decoder.getString(1));
+            assertFalse(decoder.next());
+        }
+        assertFalse(CsvDecoder.open(folder.newFile("first-level-3.csv")).next());
+    }
+
+    @Test
+    public void readsBackTweetRecords() {
+        for (String value : VALUES) {
+            Tweet tweet = new Tweet();
+            tweet.setId(688346849024040960L);
+            tweet.setConversationId(12);
+            tweet.setTimestamp(new Date(1452867720000L));
+            tweet.setUsername("@" + value);
+            tweet.setUser(value);
+            tweet.setLocation(value);
+            tweet.setMessage(value);
+
+            Tweet read = new Tweet().fromRecord(tweet.toString());
+            assertEquals(tweet.getId(), read.getId());
+            assertEquals(tweet.getConversationId(), read.getConversationId());
+            assertEquals(tweet.getTimestamp(), read.getTimestamp());
+            assertEquals(tweet.getUsername(), read.getUsername());
+            assertEquals(value, read.getUser());
+            assertEquals(value, read.getLocation());
+            assertEquals(value, read.getMessage());
+        }
+    }
+
+    @Test
+    public void readsNullsOfTweetAsEmpty() {
+        Tweet tweet = new Tweet();
+        tweet.setId(1);
+        tweet.setTimestamp(new Date(0));
+
+        Tweet read = new Tweet().fromRecord(tweet.toString());
+        assertEquals("", read.getUser());
+        assertEquals("", read.getLocation());
+        assertEquals("", read.getMessage());
+    }
+
+    private static String field(final String value) {
+        return CsvEncoder.appendField(new StringBuilder(), value).toString();
+    }
+}
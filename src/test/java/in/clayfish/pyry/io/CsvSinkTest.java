@@ -0,0 +1,156 @@
+package in.clayfish.pyry.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class CsvSinkTest {
+    private static final CsvSink.RollOver NO_ROLL_OVER = () -> {
+        throw new IllegalStateException("The file should not roll over");
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesPlainRecords() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        try (CsvSink sink = new CsvSink(file, Long.MAX_VALUE, NO_ROLL_OVER, 1 << 16, Long.MAX_VALUE)) {
+            sink.append(688346849024040960L);
+            sink.append("688346849024040961,\"Zürich\"");
+        }
+
+        assertFalse(BlockIndex.isCompressed(file));
+        assertEquals("688346849024040960\r\n688346849024040961,\"Zürich\"\r\n",
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void syncsBufferedRecords() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        try (CsvSink sink = new CsvSink(file, Long.MAX_VALUE, NO_ROLL_OVER, 1 << 16, Long.MAX_VALUE)) {
+            sink.append(688346849024040960L);
+            assertEquals(0, file.length());
+
+            sink.sync();
+            assertEquals(20, file.length());
+            assertEquals(file.length(), sink.getFileSize());
+        }
+    }
+
+    @Test
+    public void compressesRecordsIntoBlocks() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        String expected = write(file, 0, 1000, Long.MAX_VALUE, NO_ROLL_OVER);
+
+        assertTrue(BlockIndex.isCompressed(file));
+        BlockIndex index = BlockIndex.open(file);
+        assertEquals(1000, index.getRecordCount());
+        assertTrue(index.floorRecord(999) > 0);
+        assertEquals(expected, decode(BlockInputStream.readAll(file)));
+    }
+
+    @Test
+    public void appendsToCompressedFile() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        String expected = write(file, 0, 100, Long.MAX_VALUE, NO_ROLL_OVER) + write(file, 100, 50, Long.MAX_VALUE, NO_ROLL_OVER);
+
+        assertEquals(150, BlockIndex.open(file).getRecordCount());
+        assertEquals(expected, decode(BlockInputStream.readAll(file)));
+    }
+
+    @Test
+    public void dropsTornBlockOnOpen() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        String first = write(file, 0, 100, Long.MAX_VALUE, NO_ROLL_OVER);
+        long validLength = file.length();
+        write(file, 100, 5, Long.MAX_VALUE, NO_ROLL_OVER);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+
+        new CsvSink(file, Long.MAX_VALUE, NO_ROLL_OVER, 64, Long.MAX_VALUE, true).close();
+        assertEquals(validLength, file.length());
+
+        String next = write(file, 200, 10, Long.MAX_VALUE, NO_ROLL_OVER);
+        assertEquals(110, BlockIndex.verify(file).getRecordCount());
+        assertEquals(first + next, decode(BlockInputStream.readAll(file)));
+    }
+
+    @Test
+    public void rollsOverOnCompressedSize() throws IOException {
+        List<File> files = new ArrayList<>();
+        files.add(new File(folder.getRoot(), "first-level-1.csv"));
+        long maxFileSize = 2048;
+
+        String expected = write(files.get(0), 0, 20000, maxFileSize, () -> {
+            File next = new File(folder.getRoot(), String.format("first-level-%d.csv", files.size() + 1));
+            files.add(next);
+            return next;
+        });
+
+        assertTrue(files.size() > 1);
+        StringBuilder read = new StringBuilder();
+        for (File file : files) {
+            ByteBuffer contents = BlockInputStream.readAll(file);
+            if (file != files.get(files.size() - 1)) {
+                // The raw records are several times the limit, the compressed blocks are over it by at most one block
+                assertTrue(contents.remaining() > 2 * maxFileSize);
+                assertTrue(file.length() > maxFileSize);
+                assertTrue(file.length() < 2 * maxFileSize);
+            }
+            read.append(decode(contents));
+        }
+        assertEquals(expected, read.toString());
+    }
+
+    @Test
+    public void rollsOverFromFileOfOtherKind() throws IOException {
+        File plain = new File(folder.getRoot(), "first-level-1.csv");
+        Files.write(plain.toPath(), "688346849024040960\r\n".getBytes(StandardCharsets.UTF_8));
+        File compressed = new File(folder.getRoot(), "first-level-2.csv");
+
+        String expected = write(plain, 0, 10, Long.MAX_VALUE, () -> compressed);
+        assertEquals("688346849024040960\r\n", new String(Files.readAllBytes(plain.toPath()), StandardCharsets.UTF_8));
+        assertEquals(expected, decode(BlockInputStream.readAll(compressed)));
+    }
+
+    /**
+     * Appends records with a compressing sink flushed every few records
+     *
+     * @return The records, as they should read decompressed
+     */
+    private static String write(final File file, final int from, final int count, final long maxFileSize, final CsvSink.RollOver rollOver)
+            throws IOException {
+        StringBuilder expected = new StringBuilder();
+        try (CsvSink sink = new CsvSink(file, maxFileSize, rollOver, 256, Long.MAX_VALUE, true)) {
+            for (int i = from; i < from + count; i++) {
+                String record = String.format("%d,%d,\"message %d\"", 688346849024040960L + i, i / 10, i % 7);
+                sink.append(record);
+                expected.append(record).append("\r\n");
+            }
+        }
+        return expected.toString();
+    }
+
+    private static String decode(final ByteBuffer buffer) {
+        return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+    }
+}
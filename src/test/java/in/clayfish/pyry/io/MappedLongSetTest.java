@@ -0,0 +1,134 @@
+package in.clayfish.pyry.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class MappedLongSetTest {
+    private static final long FIRST_ID = 688346849024040960L;
+
+    /**
+     * More than the smallest table takes before it grows
+     */
+    private static final int IDS = 100000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void addsAndFinds() throws IOException {
+        try (MappedLongSet set = new MappedLongSet(new File(folder.getRoot(), "seen-first-level.ids"))) {
+            long[] values = {FIRST_ID, 0, -1, Long.MIN_VALUE, Long.MAX_VALUE, 1};
+            for (long value : values) {
+                assertFalse(set.contains(value));
+                assertTrue(set.add(value));
+                assertFalse(set.add(value));
+                assertTrue(set.contains(value));
+            }
+            assertEquals(values.length, set.size());
+            assertFalse(set.contains(FIRST_ID + 1));
+        }
+    }
+
+    @Test
+    public void growsKeepingEveryValue() throws IOException {
+        File file = new File(folder.getRoot(), "seen-first-level.ids");
+        try (MappedLongSet set = new MappedLongSet(file)) {
+            long initialLength = file.length();
+            for (int i = 0; i < IDS; i++) {
+                assertTrue(set.add(FIRST_ID + i * 1000L));
+            }
+
+            assertEquals(IDS, set.size());
+            assertTrue(file.length() > initialLength);
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+            for (int i = 0; i < IDS; i++) {
+                assertTrue(set.contains(FIRST_ID + i * 1000L));
+                assertFalse(set.contains(FIRST_ID + i * 1000L + 1));
+            }
+        }
+    }
+
+    @Test
+    public void reopensWithEveryValue() throws IOException {
+        File file = new File(folder.getRoot(), "seen-first-level.ids");
+        try (MappedLongSet set = new MappedLongSet(file)) {
+            set.add(0);
+            for (int i = 0; i < IDS; i++) {
+                set.add(FIRST_ID + i);
+            }
+        }
+        long length = file.length();
+
+        try (MappedLongSet set = new MappedLongSet(file)) {
+            assertEquals(length, file.length());
+            assertEquals(IDS + 1, set.size());
+            assertTrue(set.contains(0));
+            for (int i = 0; i < IDS; i++) {
+                assertTrue(set.contains(FIRST_ID + i));
+            }
+            assertFalse(set.contains(FIRST_ID + IDS));
+
+            // Grows again after the reopen
+            for (int i = IDS; i < 2 * IDS; i++) {
+                assertTrue(set.add(FIRST_ID + i));
+            }
+            assertFalse(set.add(FIRST_ID));
+            assertTrue(file.length() > length);
+        }
+
+        try (MappedLongSet set = new MappedLongSet(file)) {
+            assertEquals(2 * IDS + 1, set.size());
+            for (int i = 0; i < 2 * IDS; i++) {
+                assertTrue(set.contains(FIRST_ID + i));
+            }
+        }
+    }
+
+    @Test
+    public void keepsWhatIsFlushed() throws IOException {
+        File file = new File(folder.getRoot(), "seen-first-level.ids");
+        MappedLongSet set = new MappedLongSet(file);
+        set.add(FIRST_ID);
+        set.flush();
+
+        try (MappedLongSet reopened = new MappedLongSet(file)) {
+            assertTrue(reopened.contains(FIRST_ID));
+            assertEquals(1, reopened.size());
+        } finally {
+            set.close();
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("first-level-1.csv");
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            records.append(FIRST_ID + i).append("\r\n");
+        }
+        Files.write(file.toPath(), records.toString().getBytes(StandardCharsets.UTF_8));
+
+        try {
+            new MappedLongSet(file).close();
+            fail("Opened a CSV file as a set");
+        } catch (IOException expected) {
+            // Not a set of IDs
+        }
+        assertEquals(records.length(), file.length());
+    }
+}
@@ -0,0 +1,123 @@
+package in.clayfish.pyry.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class OutputManifestTest {
+    private static final String FIRST_RECORD = "688346849024040960,7,\"@first\",\"First\",\"Zürich\",\"hello\",1452867720000\r\n";
+    private static final String SECOND_RECORD = "688346849024040961,7,\"@second\",\"Second\",\"\",\"two\r\nlines\",1452867780000\r\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void leavesRecordBeingWrittenForLater() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-0-1.csv");
+        int cut = SECOND_RECORD.indexOf("\r\n") + 2;
+        append(file, FIRST_RECORD + SECOND_RECORD.substring(0, cut));
+
+        // The second record is cut right after a line break inside its message
+        OutputManifest manifest = new OutputManifest(folder.getRoot());
+        assertTrue(manifest.refresh());
+        manifest.save();
+        assertEquals(688346849024040960L, manifest.getMaxTweetId("second-level-"));
+
+        append(file, SECOND_RECORD.substring(cut));
+        manifest = new OutputManifest(folder.getRoot());
+        assertTrue(manifest.refresh());
+        assertEquals(2, manifest.getRecordCount(file));
+        assertEquals(688346849024040960L, manifest.getMinTweetId("second-level-"));
+        assertEquals(688346849024040961L, manifest.getMaxTweetId("second-level-"));
+        assertEquals(7, manifest.getMaxConversationId());
+    }
+
+    @Test
+    public void savesWhatIsRead() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        append(file, "688346849024040960\r\n688346849024040961\r\n");
+
+        OutputManifest manifest = new OutputManifest(folder.getRoot());
+        manifest.refresh();
+        manifest.save();
+        assertFalse(new File(folder.getRoot(), OutputManifest.FILE_NAME + ".tmp").exists());
+
+        OutputManifest loaded = new OutputManifest(folder.getRoot());
+        assertEquals(2, loaded.getRecordCount(file));
+        assertFalse(loaded.refresh());
+        assertEquals(688346849024040961L, loaded.getMaxTweetId("first-level-"));
+    }
+
+    @Test
+    public void readsAgainFileCutBack() throws IOException {
+        File file = new File(folder.getRoot(), "second-level-0-1.csv");
+        append(file, FIRST_RECORD + SECOND_RECORD);
+        OutputManifest manifest = new OutputManifest(folder.getRoot());
+        manifest.refresh();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(FIRST_RECORD.getBytes(StandardCharsets.UTF_8).length);
+        }
+        assertTrue(manifest.refresh());
+        assertEquals(1, manifest.getRecordCount(file));
+        assertEquals(688346849024040960L, manifest.getMaxTweetId("second-level-"));
+    }
+
+    @Test
+    public void readsAgainFileForgotten() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        append(file, "688346849024040960\r\n688346849024040961\r\n");
+        OutputManifest manifest = new OutputManifest(folder.getRoot());
+        manifest.refresh();
+        manifest.save();
+
+        // Cut back and written again past the length read, which would not be noticed otherwise
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(20);
+        }
+        append(file, "688346849024040970\r\n688346849024040971\r\n");
+        manifest.forget(file);
+        assertEquals(-1, manifest.getRecordCount(file));
+        assertTrue(manifest.refresh());
+        manifest.save();
+
+        OutputManifest loaded = new OutputManifest(folder.getRoot());
+        assertEquals(3, loaded.getRecordCount(file));
+        assertEquals(688346849024040960L, loaded.getMinTweetId("first-level-"));
+        assertEquals(688346849024040971L, loaded.getMaxTweetId("first-level-"));
+    }
+
+    @Test
+    public void forgetsDeletedFiles() throws IOException {
+        File first = new File(folder.getRoot(), "first-level-1.csv");
+        File second = new File(folder.getRoot(), "first-level-2.csv");
+        append(first, "688346849024040960\r\n");
+        append(second, "688346849024040961\r\n");
+        OutputManifest manifest = new OutputManifest(folder.getRoot());
+        manifest.refresh();
+
+        assertTrue(second.delete());
+        assertTrue(manifest.refresh());
+        assertEquals(688346849024040960L, manifest.getMaxTweetId("first-level-"));
+        assertEquals(-1, manifest.getRecordCount(second));
+    }
+
+    static void append(final File file, final String records) throws IOException {
+        Files.write(file.toPath(), records.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
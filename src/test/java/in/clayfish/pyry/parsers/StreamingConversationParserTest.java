@@ -0,0 +1,133 @@
+package in.clayfish.pyry.parsers;
+
+import in.clayfish.pyry.models.Conversation;
+import in.clayfish.pyry.models.Tweet;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link StreamingConversationParser} reads the pages in {@code src/test/resources/pages} exactly as the
+ * {@link DomConversationParser} does
+ *
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class StreamingConversationParserTest {
+
+    @Test
+    public void readsRecordedPageAsDom() throws Exception {
+        Map<Long, Tweet> tweets = assertSameAsDom("virginmedia", "688346849024040960", "688346849024040960");
+
+        Tweet tweet = tweets.get(688346849024040960L);
+        assertEquals("Virgin Media", tweet.getUser().trim());
+        assertEquals("@virginmedia", tweet.getUsername());
+        assertEquals(1452867720000L, tweet.getTimestamp().getTime());
+        assertEquals("@scotty_raven_x", tweets.get(688346624117067778L).getUsername());
+        assertEquals("London UK", tweets.get(688346624117067778L).getLocation());
+    }
+
+    @Test
+    public void decodesEntitiesAsDom() throws Exception {
+        Map<Long, Tweet> tweets = assertSameAsDom("marksandspencer", "entities", "700000000000000002");
+
+        assertEquals("José \"Pep\" Sánchez", tweets.get(700000000000000001L).getUser());
+        assertEquals("Café & crème brûlée <3 — 🍰 isn’t cheap… & © 5 > 4 ", tweets.get(700000000000000001L).getMessage());
+        assertEquals("São Paulo · Brasil", tweets.get(700000000000000001L).getLocation());
+        assertEquals("Hi José, we're sorry – t.co/x?a=1&b=2 ❤️", tweets.get(700000000000000002L).getMessage());
+        assertEquals("Londres, Royaume‑Uni", tweets.get(700000000000000002L).getLocation());
+        assertEquals("集合 ユキ", tweets.get(700000000000000003L).getUser());
+        assertEquals("東京にもある？ ", tweets.get(700000000000000003L).getMessage());
+    }
+
+    @Test
+    public void readsNestedBlockElementsAsDom() throws Exception {
+        Map<Long, Tweet> tweets = assertSameAsDom("target", "nested", "710000000000000002");
+
+        assertEquals("First Poster", tweets.get(710000000000000001L).getUser());
+        assertEquals("Line one line two line three ", tweets.get(710000000000000001L).getMessage());
+        assertEquals("Leeds", tweets.get(710000000000000001L).getLocation());
+        assertEquals("Sorry to hear that. Please DM us your account number.", tweets.get(710000000000000002L).getMessage());
+        assertEquals("Hook, Hampshire", tweets.get(710000000000000002L).getLocation());
+        assertEquals("@second", tweets.get(710000000000000003L).getUsername());
+        assertEquals("", tweets.get(710000000000000004L).getMessage());
+    }
+
+    @Test
+    public void rejectsPageOfSuspendedAccountAsDom() throws Exception {
+        String html = read("missing-account");
+        assertRejects(new DomConversationParser("suspended"), "730000000000000001", html);
+        assertRejects(new StreamingConversationParser("suspended"), "730000000000000001", html);
+    }
+
+    @Test
+    public void readsReplyWithoutAccountAsDom() throws Exception {
+        Map<Long, Tweet> tweets = assertSameAsDom("target", "reply-without-account", "720000000000000001");
+
+        // The link of the timestamp is the first link in the header, there is no name to read from it
+        assertEquals("", tweets.get(720000000000000002L).getUser());
+        assertEquals("", tweets.get(720000000000000002L).getUsername());
+        assertEquals(1452870000000L, tweets.get(720000000000000002L).getTimestamp().getTime());
+    }
+
+    /**
+     * Parses the page with both the parsers and checks that they read the same tweets
+     *
+     * @param username Handle the page was fetched for
+     * @param page     Name of the page
+     * @param tweetId  ID of the tweet whose page it is
+     * @return Tweets read from the page, by their IDs
+     */
+    private static Map<Long, Tweet> assertSameAsDom(final String username, final String page, final String tweetId)
+            throws IOException, URISyntaxException {
+        String html = read(page);
+
+        Conversation dom = new DomConversationParser(username).parse(7, tweetId, html);
+        Conversation streaming = new StreamingConversationParser(username).parse(7, tweetId, html);
+        assertArrayEquals(records(dom), records(streaming));
+
+        Map<Long, Tweet> tweets = new HashMap<>();
+        for (Tweet tweet : streaming.getTweets()) {
+            assertEquals(7, tweet.getConversationId());
+            tweets.put(tweet.getId(), tweet);
+        }
+        return tweets;
+    }
+
+    private static void assertRejects(final ConversationParser parser, final String tweetId, final String html) {
+        try {
+            parser.parse(7, tweetId, html);
+            fail(parser.getClass().getSimpleName() + " read a page without the tweet");
+        } catch (RuntimeException expected) {
+            // Either parser fails the page, and the extractor logs it and moves on
+        }
+    }
+
+    /**
+     * @return Records of the tweets of the conversation, sorted as the tweets of a conversation are in no particular order
+     */
+    private static String[] records(final Conversation conversation) {
+        String[] records = conversation.toString().split("\r?\n");
+        Arrays.sort(records);
+        return records;
+    }
+
+    private static String read(final String page) throws IOException, URISyntaxException {
+        URL resource = StreamingConversationParserTest.class.getResource("/pages/" + page + ".html");
+        assertNotNull("No page " + page, resource);
+        return new String(Files.readAllBytes(Paths.get(resource.toURI())), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,133 @@
+package in.clayfish.pyry.utils;
+
+import in.clayfish.pyry.io.BlockIndex;
+import in.clayfish.pyry.io.CsvSink;
+import in.clayfish.pyry.io.LineIndex;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shuklaalok7
+ * @since 16/10/26
+ */
+public class AppUtilsTest {
+    private static final long FIRST_ID = 688346849024040960L;
+    private static final int RECORDS = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsAnyRecordOfCompressedFile() throws IOException {
+        File file = write("first-level-1.csv", true);
+        assertTrue(BlockIndex.open(file).floorRecord(RECORDS - 1) > 0);
+
+        for (int n = 0; n < RECORDS; n++) {
+            assertEquals(Long.toString(FIRST_ID + n), AppUtils.readNthRecord(file, n).get(0));
+        }
+        assertNull(AppUtils.readNthRecord(file, RECORDS));
+        assertEquals(RECORDS, AppUtils.getLineCount(file));
+    }
+
+    @Test
+    public void readsRangesAcrossBlocks() throws IOException {
+        File compressed = write("first-level-1.csv", true);
+        File plain = write("first-level-2.csv", false);
+        BlockIndex index = BlockIndex.open(compressed);
+
+        // A range starting right at a block, and ranges spanning the blocks around it
+        long blockStart = index.floorRecord(RECORDS / 2);
+        long[][] ranges = {{0, 1}, {0, RECORDS}, {blockStart, blockStart + 1}, {blockStart - 1, blockStart + 1},
+                {blockStart - 3, blockStart + 40}, {RECORDS - 2, RECORDS + 10}};
+        for (long[] range : ranges) {
+            List<CSVRecord> fromCompressed = AppUtils.readCsvFile(compressed, range[0], range[1]);
+            List<CSVRecord> fromPlain = AppUtils.readCsvFile(plain, range[0], range[1]);
+
+            assertEquals(Math.min(range[1], RECORDS) - range[0], fromCompressed.size());
+            assertEquals(fromPlain.size(), fromCompressed.size());
+            for (int i = 0; i < fromCompressed.size(); i++) {
+                assertEquals(Long.toString(FIRST_ID + range[0] + i), fromCompressed.get(i).get(0));
+                assertEquals(fromPlain.get(i).get(0), fromCompressed.get(i).get(0));
+            }
+        }
+    }
+
+    @Test
+    public void countsLinesOfGrowingFile() throws IOException {
+        File file = new File(folder.getRoot(), "first-level-1.csv");
+        append(file, "688346849024040960\r\n688346849024040961\r\n6883468490");
+        assertEquals(3, AppUtils.getLineCount(file));
+
+        append(file, "24040962\r\n688346849024040963\r\n");
+        assertEquals(4, AppUtils.getLineCount(file));
+
+        // Cut back and written again
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(20);
+        }
+        assertEquals(1, AppUtils.getLineCount(file));
+        append(file, "1\r\n2\r\n3\r\n4\r\n5\r\n");
+        assertEquals(6, AppUtils.getLineCount(file));
+        assertEquals(0, AppUtils.getLineCount(new File(folder.getRoot(), "first-level-2.csv")));
+    }
+
+    @Test
+    public void cutsOutputBackToCheckpoint() throws IOException {
+        File checkpointed = new File(folder.getRoot(), "first-level-2.csv");
+        append(new File(folder.getRoot(), "first-level-1.csv"), "688346849024040960\r\n");
+        append(checkpointed, "688346849024040961\r\n688346849024040962\r\n");
+        append(new File(folder.getRoot(), "first-level-3.csv"), "688346849024040963\r\n");
+        append(new File(folder.getRoot(), "first-level-10.csv"), "688346849024040964\r\n");
+        append(new File(folder.getRoot(), "second-level-0-3.csv"), "688346849024040961,1\r\n");
+        LineIndex.open(checkpointed);
+        LineIndex.open(new File(folder.getRoot(), "first-level-3.csv"));
+        assertTrue(new File(checkpointed.getPath() + LineIndex.EXTENSION).exists());
+
+        List<File> cut = AppUtils.cutBack(checkpointed, 20);
+        assertEquals(3, cut.size());
+        assertEquals(20, checkpointed.length());
+        assertEquals(1, AppUtils.getLineCount(checkpointed));
+        assertTrue(new File(folder.getRoot(), "first-level-1.csv").exists());
+        assertFalse(new File(folder.getRoot(), "first-level-3.csv").exists());
+        assertFalse(new File(folder.getRoot(), "first-level-10.csv").exists());
+        assertTrue(new File(folder.getRoot(), "second-level-0-3.csv").exists());
+        for (String name : folder.getRoot().list()) {
+            assertFalse(name, name.endsWith(LineIndex.EXTENSION));
+        }
+
+        // Nothing past the checkpoint
+        assertTrue(AppUtils.cutBack(checkpointed, 20).isEmpty());
+        assertTrue(AppUtils.cutBack(null, 0).isEmpty());
+    }
+
+    private static void append(final File file, final String records) throws IOException {
+        Files.write(file.toPath(), records.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private File write(final String name, final boolean compress) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        try (CsvSink sink = new CsvSink(file, Long.MAX_VALUE, () -> {
+            throw new IllegalStateException("The file should not roll over");
+        }, 512, Long.MAX_VALUE, compress)) {
+            for (int n = 0; n < RECORDS; n++) {
+                sink.append(FIRST_ID + n);
+            }
+        }
+        return file;
+    }
+}